@@ -4,7 +4,9 @@
 package me.sniggle.security.crypto.config;
 
 /**
- * Simple class specifying the range of iterations used for hashing a plain text
+ * Simple immutable class specifying the range of iterations used for hashing a
+ * plain text and the maximum length of a plain text to be hashed, as the cost
+ * of some algorithms grows quadratically with the length of the plain text
  * 
  * @author iulius
  * @since 0.0.1
@@ -12,14 +14,21 @@ package me.sniggle.security.crypto.config;
  */
 public class RoundConfiguration {
 
-  private int minimumRounds;
-  private int maximumRounds;
+  /**
+   * the default maximum length of a plain text in UTF-8 encoded bytes, i.e.
+   * unlimited, so that no existing password stops verifying
+   */
+  public static final int DEFAULT_MAXIMUM_PASSWORD_LENGTH = Integer.MAX_VALUE;
+
+  private final int minimumRounds;
+  private final int maximumRounds;
+  private final int maximumPasswordLength;
 
   /**
    * 
    */
   public RoundConfiguration() {
-    super();
+    this(0, 0);
   }
 
   /**
@@ -27,9 +36,20 @@ public class RoundConfiguration {
    * @param maximumRounds
    */
   public RoundConfiguration(int minimumRounds, int maximumRounds) {
+    this(minimumRounds, maximumRounds, DEFAULT_MAXIMUM_PASSWORD_LENGTH);
+  }
+
+  /**
+   * @param minimumRounds
+   * @param maximumRounds
+   * @param maximumPasswordLength
+   *          the maximum length of a plain text in UTF-8 encoded bytes
+   */
+  public RoundConfiguration(int minimumRounds, int maximumRounds, int maximumPasswordLength) {
     super();
     this.minimumRounds = minimumRounds;
     this.maximumRounds = maximumRounds;
+    this.maximumPasswordLength = maximumPasswordLength;
   }
 
   /**
@@ -46,4 +66,11 @@ public class RoundConfiguration {
     return maximumRounds;
   }
 
+  /**
+   * @return the maximumPasswordLength
+   */
+  public int getMaximumPasswordLength() {
+    return maximumPasswordLength;
+  }
+
 }
@@ -0,0 +1,51 @@
+package me.sniggle.security.digest;
+
+/**
+ * Screens plain texts against a list of known breached passwords, e.g. in
+ * order to reject them at registration or when a password is changed. The
+ * screening works on the SHA-1 digests of the UTF-8 encoded plain texts, the
+ * format breached password lists are commonly distributed in
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public interface BreachedPasswordScreener {
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text to be screened
+   * @return true if the plain text is a known breached password, false if it
+   *         is not or null
+   */
+  public abstract boolean isBreached(String plainText);
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text to be screened, the array is not modified and may
+   *          be wiped by the caller afterwards
+   * @return true if the plain text is a known breached password, false if it
+   *         is not or null
+   */
+  public abstract boolean isBreached(char[] plainText);
+
+  /**
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text to be screened
+   * @return true if the plain text is a known breached password, false if it
+   *         is not or null
+   */
+  public abstract boolean isBreached(byte[] plainText);
+
+  /**
+   * 
+   * @param sha1Digest
+   *          the 20 bytes of the SHA-1 digest of a UTF-8 encoded plain text
+   * @return true if the digest belongs to a known breached password
+   */
+  public abstract boolean isBreachedDigest(byte[] sha1Digest);
+
+}
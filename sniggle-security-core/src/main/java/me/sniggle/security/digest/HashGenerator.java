@@ -1,5 +1,11 @@
 package me.sniggle.security.digest;
 
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import me.sniggle.security.digest.config.ParsedHash;
+
 /**
  * a common interface to hash and verify passwords securely and interchangeable
  * 
@@ -51,4 +57,273 @@ public interface HashGenerator {
    */
   public abstract boolean verifyHash(String plainText, String formattedHash);
 
-}
\ No newline at end of file
+  /**
+   * verifies whether the plain text results in the already parsed hash
+   * 
+   * @param plainText
+   *          the plain text to verify
+   * @param parsedHash
+   *          the parsed hash value to verify against
+   * @return true if the plain text matches the hash, else false
+   */
+  public abstract boolean verifyHash(String plainText, ParsedHash parsedHash);
+
+  /**
+   * hashes the plain text using a random salt and random number of rounds,
+   * without creating a {@link String} of it. The characters are encoded into a
+   * reusable per-thread buffer which is wiped afterwards, the array itself is
+   * left to the caller
+   * 
+   * @param plainText
+   *          the plain text
+   * @return the hashed value
+   */
+  public abstract String hashPassword(char[] plainText);
+
+  /**
+   * hashes the remaining characters of the buffer using a random salt and
+   * random number of rounds, the position of the buffer is not changed
+   * 
+   * @param plainText
+   *          the plain text
+   * @return the hashed value
+   * @see #hashPassword(char[])
+   */
+  public abstract String hashPassword(CharBuffer plainText);
+
+  /**
+   * hashes the UTF-8 encoded plain text using a random salt and random number
+   * of rounds
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text, used as is
+   * @return the hashed value
+   */
+  public abstract String hashPassword(byte[] plainText);
+
+  /**
+   * verifies whether the plain text results in the given hash
+   * 
+   * @param plainText
+   *          the plain text to verify
+   * @param formattedHash
+   *          the formatted hash value to verify against
+   * @return true if the plain text matches the hash, else false
+   * @see #hashPassword(char[])
+   */
+  public abstract boolean verifyHash(char[] plainText, String formattedHash);
+
+  /**
+   * verifies whether the remaining characters of the buffer result in the
+   * given hash
+   * 
+   * @param plainText
+   *          the plain text to verify
+   * @param formattedHash
+   *          the formatted hash value to verify against
+   * @return true if the plain text matches the hash, else false
+   * @see #hashPassword(CharBuffer)
+   */
+  public abstract boolean verifyHash(CharBuffer plainText, String formattedHash);
+
+  /**
+   * verifies whether the UTF-8 encoded plain text results in the given hash
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text to verify
+   * @param formattedHash
+   *          the formatted hash value to verify against
+   * @return true if the plain text matches the hash, else false
+   */
+  public abstract boolean verifyHash(byte[] plainText, String formattedHash);
+
+  /**
+   * verifies whether the plain text results in the already parsed hash
+   * 
+   * @param plainText
+   *          the plain text to verify
+   * @param parsedHash
+   *          the parsed hash value to verify against
+   * @return true if the plain text matches the hash, else false
+   * @see #hashPassword(char[])
+   */
+  public abstract boolean verifyHash(char[] plainText, ParsedHash parsedHash);
+
+  /**
+   * verifies whether the remaining characters of the buffer result in the
+   * already parsed hash
+   * 
+   * @param plainText
+   *          the plain text to verify
+   * @param parsedHash
+   *          the parsed hash value to verify against
+   * @return true if the plain text matches the hash, else false
+   * @see #hashPassword(CharBuffer)
+   */
+  public abstract boolean verifyHash(CharBuffer plainText, ParsedHash parsedHash);
+
+  /**
+   * verifies whether the UTF-8 encoded plain text results in the already
+   * parsed hash
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text to verify
+   * @param parsedHash
+   *          the parsed hash value to verify against
+   * @return true if the plain text matches the hash, else false
+   */
+  public abstract boolean verifyHash(byte[] plainText, ParsedHash parsedHash);
+
+  /**
+   * parses the formatted hash value in a single pass, without regular
+   * expressions, into its components
+   * 
+   * @param formattedHash
+   *          the formatted hash value of the implemented algorithm
+   * @return the parsed hash or null if the formatted hash is malformed or of a
+   *         different algorithm
+   */
+  public abstract ParsedHash parseHash(String formattedHash);
+
+  /**
+   * 
+   * @return the maximum length of a plain text in UTF-8 encoded bytes, longer
+   *         plain texts are neither hashed nor verified; unlimited unless
+   *         configured otherwise
+   */
+  public abstract int getMaximumPasswordLength();
+
+  /**
+   * checks the length of the plain text as it would be hashed, i.e. after any
+   * normalization, without encoding it, so pathological input can be refused
+   * before any digest work starts
+   * 
+   * @param plainText
+   *          the plain text
+   * @return true if the plain text does not exceed
+   *         {@link #getMaximumPasswordLength()}
+   */
+  public abstract boolean isPasswordLengthAllowed(String plainText);
+
+  /**
+   * checks the length of the plain text as it would be hashed
+   * 
+   * @param plainText
+   *          the plain text
+   * @return true if the plain text does not exceed
+   *         {@link #getMaximumPasswordLength()}
+   * @see #isPasswordLengthAllowed(String)
+   */
+  public abstract boolean isPasswordLengthAllowed(char[] plainText);
+
+  /**
+   * checks the length of the remaining characters of the buffer as they would
+   * be hashed
+   * 
+   * @param plainText
+   *          the plain text
+   * @return true if the plain text does not exceed
+   *         {@link #getMaximumPasswordLength()}
+   * @see #isPasswordLengthAllowed(String)
+   */
+  public abstract boolean isPasswordLengthAllowed(CharBuffer plainText);
+
+  /**
+   * checks the length of the UTF-8 encoded plain text
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text
+   * @return true if the plain text does not exceed
+   *         {@link #getMaximumPasswordLength()}
+   */
+  public abstract boolean isPasswordLengthAllowed(byte[] plainText);
+
+  /**
+   * estimates the cost of hashing or verifying a plain text, e.g. in order to
+   * refuse or deprioritize expensive input. <br>
+   * <br>
+   * the unit is the work step dominating the algorithm: the blocks processed
+   * by the compression function of the underlying message digest for
+   * SHA-CRYPT, PBKDF2 and the plain digests, the Blowfish block encryptions
+   * for bcrypt and the 1 KiB memory blocks filled for Argon2id. Estimates are
+   * therefore comparable within an algorithm only
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param saltLength
+   *          the length of the salt in UTF-8 encoded bytes
+   * @param rounds
+   *          the number of rounds
+   * @return the estimated number of work steps of the algorithm
+   */
+  public abstract long estimateCost(int passwordLength, int saltLength, int rounds);
+
+  /**
+   * estimates the cost of verifying a plain text against the parsed hash,
+   * taking all parameters stored in the hash into account, e.g. the memory
+   * cost of an Argon2id hash rather than the configured one
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param parsedHash
+   *          the parsed hash
+   * @return the estimated cost as defined by
+   *         {@link #estimateCost(int, int, int)}
+   */
+  public abstract long estimateCost(int passwordLength, ParsedHash parsedHash);
+
+  /**
+   * hashes all plain texts in parallel on the shared hashing executor using a
+   * random salt and random number of rounds each
+   * 
+   * @param plainTexts
+   *          the plain texts to hash
+   * @return the hashed values in the order of the input, an element is null if
+   *         the corresponding plain text could not be hashed
+   */
+  public abstract List<String> hashPasswords(List<String> plainTexts);
+
+  /**
+   * hashes all plain texts in parallel on the given executor using a random
+   * salt and random number of rounds each
+   * 
+   * @param plainTexts
+   *          the plain texts to hash
+   * @param executor
+   *          the executor running the hash computations, e.g. in order to cap
+   *          the share of CPU used by the batch
+   * @return the hashed values in the order of the input, an element is null if
+   *         the corresponding plain text could not be hashed
+   */
+  public abstract List<String> hashPasswords(List<String> plainTexts, Executor executor);
+
+  /**
+   * verifies in parallel on the shared hashing executor whether each plain
+   * text results in the formatted hash at the same position
+   * 
+   * @param plainTexts
+   *          the plain texts to verify
+   * @param formattedHashes
+   *          the formatted hash values to verify against
+   * @return the verification results in the order of the input, an element is
+   *         null if the verification failed with an error
+   */
+  public abstract List<Boolean> verifyHashes(List<String> plainTexts, List<String> formattedHashes);
+
+  /**
+   * verifies in parallel on the given executor whether each plain text results
+   * in the formatted hash at the same position
+   * 
+   * @param plainTexts
+   *          the plain texts to verify
+   * @param formattedHashes
+   *          the formatted hash values to verify against
+   * @param executor
+   *          the executor running the hash computations, e.g. in order to cap
+   *          the share of CPU used by the batch
+   * @return the verification results in the order of the input, an element is
+   *         null if the verification failed with an error
+   */
+  public abstract List<Boolean> verifyHashes(List<String> plainTexts, List<String> formattedHashes, Executor executor);
+
+}
@@ -0,0 +1,48 @@
+package me.sniggle.security.digest;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.Algorithm;
+
+/**
+ * Service provider interface creating the {@link HashGenerator} of an
+ * algorithm. Implementations are registered in
+ * <code>META-INF/services/me.sniggle.security.digest.HashGeneratorFactory</code>
+ * and picked up by the
+ * {@link me.sniggle.security.digest.impl.HashGeneratorRegistry}, e.g. in order
+ * to provide a faster backend for a platform. <br>
+ * <br>
+ * factories are instantiated when the registry is loaded, they should not
+ * load their hash generator classes before
+ * {@link #createHashGenerator(RoundConfiguration)} is invoked
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public interface HashGeneratorFactory {
+
+  /**
+   * 
+   * @return the algorithm implemented by the created hash generators
+   */
+  public abstract Algorithm getAlgorithm();
+
+  /**
+   * the factory with the highest priority of an algorithm is used, the
+   * built-in factories have the priority 0
+   * 
+   * @return the priority of the factory (higher is preferred)
+   */
+  public abstract int getPriority();
+
+  /**
+   * 
+   * @param roundConfiguration
+   *          the configuration of minimal and maximal rounds or null in order
+   *          to use the default configuration
+   * @return the hash generator, may be a shared instance if no configuration
+   *         is given
+   */
+  public abstract HashGenerator createHashGenerator(RoundConfiguration roundConfiguration);
+
+}
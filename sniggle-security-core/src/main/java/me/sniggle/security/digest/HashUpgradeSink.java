@@ -0,0 +1,25 @@
+package me.sniggle.security.digest;
+
+/**
+ * Receives the hashes that have been upgraded to the best algorithm in the
+ * background after a successful verification against an outdated hash
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public interface HashUpgradeSink {
+
+  /**
+   * invoked on a background thread once the upgraded hash has been computed,
+   * e.g. to replace the stored hash
+   * 
+   * @param outdatedHash
+   *          the formatted hash the plain text has been verified against
+   * @param upgradedHash
+   *          the formatted hash of the same plain text using the best
+   *          algorithm
+   */
+  public abstract void onHashUpgraded(String outdatedHash, String upgradedHash);
+
+}
@@ -1,5 +1,10 @@
 package me.sniggle.security.digest;
 
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import me.sniggle.security.digest.config.ParsedHash;
 import me.sniggle.security.digest.config.PasswordMatchResult;
 
 /**
@@ -32,4 +37,217 @@ public interface PasswordDigester {
    */
   public abstract PasswordMatchResult matchesPassword(String plainText, String formattedHash);
 
-}
\ No newline at end of file
+  /**
+   * verifies whether the provided plain text matches the already parsed hash
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash to be used for verification
+   * @return a {@link PasswordMatchResult} instance or null if the hash could
+   *         not be processed
+   */
+  public abstract PasswordMatchResult matchesPassword(String plainText, ParsedHash parsedHash);
+
+  /**
+   * parses the formatted hash of any supported algorithm, so that it can be
+   * cached and passed to {@link #matchesPassword(String, ParsedHash)}
+   * 
+   * @param formattedHash
+   *          the formatted hash
+   * @return the parsed hash or null if the formatted hash is malformed or of an
+   *         unsupported algorithm
+   */
+  public abstract ParsedHash parseHash(String formattedHash);
+
+  /**
+   * hashes the plain text without creating a {@link String} of it, the array
+   * is left to the caller
+   * 
+   * @param plainText
+   *          the plain text to be hashed
+   * @return the hash value
+   */
+  public abstract String hashPassword(char[] plainText);
+
+  /**
+   * hashes the remaining characters of the buffer without changing its
+   * position
+   * 
+   * @param plainText
+   *          the plain text to be hashed
+   * @return the hash value
+   */
+  public abstract String hashPassword(CharBuffer plainText);
+
+  /**
+   * hashes the UTF-8 encoded plain text
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text to be hashed
+   * @return the hash value
+   */
+  public abstract String hashPassword(byte[] plainText);
+
+  /**
+   * verifies whether the provided plain text matches the formatted hash
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash to be used for verification
+   * @return a {@link PasswordMatchResult} instance
+   */
+  public abstract PasswordMatchResult matchesPassword(char[] plainText, String formattedHash);
+
+  /**
+   * verifies whether the remaining characters of the buffer match the
+   * formatted hash
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash to be used for verification
+   * @return a {@link PasswordMatchResult} instance
+   */
+  public abstract PasswordMatchResult matchesPassword(CharBuffer plainText, String formattedHash);
+
+  /**
+   * verifies whether the UTF-8 encoded plain text matches the formatted hash
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text to be verified
+   * @param formattedHash
+   *          the formatted hash to be used for verification
+   * @return a {@link PasswordMatchResult} instance
+   */
+  public abstract PasswordMatchResult matchesPassword(byte[] plainText, String formattedHash);
+
+  /**
+   * verifies whether the provided plain text matches the already parsed hash
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash to be used for verification
+   * @return a {@link PasswordMatchResult} instance or null if the hash could
+   *         not be processed
+   */
+  public abstract PasswordMatchResult matchesPassword(char[] plainText, ParsedHash parsedHash);
+
+  /**
+   * verifies whether the remaining characters of the buffer match the already
+   * parsed hash
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash to be used for verification
+   * @return a {@link PasswordMatchResult} instance or null if the hash could
+   *         not be processed
+   */
+  public abstract PasswordMatchResult matchesPassword(CharBuffer plainText, ParsedHash parsedHash);
+
+  /**
+   * verifies whether the UTF-8 encoded plain text matches the already parsed
+   * hash
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text to be verified
+   * @param parsedHash
+   *          the parsed hash to be used for verification
+   * @return a {@link PasswordMatchResult} instance or null if the hash could
+   *         not be processed
+   */
+  public abstract PasswordMatchResult matchesPassword(byte[] plainText, ParsedHash parsedHash);
+
+  /**
+   * hashes all plain texts in parallel on the shared hashing executor with the
+   * algorithm used by the implementing class
+   * 
+   * @param plainTexts
+   *          the plain texts to be hashed
+   * @return the hash values in the order of the input, an element is null if
+   *         the corresponding plain text could not be hashed
+   */
+  public abstract List<String> hashPasswords(List<String> plainTexts);
+
+  /**
+   * hashes all plain texts in parallel on the given executor with the
+   * algorithm used by the implementing class
+   * 
+   * @param plainTexts
+   *          the plain texts to be hashed
+   * @param executor
+   *          the executor running the hash computations, e.g. in order to cap
+   *          the share of CPU used by the batch
+   * @return the hash values in the order of the input, an element is null if
+   *         the corresponding plain text could not be hashed
+   */
+  public abstract List<String> hashPasswords(List<String> plainTexts, Executor executor);
+
+  /**
+   * verifies in parallel on the shared hashing executor whether each plain
+   * text matches the formatted hash at the same position
+   * 
+   * @param plainTexts
+   *          the plain texts to be verified
+   * @param formattedHashes
+   *          the formatted hashes to be used for verification
+   * @return the {@link PasswordMatchResult} instances in the order of the
+   *         input, an element is null if the verification failed with an error
+   */
+  public abstract List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes);
+
+  /**
+   * verifies in parallel on the given executor whether each plain text matches
+   * the formatted hash at the same position
+   * 
+   * @param plainTexts
+   *          the plain texts to be verified
+   * @param formattedHashes
+   *          the formatted hashes to be used for verification
+   * @param executor
+   *          the executor running the hash computations, e.g. in order to cap
+   *          the share of CPU used by the batch
+   * @return the {@link PasswordMatchResult} instances in the order of the
+   *         input, an element is null if the verification failed with an error
+   */
+  public abstract List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes,
+      Executor executor);
+
+  /**
+   * verifies in parallel on the shared hashing executor whether the plain text
+   * matches any of the formatted hashes, e.g. the password history of a user.
+   * The first match cancels the outstanding verifications, matched hashes are
+   * not upgraded
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHashes
+   *          the formatted hashes to be used for verification
+   * @return the index of a formatted hash matched by the plain text, -1 if no
+   *         hash matches or null if the calling thread has been interrupted
+   *         before the verification completed
+   */
+  public abstract Integer findMatchingHash(String plainText, List<String> formattedHashes);
+
+  /**
+   * verifies in parallel on the given executor whether the plain text matches
+   * any of the formatted hashes, e.g. the password history of a user. The
+   * first match cancels the outstanding verifications, matched hashes are not
+   * upgraded
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHashes
+   *          the formatted hashes to be used for verification
+   * @param executor
+   *          the executor running the hash computations
+   * @return the index of a formatted hash matched by the plain text, -1 if no
+   *         hash matches or null if the calling thread has been interrupted
+   *         before the verification completed
+   */
+  public abstract Integer findMatchingHash(String plainText, List<String> formattedHashes, Executor executor);
+
+}
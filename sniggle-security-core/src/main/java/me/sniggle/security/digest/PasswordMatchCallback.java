@@ -0,0 +1,32 @@
+package me.sniggle.security.digest;
+
+import me.sniggle.security.digest.config.PasswordMatchResult;
+
+/**
+ * Callback notified once an asynchronous password verification has completed
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public interface PasswordMatchCallback {
+
+  /**
+   * invoked with the result of the verification, including a rejected result
+   * if the verification could not be scheduled
+   * 
+   * @param result
+   *          the {@link PasswordMatchResult} instance, null if the formatted
+   *          hash could not be processed
+   */
+  public abstract void onResult(PasswordMatchResult result);
+
+  /**
+   * invoked if the verification failed with an unexpected error
+   * 
+   * @param cause
+   *          the error
+   */
+  public abstract void onFailure(Throwable cause);
+
+}
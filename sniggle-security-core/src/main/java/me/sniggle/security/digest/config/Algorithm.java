@@ -1,27 +1,42 @@
 package me.sniggle.security.digest.config;
 
-import me.sniggle.security.digest.HashGenerator;
-import me.sniggle.security.digest.impl.JasyptHashGenerator;
-import me.sniggle.security.digest.impl.Sha256Crypt;
-import me.sniggle.security.digest.impl.Sha512Crypt;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * This enumeration lists all implemented hashing algorithms and provides the
- * identifier, priority and the implementing class of the algorithm
+ * identifier and priority of the algorithm. The implementations are looked up
+ * in the {@link me.sniggle.security.digest.impl.HashGeneratorRegistry}, so
+ * initializing this enumeration does not load any of them
  * 
  * @author iulius
  * @since 0.0.1
  */
 public enum Algorithm {
-  MD5(1, "$1$", JasyptHashGenerator.class),
-  SHA256(2, "$3$", JasyptHashGenerator.class, "SHA-256"),
-  SHA512(3, "$4$", JasyptHashGenerator.class, "SHA-512"),
-  SHA256_CRYPT(4, "$5$", Sha256Crypt.class),
-  SHA512_CRYPT(5, "$6$", Sha512Crypt.class);
+  MD5(1, "$1$"),
+  SHA256(2, "$3$", "SHA-256"),
+  SHA512(3, "$4$", "SHA-512"),
+  SHA256_CRYPT(4, "$5$", "SHA-256"),
+  SHA512_CRYPT(5, "$6$", "SHA-512"),
+  PBKDF2_SHA256(6, "$pbkdf2-sha256$", "SHA-256"),
+  PBKDF2_SHA512(7, "$pbkdf2-sha512$", "SHA-512"),
+  BCRYPT_2A(8, "$2a$", "Blowfish"),
+  BCRYPT_2B(9, "$2b$", "Blowfish"),
+  ARGON2ID(10, "$argon2id$");
+
+  /**
+   * the algorithms by magic prefix, never modified after initialization
+   */
+  private static final Map<String, Algorithm> BY_MAGIC_PREFIX = new HashMap<String, Algorithm>();
+
+  static {
+    for (Algorithm algorithm : values()) {
+      BY_MAGIC_PREFIX.put(algorithm.magicPrefix(), algorithm);
+    }
+  }
 
   private int priority;
   private String magicPrefix;
-  private Class<? extends HashGenerator> hashGeneratorClass;
   private String alternateName;
 
   /**
@@ -31,13 +46,10 @@ public enum Algorithm {
    *          the priority to determine an algorithm's security
    * @param magicPrefix
    *          the magic prefix to identify the algorithm in a hash
-   * @param hashGenerator
-   *          the implementation class
    */
-  private Algorithm(int priority, String magicPrefix, Class<? extends HashGenerator> hashGenerator) {
+  private Algorithm(int priority, String magicPrefix) {
     this.priority = priority;
     this.magicPrefix = magicPrefix;
-    this.hashGeneratorClass = hashGenerator;
     this.alternateName = name();
   }
 
@@ -48,14 +60,12 @@ public enum Algorithm {
    *          the priority to determine an algorithm's security
    * @param magicPrefix
    *          the magic prefix to identify the algorithm in a hash
-   * @param hashGenerator
-   *          the implementation class
    * @param alternateName
    *          the name as used in the underlying implementation (e.g. the JASYPT
    *          name)
    */
-  private Algorithm(int priority, String magicPrefix, Class<? extends HashGenerator> hashGenerator, String alternateName) {
-    this(priority, magicPrefix, hashGenerator);
+  private Algorithm(int priority, String magicPrefix, String alternateName) {
+    this(priority, magicPrefix);
     this.alternateName = alternateName;
   }
 
@@ -79,14 +89,6 @@ public enum Algorithm {
     return magicPrefix;
   }
 
-  /**
-   * 
-   * @return the class which implements the algorithm
-   */
-  public Class<? extends HashGenerator> hashGeneratorClass() {
-    return hashGeneratorClass;
-  }
-
   /**
    * 
    * @return the alternate name if specified, otherwise the result equals {
@@ -104,13 +106,25 @@ public enum Algorithm {
    * @return the algorithm matching the prefix or null im none matches
    */
   public static Algorithm getForMagicPrefix(String magicPrefix) {
-    Algorithm result = null;
-    for (Algorithm algorithm : values()) {
-      if (algorithm.magicPrefix().equals(magicPrefix)) {
-        result = algorithm;
+    return BY_MAGIC_PREFIX.get(magicPrefix);
+  }
+
+  /**
+   * determines the algorithm of a formatted hash from its magic prefix, i.e.
+   * everything up to and including the second dollar sign
+   * 
+   * @param formattedHash
+   *          the formatted hash
+   * @return the algorithm or null if the hash has no known magic prefix
+   */
+  public static Algorithm getForFormattedHash(String formattedHash) {
+    if (formattedHash != null && formattedHash.length() > 0 && formattedHash.charAt(0) == '$') {
+      int end = formattedHash.indexOf('$', 1);
+      if (end > 0) {
+        return BY_MAGIC_PREFIX.get(formattedHash.substring(0, end + 1));
       }
     }
-    return result;
+    return null;
   }
 
   /**
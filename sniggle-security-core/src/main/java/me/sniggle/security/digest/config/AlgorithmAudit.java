@@ -0,0 +1,140 @@
+package me.sniggle.security.digest.config;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This class holds the statistics of the stored hashes of a single algorithm
+ * as part of a {@link CredentialAuditReport}. Instances are immutable
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public final class AlgorithmAudit {
+
+  private final Algorithm algorithm;
+  private final long count;
+  private final SortedMap<Integer, Long> roundDistribution;
+  private final SortedMap<Integer, Long> saltLengthDistribution;
+  private final long upgradeCount;
+  private final long refusedCount;
+  private final long estimatedVerificationCost;
+  private final long estimatedUpgradeCost;
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          the algorithm of the hashes
+   * @param count
+   *          the number of hashes
+   * @param roundDistribution
+   *          the number of hashes per rounds
+   * @param saltLengthDistribution
+   *          the number of hashes per length of the salt as stored
+   * @param upgradeCount
+   *          the number of hashes upgraded once verified
+   * @param refusedCount
+   *          the number of hashes refused for exceeding the verification
+   *          ceiling
+   * @param estimatedVerificationCost
+   *          the estimated cost of verifying all hashes once
+   * @param estimatedUpgradeCost
+   *          the estimated cost of verifying the hashes to be upgraded once
+   */
+  public AlgorithmAudit(Algorithm algorithm, long count, SortedMap<Integer, Long> roundDistribution,
+      SortedMap<Integer, Long> saltLengthDistribution, long upgradeCount, long refusedCount,
+      long estimatedVerificationCost, long estimatedUpgradeCost) {
+    super();
+    if (algorithm == null || roundDistribution == null || saltLengthDistribution == null) {
+      throw new IllegalArgumentException("The algorithm and the distributions may not be null!");
+    }
+    this.algorithm = algorithm;
+    this.count = count;
+    this.roundDistribution = Collections.unmodifiableSortedMap(new TreeMap<Integer, Long>(roundDistribution));
+    this.saltLengthDistribution = Collections.unmodifiableSortedMap(new TreeMap<Integer, Long>(
+        saltLengthDistribution));
+    this.upgradeCount = upgradeCount;
+    this.refusedCount = refusedCount;
+    this.estimatedVerificationCost = estimatedVerificationCost;
+    this.estimatedUpgradeCost = estimatedUpgradeCost;
+  }
+
+  /**
+   * @return the algorithm
+   */
+  public Algorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * @return the number of hashes
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the number of hashes per rounds in ascending order of the rounds
+   */
+  public SortedMap<Integer, Long> getRoundDistribution() {
+    return roundDistribution;
+  }
+
+  /**
+   * @return the number of hashes per length of the salt in characters as
+   *         stored, in ascending order of the length
+   */
+  public SortedMap<Integer, Long> getSaltLengthDistribution() {
+    return saltLengthDistribution;
+  }
+
+  /**
+   * @return the number of hashes replaced by an upgraded hash once a
+   *         verification against them succeeds
+   */
+  public long getUpgradeCount() {
+    return upgradeCount;
+  }
+
+  /**
+   * @return the number of hashes whose rounds exceed the verification ceiling,
+   *         so that verifications against them are refused
+   */
+  public long getRefusedCount() {
+    return refusedCount;
+  }
+
+  /**
+   * @return the estimated cost of verifying every hash once, in the unit of
+   *         {@link me.sniggle.security.digest.HashGenerator#estimateCost(int, int, int)}
+   *         for the algorithm, hence not comparable across algorithms
+   */
+  public long getEstimatedVerificationCost() {
+    return estimatedVerificationCost;
+  }
+
+  /**
+   * @return the estimated cost of verifying every hash to be upgraded once, in
+   *         the same unit as {@link #getEstimatedVerificationCost()}
+   */
+  public long getEstimatedUpgradeCost() {
+    return estimatedUpgradeCost;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return algorithm + ": " + count + " hashes, rounds " + roundDistribution + ", salt lengths "
+        + saltLengthDistribution + ", " + upgradeCount + " to be upgraded, " + refusedCount
+        + " refused, estimated verification cost " + estimatedVerificationCost + " (upgrades "
+        + estimatedUpgradeCost + ")";
+  }
+
+}
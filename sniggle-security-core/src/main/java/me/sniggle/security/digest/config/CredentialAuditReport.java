@@ -0,0 +1,141 @@
+package me.sniggle.security.digest.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the statistics over the stored hashes of a credential
+ * export, e.g. in order to plan a migration: the algorithm mix, the
+ * distribution of rounds and salt lengths per algorithm, the malformed
+ * entries and the hashes to be upgraded. Instances are immutable. <br>
+ * <br>
+ * the estimated verification costs are only reported per algorithm, as their
+ * units differ between the algorithms
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public final class CredentialAuditReport {
+
+  private final long entryCount;
+  private final long malformedCount;
+  private final List<Long> malformedLineNumbers;
+  private final Map<Algorithm, AlgorithmAudit> algorithmAudits;
+
+  /**
+   * constructor
+   * 
+   * @param entryCount
+   *          the number of non-blank lines
+   * @param malformedCount
+   *          the number of lines not holding a supported, well-formed hash
+   * @param malformedLineNumbers
+   *          the line numbers, starting at 1, of the first malformed lines
+   * @param algorithmAudits
+   *          the statistics of each algorithm found
+   */
+  public CredentialAuditReport(long entryCount, long malformedCount, List<Long> malformedLineNumbers,
+      Collection<AlgorithmAudit> algorithmAudits) {
+    super();
+    if (malformedLineNumbers == null || algorithmAudits == null) {
+      throw new IllegalArgumentException("The malformed line numbers and algorithm audits may not be null!");
+    }
+    this.entryCount = entryCount;
+    this.malformedCount = malformedCount;
+    this.malformedLineNumbers = Collections.unmodifiableList(new ArrayList<Long>(malformedLineNumbers));
+    Map<Algorithm, AlgorithmAudit> audits = new EnumMap<Algorithm, AlgorithmAudit>(Algorithm.class);
+    for (AlgorithmAudit algorithmAudit : algorithmAudits) {
+      audits.put(algorithmAudit.getAlgorithm(), algorithmAudit);
+    }
+    this.algorithmAudits = Collections.unmodifiableMap(audits);
+  }
+
+  /**
+   * @return the number of non-blank lines
+   */
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * @return the number of lines not holding a supported, well-formed hash
+   */
+  public long getMalformedCount() {
+    return malformedCount;
+  }
+
+  /**
+   * @return the line numbers, starting at 1, of the first malformed lines in
+   *         ascending order
+   */
+  public List<Long> getMalformedLineNumbers() {
+    return malformedLineNumbers;
+  }
+
+  /**
+   * @return the statistics of each algorithm found in the order of
+   *         {@link Algorithm}
+   */
+  public Map<Algorithm, AlgorithmAudit> getAlgorithmAudits() {
+    return algorithmAudits;
+  }
+
+  /**
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @return the statistics of the algorithm or null if no hash uses it
+   */
+  public AlgorithmAudit getAlgorithmAudit(Algorithm algorithm) {
+    return algorithmAudits.get(algorithm);
+  }
+
+  /**
+   * @return the number of hashes replaced by an upgraded hash once a
+   *         verification against them succeeds
+   */
+  public long getUpgradeCount() {
+    long result = 0;
+    for (AlgorithmAudit algorithmAudit : algorithmAudits.values()) {
+      result += algorithmAudit.getUpgradeCount();
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of hashes whose rounds exceed the verification ceiling
+   */
+  public long getRefusedCount() {
+    long result = 0;
+    for (AlgorithmAudit algorithmAudit : algorithmAudits.values()) {
+      result += algorithmAudit.getRefusedCount();
+    }
+    return result;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append(entryCount).append(" entries, ").append(malformedCount).append(" malformed");
+    if (!malformedLineNumbers.isEmpty()) {
+      result.append(" (lines ").append(malformedLineNumbers).append(')');
+    }
+    result.append(", ").append(getUpgradeCount()).append(" to be upgraded, ").append(getRefusedCount())
+        .append(" refused");
+    for (AlgorithmAudit algorithmAudit : algorithmAudits.values()) {
+      result.append('\n').append(algorithmAudit);
+    }
+    return result.toString();
+  }
+
+}
@@ -0,0 +1,20 @@
+package me.sniggle.security.digest.config;
+
+/**
+ * This enumeration lists the available implementations of the message digests
+ * used by the SHA-CRYPT hash generators
+ * 
+ * @author iulius
+ * @since 0.0.1
+ */
+public enum DigestBackend {
+  /**
+   * the message digests provided by the installed JCA providers
+   */
+  JCA,
+  /**
+   * the built-in SHA-2 implementation, which additionally reuses precomputed
+   * midstates for round inputs sharing a common prefix
+   */
+  NATIVE;
+}
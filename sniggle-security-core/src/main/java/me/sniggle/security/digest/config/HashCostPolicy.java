@@ -0,0 +1,262 @@
+package me.sniggle.security.digest.config;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+
+/**
+ * Simple immutable class defining the cost of stored hashes: the algorithm and
+ * band of rounds new hashes are created with, and a hard ceiling of rounds a
+ * hash may have in order to be verified at all, so that a stored hash cannot
+ * pin a core for minutes. <br>
+ * <br>
+ * hashes of a different algorithm or with rounds outside the band, in either
+ * direction, need to be rehashed, which happens on the next successful login.
+ * The same applies to {@link Algorithm#ARGON2ID} hashes with a memory cost or
+ * parallelism other than the target one.
+ * <br>
+ * <br>
+ * as the rounds of the algorithms differ in scale, e.g. thousands of SHA-CRYPT
+ * rounds against a few Argon2id passes over the memory, the ceiling can be
+ * overridden per algorithm; {@link Algorithm#ARGON2ID} hashes are limited to
+ * {@link #DEFAULT_MAXIMUM_VERIFICATION_PASSES}, PBKDF2 hashes to
+ * {@link #DEFAULT_MAXIMUM_VERIFICATION_ITERATIONS} and bcrypt hashes to a cost
+ * of {@link #DEFAULT_MAXIMUM_VERIFICATION_COST} unless configured otherwise
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public final class HashCostPolicy {
+
+  /**
+   * the default verification ceiling
+   */
+  public static final int DEFAULT_MAXIMUM_VERIFICATION_ROUNDS = 100000;
+
+  /**
+   * the default verification ceiling of {@link Algorithm#ARGON2ID} hashes
+   */
+  public static final int DEFAULT_MAXIMUM_VERIFICATION_PASSES = 10;
+
+  /**
+   * the default verification ceiling of {@link Algorithm#PBKDF2_SHA256} and
+   * {@link Algorithm#PBKDF2_SHA512} hashes
+   */
+  public static final int DEFAULT_MAXIMUM_VERIFICATION_ITERATIONS = 2000000;
+
+  /**
+   * the default verification ceiling of the logarithmic cost of
+   * {@link Algorithm#BCRYPT_2A} and {@link Algorithm#BCRYPT_2B} hashes
+   */
+  public static final int DEFAULT_MAXIMUM_VERIFICATION_COST = 14;
+
+  /**
+   * the default memory cost in KiB of new {@link Algorithm#ARGON2ID} hashes
+   */
+  public static final int DEFAULT_TARGET_MEMORY_COST = 19456;
+
+  /**
+   * the default parallelism of new {@link Algorithm#ARGON2ID} hashes
+   */
+  public static final int DEFAULT_TARGET_PARALLELISM = 2;
+
+  private final Algorithm targetAlgorithm;
+  private final RoundConfiguration targetRounds;
+  private final int targetMemoryCost;
+  private final int targetParallelism;
+  private final int maximumVerificationRounds;
+  private final Map<Algorithm, Integer> algorithmVerificationRounds;
+
+  /**
+   * targets {@link Algorithm#ARGON2ID} using 2 passes and verifies hashes of
+   * up to {@link #DEFAULT_MAXIMUM_VERIFICATION_ROUNDS} rounds, respectively
+   * {@link #DEFAULT_MAXIMUM_VERIFICATION_PASSES} passes
+   */
+  public HashCostPolicy() {
+    this(Algorithm.ARGON2ID, new RoundConfiguration(2, 3), DEFAULT_MAXIMUM_VERIFICATION_ROUNDS);
+  }
+
+  /**
+   * targets {@link Algorithm#SHA512_CRYPT}, the rounds being SHA-CRYPT rounds
+   * 
+   * @param targetRounds
+   *          the band of rounds new hashes are created with, e.g. as
+   *          calibrated by {@link me.sniggle.security.digest.impl.RoundCalibrator}
+   * @param maximumVerificationRounds
+   *          the maximum rounds of a hash to be verified
+   */
+  public HashCostPolicy(RoundConfiguration targetRounds, int maximumVerificationRounds) {
+    this(Algorithm.SHA512_CRYPT, targetRounds, maximumVerificationRounds);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param targetAlgorithm
+   *          the algorithm new hashes are created with
+   * @param targetRounds
+   *          the band of rounds new hashes are created with
+   * @param maximumVerificationRounds
+   *          the maximum rounds of a hash to be verified, at least the maximum
+   *          of the target band unless the target has a default ceiling of
+   *          its own, i.e. is {@link Algorithm#ARGON2ID}, PBKDF2 or bcrypt
+   */
+  public HashCostPolicy(Algorithm targetAlgorithm, RoundConfiguration targetRounds, int maximumVerificationRounds) {
+    this(targetAlgorithm, targetRounds, DEFAULT_TARGET_MEMORY_COST, DEFAULT_TARGET_PARALLELISM,
+        maximumVerificationRounds, getDefaultAlgorithmVerificationRounds(targetAlgorithm, targetRounds));
+  }
+
+  private HashCostPolicy(Algorithm targetAlgorithm, RoundConfiguration targetRounds, int targetMemoryCost,
+      int targetParallelism, int maximumVerificationRounds, Map<Algorithm, Integer> algorithmVerificationRounds) {
+    super();
+    if (targetAlgorithm == null || targetRounds == null) {
+      throw new IllegalArgumentException("The target algorithm and rounds may not be null!");
+    }
+    if (targetRounds.getMinimumRounds() < 1 || targetRounds.getMaximumRounds() <= targetRounds.getMinimumRounds()) {
+      throw new IllegalArgumentException("The target rounds must be a positive, non-empty range");
+    }
+    if (targetParallelism < 1 || targetMemoryCost < 8 * targetParallelism) {
+      throw new IllegalArgumentException("The target memory cost must be at least 8 KiB per lane");
+    }
+    this.targetAlgorithm = targetAlgorithm;
+    this.targetRounds = targetRounds;
+    this.targetMemoryCost = targetMemoryCost;
+    this.targetParallelism = targetParallelism;
+    this.maximumVerificationRounds = maximumVerificationRounds;
+    this.algorithmVerificationRounds = Collections.unmodifiableMap(algorithmVerificationRounds);
+    if (getMaximumVerificationRounds(targetAlgorithm) < targetRounds.getMaximumRounds()) {
+      throw new IllegalArgumentException("The verification ceiling may not be below the target rounds");
+    }
+  }
+
+  private static Map<Algorithm, Integer> getDefaultAlgorithmVerificationRounds(Algorithm targetAlgorithm,
+      RoundConfiguration targetRounds) {
+    Map<Algorithm, Integer> result = new EnumMap<Algorithm, Integer>(Algorithm.class);
+    result.put(Algorithm.ARGON2ID, DEFAULT_MAXIMUM_VERIFICATION_PASSES);
+    result.put(Algorithm.PBKDF2_SHA256, DEFAULT_MAXIMUM_VERIFICATION_ITERATIONS);
+    result.put(Algorithm.PBKDF2_SHA512, DEFAULT_MAXIMUM_VERIFICATION_ITERATIONS);
+    result.put(Algorithm.BCRYPT_2A, DEFAULT_MAXIMUM_VERIFICATION_COST);
+    result.put(Algorithm.BCRYPT_2B, DEFAULT_MAXIMUM_VERIFICATION_COST);
+    Integer ceiling = result.get(targetAlgorithm);
+    if (ceiling != null && targetRounds != null) {
+      result.put(targetAlgorithm, Math.max(ceiling.intValue(), targetRounds.getMaximumRounds()));
+    }
+    return result;
+  }
+
+  /**
+   * creates a copy of this policy using a different verification ceiling for
+   * the hashes of the algorithm
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @param maximumVerificationRounds
+   *          the maximum rounds of a hash of the algorithm to be verified
+   * @return the new policy
+   */
+  public HashCostPolicy withMaximumVerificationRounds(Algorithm algorithm, int maximumVerificationRounds) {
+    if (algorithm == null) {
+      throw new IllegalArgumentException("The algorithm may not be null!");
+    }
+    Map<Algorithm, Integer> ceilings = new EnumMap<Algorithm, Integer>(Algorithm.class);
+    ceilings.putAll(algorithmVerificationRounds);
+    ceilings.put(algorithm, maximumVerificationRounds);
+    return new HashCostPolicy(targetAlgorithm, targetRounds, targetMemoryCost, targetParallelism,
+        this.maximumVerificationRounds, ceilings);
+  }
+
+  /**
+   * creates a copy of this policy creating {@link Algorithm#ARGON2ID} hashes
+   * with a different memory cost and parallelism
+   * 
+   * @param targetMemoryCost
+   *          the memory cost in KiB of new hashes, at least 8 KiB per lane
+   * @param targetParallelism
+   *          the parallelism of new hashes
+   * @return the new policy
+   */
+  public HashCostPolicy withTargetMemoryCost(int targetMemoryCost, int targetParallelism) {
+    return new HashCostPolicy(targetAlgorithm, targetRounds, targetMemoryCost, targetParallelism,
+        maximumVerificationRounds, algorithmVerificationRounds);
+  }
+
+  /**
+   * @return the algorithm new hashes are created with
+   */
+  public Algorithm getTargetAlgorithm() {
+    return targetAlgorithm;
+  }
+
+  /**
+   * @return the band of rounds new hashes are created with
+   */
+  public RoundConfiguration getTargetRounds() {
+    return targetRounds;
+  }
+
+  /**
+   * @return the memory cost in KiB of new {@link Algorithm#ARGON2ID} hashes
+   */
+  public int getTargetMemoryCost() {
+    return targetMemoryCost;
+  }
+
+  /**
+   * @return the parallelism of new {@link Algorithm#ARGON2ID} hashes
+   */
+  public int getTargetParallelism() {
+    return targetParallelism;
+  }
+
+  /**
+   * @return the maximum rounds of a hash to be verified, unless overridden
+   *         for its algorithm
+   */
+  public int getMaximumVerificationRounds() {
+    return maximumVerificationRounds;
+  }
+
+  /**
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @return the maximum rounds of a hash of the algorithm to be verified
+   */
+  public int getMaximumVerificationRounds(Algorithm algorithm) {
+    Integer result = algorithmVerificationRounds.get(algorithm);
+    return (result == null) ? maximumVerificationRounds : result.intValue();
+  }
+
+  /**
+   * 
+   * @param parsedHash
+   *          the parsed hash
+   * @return true if the rounds of the hash do not exceed the verification
+   *         ceiling
+   */
+  public boolean isVerificationAllowed(ParsedHash parsedHash) {
+    return parsedHash.getRounds() <= getMaximumVerificationRounds(parsedHash.getAlgorithm());
+  }
+
+  /**
+   * 
+   * @param parsedHash
+   *          the parsed hash
+   * @return true if the hash does not use the target algorithm, its rounds
+   *         are outside of the target band or, for {@link Algorithm#ARGON2ID},
+   *         its memory cost or parallelism differ from the target ones
+   */
+  public boolean needsRehash(ParsedHash parsedHash) {
+    int rounds = parsedHash.getRounds();
+    if (parsedHash.getAlgorithm() != targetAlgorithm || rounds < targetRounds.getMinimumRounds()
+        || rounds > targetRounds.getMaximumRounds()) {
+      return true;
+    }
+    return targetAlgorithm == Algorithm.ARGON2ID
+        && (parsedHash.getMemoryCost() != targetMemoryCost || parsedHash.getParallelism() != targetParallelism);
+  }
+
+}
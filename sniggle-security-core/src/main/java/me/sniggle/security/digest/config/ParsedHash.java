@@ -0,0 +1,166 @@
+package me.sniggle.security.digest.config;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
+/**
+ * This class holds the components of a formatted hash value as parsed by
+ * {@link me.sniggle.security.digest.HashGenerator#parseHash(String)}.
+ * Instances are immutable, so a stored hash can be parsed once and the parsed
+ * form be cached and verified against any number of times
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public final class ParsedHash {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Algorithm algorithm;
+  private final int rounds;
+  private final int memoryCost;
+  private final int parallelism;
+  private final String salt;
+  private final byte[] saltBytes;
+  private final byte[] digest;
+  private final String formattedHash;
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          the algorithm of the hash
+   * @param rounds
+   *          the number of rounds of the hash
+   * @param salt
+   *          the salt of the hash
+   * @param digest
+   *          the raw digest bytes, decoded from the hash
+   * @param formattedHash
+   *          the formatted hash the components were parsed from
+   */
+  public ParsedHash(Algorithm algorithm, int rounds, String salt, byte[] digest, String formattedHash) {
+    this(algorithm, rounds, 0, 0, salt, digest, formattedHash);
+  }
+
+  /**
+   * constructor for hashes of a memory-hard algorithm, i.e.
+   * {@link Algorithm#ARGON2ID}
+   * 
+   * @param algorithm
+   *          the algorithm of the hash
+   * @param rounds
+   *          the number of rounds of the hash
+   * @param memoryCost
+   *          the memory cost of the hash in KiB
+   * @param parallelism
+   *          the parallelism of the hash
+   * @param salt
+   *          the salt of the hash
+   * @param digest
+   *          the raw digest bytes, decoded from the hash
+   * @param formattedHash
+   *          the formatted hash the components were parsed from
+   */
+  public ParsedHash(Algorithm algorithm, int rounds, int memoryCost, int parallelism, String salt, byte[] digest,
+      String formattedHash) {
+    super();
+    if (algorithm == null || salt == null || digest == null || formattedHash == null) {
+      throw new IllegalArgumentException("The algorithm, salt, digest and formatted hash may not be null!");
+    }
+    this.algorithm = algorithm;
+    this.rounds = rounds;
+    this.memoryCost = memoryCost;
+    this.parallelism = parallelism;
+    this.salt = salt;
+    this.saltBytes = salt.getBytes(UTF_8);
+    this.digest = digest.clone();
+    this.formattedHash = formattedHash;
+  }
+
+  /**
+   * @return the algorithm
+   */
+  public Algorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * @return the rounds
+   */
+  public int getRounds() {
+    return rounds;
+  }
+
+  /**
+   * @return the memory cost in KiB, 0 if the algorithm is not memory-hard
+   */
+  public int getMemoryCost() {
+    return memoryCost;
+  }
+
+  /**
+   * @return the parallelism, 0 if the algorithm is not memory-hard
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return the salt
+   */
+  public String getSalt() {
+    return salt;
+  }
+
+  /**
+   * @return a copy of the UTF-8 encoded salt
+   */
+  public byte[] getSaltBytes() {
+    return saltBytes.clone();
+  }
+
+  /**
+   * @return a copy of the raw digest bytes
+   */
+  public byte[] getDigest() {
+    return digest.clone();
+  }
+
+  /**
+   * @return the length of the raw digest in bytes
+   */
+  public int getDigestLength() {
+    return digest.length;
+  }
+
+  /**
+   * @return the formatted hash
+   */
+  public String getFormattedHash() {
+    return formattedHash;
+  }
+
+  /**
+   * compares the computed digest with the parsed one in constant time
+   * 
+   * @param computedDigest
+   *          the digest computed from a plain text
+   * @return true if both digests are equal
+   */
+  public boolean matchesDigest(byte[] computedDigest) {
+    return computedDigest != null && MessageDigest.isEqual(digest, computedDigest);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return formattedHash;
+  }
+
+}
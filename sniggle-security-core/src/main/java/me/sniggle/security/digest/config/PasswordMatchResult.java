@@ -12,6 +12,7 @@ package me.sniggle.security.digest.config;
 public class PasswordMatchResult {
   private boolean matching;
   private String updatedHash;
+  private boolean rejected;
 
   /**
    * @param matching
@@ -23,6 +24,16 @@ public class PasswordMatchResult {
     this.updatedHash = updatedHash;
   }
 
+  /**
+   * @param matching
+   * @param updatedHash
+   * @param rejected
+   */
+  public PasswordMatchResult(boolean matching, String updatedHash, boolean rejected) {
+    this(matching, updatedHash);
+    this.rejected = rejected;
+  }
+
   /**
    * @return the matching
    */
@@ -37,6 +48,16 @@ public class PasswordMatchResult {
     return updatedHash;
   }
 
+  /**
+   * @return true if the verification has not been performed at all because
+   *         the verifying service was saturated or the plain text exceeds the
+   *         maximum password length, in which case {@link #isMatching()} is
+   *         false and the caller may shed the request
+   */
+  public boolean isRejected() {
+    return rejected;
+  }
+
   /**
    * @param matching
    *          the matching to set
@@ -53,4 +74,12 @@ public class PasswordMatchResult {
     this.updatedHash = updatedHash;
   }
 
+  /**
+   * @param rejected
+   *          the rejected to set
+   */
+  public void setRejected(boolean rejected) {
+    this.rejected = rejected;
+  }
+
 }
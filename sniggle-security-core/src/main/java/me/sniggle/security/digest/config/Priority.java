@@ -0,0 +1,23 @@
+package me.sniggle.security.digest.config;
+
+/**
+ * This enumeration lists the lanes of hashing work, ordered from the most to
+ * the least urgent
+ * 
+ * @author iulius
+ * @since 0.0.1
+ */
+public enum Priority {
+  /**
+   * work a user is actively waiting for, e.g. a login
+   */
+  INTERACTIVE,
+  /**
+   * re-hashing of outdated hashes
+   */
+  UPGRADE,
+  /**
+   * bulk work like imports or nightly re-hashing
+   */
+  BULK;
+}
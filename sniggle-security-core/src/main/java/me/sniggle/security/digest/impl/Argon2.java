@@ -0,0 +1,362 @@
+package me.sniggle.security.digest.impl;
+
+import java.util.Arrays;
+
+/**
+ * The memory-hard core of Argon2id version 1.3 as specified in RFC 9106,
+ * working on a caller provided memory of 1 KiB blocks held in a single
+ * <code>long[]</code>, so that the memory can be reused across hashes. <br>
+ * <br>
+ * the segments of a slice are independent of each other and may be filled by
+ * different threads, provided all segments of a slice are completed before
+ * the next slice is started
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class Argon2 {
+
+  /**
+   * the number of 64 bit words in a block
+   */
+  static final int BLOCK_WORDS = 128;
+
+  /**
+   * the number of slices per pass
+   */
+  static final int SYNC_POINTS = 4;
+
+  private static final int BLOCK_LENGTH = BLOCK_WORDS * 8;
+  private static final int VERSION = 0x13;
+  private static final int TYPE_ARGON2ID = 2;
+
+  /**
+   * the scratch blocks of the current thread
+   */
+  private static final ThreadLocal<long[][]> SCRATCH = new ThreadLocal<long[][]>() {
+    @Override
+    protected long[][] initialValue() {
+      // R, the copy of R, the address input, the address block, zero block
+      return new long[5][BLOCK_WORDS];
+    }
+  };
+
+  private final long[] memory;
+  private final int memoryCost;
+  private final int passes;
+  private final int lanes;
+  private final int segmentLength;
+  private final int laneLength;
+
+  /**
+   * constructor
+   * 
+   * @param memory
+   *          the memory of at least {@link #getMemoryBlocks(int, int)}
+   *          blocks
+   * @param memoryCost
+   *          the memory cost m in KiB
+   * @param passes
+   *          the number of passes t
+   * @param lanes
+   *          the degree of parallelism p
+   */
+  Argon2(long[] memory, int memoryCost, int passes, int lanes) {
+    super();
+    int memoryBlocks = getMemoryBlocks(memoryCost, lanes);
+    if (passes < 1 || lanes < 1 || memory.length < (long) memoryBlocks * BLOCK_WORDS) {
+      throw new IllegalArgumentException("Invalid Argon2 parameters or insufficient memory");
+    }
+    this.memory = memory;
+    this.memoryCost = memoryCost;
+    this.passes = passes;
+    this.lanes = lanes;
+    this.segmentLength = memoryBlocks / (lanes * SYNC_POINTS);
+    this.laneLength = segmentLength * SYNC_POINTS;
+  }
+
+  /**
+   * 
+   * @param memoryCost
+   *          the memory cost m in KiB
+   * @param lanes
+   *          the degree of parallelism p
+   * @return the number of blocks actually used: m rounded down to a multiple
+   *         of 4 p, at least 8 p
+   */
+  static int getMemoryBlocks(int memoryCost, int lanes) {
+    int blocks = Math.max(memoryCost, 2 * SYNC_POINTS * lanes);
+    return blocks / (lanes * SYNC_POINTS) * (lanes * SYNC_POINTS);
+  }
+
+  /**
+   * 
+   * @return the number of passes t
+   */
+  int getPasses() {
+    return passes;
+  }
+
+  /**
+   * 
+   * @return the degree of parallelism p
+   */
+  int getLanes() {
+    return lanes;
+  }
+
+  /**
+   * computes H0 and the first two blocks of every lane
+   * 
+   * @param password
+   *          the buffer holding the password
+   * @param passwordLength
+   *          the number of bytes of the password
+   * @param salt
+   *          the salt
+   * @param secret
+   *          the secret key K or null
+   * @param associatedData
+   *          the associated data X or null
+   * @param tagLength
+   *          the length T of the tag
+   */
+  void initialize(byte[] password, int passwordLength, byte[] salt, byte[] secret, byte[] associatedData,
+      int tagLength) {
+    Blake2b blake2b = new Blake2b(Blake2b.MAXIMUM_DIGEST_LENGTH);
+    blake2b.updateInt(lanes);
+    blake2b.updateInt(tagLength);
+    blake2b.updateInt(memoryCost);
+    blake2b.updateInt(passes);
+    blake2b.updateInt(VERSION);
+    blake2b.updateInt(TYPE_ARGON2ID);
+    blake2b.updateInt(passwordLength);
+    blake2b.update(password, 0, passwordLength);
+    updateWithLength(blake2b, salt);
+    updateWithLength(blake2b, secret);
+    updateWithLength(blake2b, associatedData);
+    byte[] h0 = new byte[Blake2b.MAXIMUM_DIGEST_LENGTH];
+    blake2b.digest(h0, 0);
+    byte[] block = new byte[BLOCK_LENGTH];
+    for (int lane = 0; lane < lanes; lane++) {
+      for (int column = 0; column < 2; column++) {
+        blake2b.reset(Blake2b.MAXIMUM_DIGEST_LENGTH);
+        blake2b.updateInt(BLOCK_LENGTH);
+        blake2b.update(h0, 0, h0.length);
+        blake2b.updateInt(column);
+        blake2b.updateInt(lane);
+        blake2b.digestLong(block, 0, BLOCK_LENGTH);
+        int offset = (lane * laneLength + column) * BLOCK_WORDS;
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+          memory[offset + i] = getLong(block, i * 8);
+        }
+      }
+    }
+    Arrays.fill(h0, (byte) 0);
+    Arrays.fill(block, (byte) 0);
+  }
+
+  private static void updateWithLength(Blake2b blake2b, byte[] value) {
+    if (value == null) {
+      blake2b.updateInt(0);
+    } else {
+      blake2b.updateInt(value.length);
+      blake2b.update(value, 0, value.length);
+    }
+  }
+
+  /**
+   * fills the segment of the lane in the slice of the pass
+   * 
+   * @param pass
+   *          the pass
+   * @param slice
+   *          the slice
+   * @param lane
+   *          the lane
+   */
+  void fillSegment(int pass, int slice, int lane) {
+    long[][] scratch = SCRATCH.get();
+    boolean dataIndependent = pass == 0 && slice < SYNC_POINTS / 2;
+    long[] input = scratch[2];
+    long[] addresses = scratch[3];
+    if (dataIndependent) {
+      Arrays.fill(input, 0L);
+      input[0] = pass;
+      input[1] = lane;
+      input[2] = slice;
+      input[3] = (long) laneLength * lanes;
+      input[4] = passes;
+      input[5] = TYPE_ARGON2ID;
+    }
+    int startIndex = 0;
+    if (pass == 0 && slice == 0) {
+      // the first two blocks have been computed by initialize
+      startIndex = 2;
+      if (dataIndependent) {
+        nextAddresses(scratch);
+      }
+    }
+    int currentOffset = lane * laneLength + slice * segmentLength + startIndex;
+    int previousOffset = (currentOffset % laneLength == 0) ? currentOffset + laneLength - 1 : currentOffset - 1;
+    for (int index = startIndex; index < segmentLength; index++, currentOffset++, previousOffset++) {
+      if (currentOffset % laneLength == 1) {
+        previousOffset = currentOffset - 1;
+      }
+      long pseudoRandom;
+      if (dataIndependent) {
+        if (index % BLOCK_WORDS == 0) {
+          nextAddresses(scratch);
+        }
+        pseudoRandom = addresses[index % BLOCK_WORDS];
+      } else {
+        pseudoRandom = memory[previousOffset * BLOCK_WORDS];
+      }
+      int referenceLane = (pass == 0 && slice == 0) ? lane : (int) ((pseudoRandom >>> 32) % lanes);
+      int referenceIndex = getReferenceIndex(pass, slice, index, pseudoRandom & 0xffffffffL, referenceLane == lane);
+      fillBlock(scratch, memory, previousOffset * BLOCK_WORDS, memory, (referenceLane * laneLength + referenceIndex)
+          * BLOCK_WORDS, memory, currentOffset * BLOCK_WORDS, pass > 0);
+    }
+  }
+
+  private int getReferenceIndex(int pass, int slice, int index, long pseudoRandom, boolean sameLane) {
+    long areaSize;
+    if (pass == 0) {
+      if (slice == 0) {
+        areaSize = index - 1;
+      } else if (sameLane) {
+        areaSize = slice * segmentLength + index - 1;
+      } else {
+        areaSize = slice * segmentLength + ((index == 0) ? -1 : 0);
+      }
+    } else if (sameLane) {
+      areaSize = laneLength - segmentLength + index - 1;
+    } else {
+      areaSize = laneLength - segmentLength + ((index == 0) ? -1 : 0);
+    }
+    long relativePosition = (pseudoRandom * pseudoRandom) >>> 32;
+    relativePosition = areaSize - 1 - ((areaSize * relativePosition) >>> 32);
+    long startPosition = (pass == 0 || slice == SYNC_POINTS - 1) ? 0 : (long) (slice + 1) * segmentLength;
+    return (int) ((startPosition + relativePosition) % laneLength);
+  }
+
+  private static void nextAddresses(long[][] scratch) {
+    long[] input = scratch[2];
+    long[] addresses = scratch[3];
+    long[] zero = scratch[4];
+    input[6]++;
+    fillBlock(scratch, zero, 0, input, 0, addresses, 0, false);
+    fillBlock(scratch, zero, 0, addresses, 0, addresses, 0, false);
+  }
+
+  /**
+   * the compression function G: computes R = previous XOR reference, applies
+   * the BLAKE2b round function to the rows and columns of R, and stores the
+   * result XOR R, additionally XORed with the old target block if requested
+   */
+  private static void fillBlock(long[][] scratch, long[] previous, int previousOffset, long[] reference,
+      int referenceOffset, long[] target, int targetOffset, boolean withXor) {
+    long[] r = scratch[0];
+    long[] q = scratch[1];
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      r[i] = previous[previousOffset + i] ^ reference[referenceOffset + i];
+    }
+    if (withXor) {
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        q[i] = r[i] ^ target[targetOffset + i];
+      }
+    } else {
+      System.arraycopy(r, 0, q, 0, BLOCK_WORDS);
+    }
+    for (int i = 0; i < 8; i++) {
+      int row = 16 * i;
+      round(r, row, row + 1, row + 2, row + 3, row + 4, row + 5, row + 6, row + 7, row + 8, row + 9, row + 10, row + 11,
+          row + 12, row + 13, row + 14, row + 15);
+    }
+    for (int i = 0; i < 8; i++) {
+      int column = 2 * i;
+      round(r, column, column + 1, column + 16, column + 17, column + 32, column + 33, column + 48, column + 49,
+          column + 64, column + 65, column + 80, column + 81, column + 96, column + 97, column + 112, column + 113);
+    }
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      target[targetOffset + i] = q[i] ^ r[i];
+    }
+  }
+
+  private static void round(long[] v, int v0, int v1, int v2, int v3, int v4, int v5, int v6, int v7, int v8, int v9,
+      int v10, int v11, int v12, int v13, int v14, int v15) {
+    mix(v, v0, v4, v8, v12);
+    mix(v, v1, v5, v9, v13);
+    mix(v, v2, v6, v10, v14);
+    mix(v, v3, v7, v11, v15);
+    mix(v, v0, v5, v10, v15);
+    mix(v, v1, v6, v11, v12);
+    mix(v, v2, v7, v8, v13);
+    mix(v, v3, v4, v9, v14);
+  }
+
+  /**
+   * the BLAKE2b mixing function with the multiplications added by Argon2
+   */
+  private static void mix(long[] v, int a, int b, int c, int d) {
+    long va = v[a];
+    long vb = v[b];
+    long vc = v[c];
+    long vd = v[d];
+    va = va + vb + 2 * (va & 0xffffffffL) * (vb & 0xffffffffL);
+    vd = Long.rotateRight(vd ^ va, 32);
+    vc = vc + vd + 2 * (vc & 0xffffffffL) * (vd & 0xffffffffL);
+    vb = Long.rotateRight(vb ^ vc, 24);
+    va = va + vb + 2 * (va & 0xffffffffL) * (vb & 0xffffffffL);
+    vd = Long.rotateRight(vd ^ va, 16);
+    vc = vc + vd + 2 * (vc & 0xffffffffL) * (vd & 0xffffffffL);
+    vb = Long.rotateRight(vb ^ vc, 63);
+    v[a] = va;
+    v[b] = vb;
+    v[c] = vc;
+    v[d] = vd;
+  }
+
+  /**
+   * XORs the last blocks of all lanes and hashes them into the tag
+   * 
+   * @param tag
+   *          the buffer receiving the tag, its length is the tag length T
+   */
+  void finish(byte[] tag) {
+    long[] last = SCRATCH.get()[0];
+    int lastOffset = (laneLength - 1) * BLOCK_WORDS;
+    System.arraycopy(memory, lastOffset, last, 0, BLOCK_WORDS);
+    for (int lane = 1; lane < lanes; lane++) {
+      int offset = (lane * laneLength + laneLength - 1) * BLOCK_WORDS;
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        last[i] ^= memory[offset + i];
+      }
+    }
+    byte[] block = new byte[BLOCK_LENGTH];
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      putLong(last[i], block, i * 8);
+    }
+    Arrays.fill(last, 0L);
+    Blake2b blake2b = new Blake2b(Math.min(tag.length, Blake2b.MAXIMUM_DIGEST_LENGTH));
+    blake2b.updateInt(tag.length);
+    blake2b.update(block, 0, BLOCK_LENGTH);
+    blake2b.digestLong(tag, 0, tag.length);
+    Arrays.fill(block, (byte) 0);
+  }
+
+  private static long getLong(byte[] source, int offset) {
+    return (source[offset] & 0xffL) | ((source[offset + 1] & 0xffL) << 8) | ((source[offset + 2] & 0xffL) << 16)
+        | ((source[offset + 3] & 0xffL) << 24) | ((source[offset + 4] & 0xffL) << 32)
+        | ((source[offset + 5] & 0xffL) << 40) | ((source[offset + 6] & 0xffL) << 48)
+        | ((source[offset + 7] & 0xffL) << 56);
+  }
+
+  private static void putLong(long value, byte[] target, int offset) {
+    for (int i = 0; i < 8; i++) {
+      target[offset + i] = (byte) (value >>> (i * 8));
+    }
+  }
+
+}
@@ -0,0 +1,645 @@
+package me.sniggle.security.digest.impl;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.HashCostPolicy;
+import me.sniggle.security.digest.config.ParsedHash;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements the memory-hard Argon2id (RFC 9106) in the PHC string
+ * format $argon2id$v=19$m=memory,t=passes,p=lanes$salt$tag, salt and tag being
+ * standard base 64 encoded without padding. The rounds of this generator are
+ * the passes t over the memory; new hashes use the minimum passes of the round
+ * configuration, the default instance verifying any hash of 1 to 10 passes
+ * while creating hashes with {@link #DEFAULT_PASSES}. The memory cost in KiB
+ * and the number of lanes are configured per instance. <br>
+ * <br>
+ * the memory of hashes using the memory cost of any instance is taken from a
+ * pool per size shared by all instances and reused across calls, any other
+ * memory is allocated per call. The memory in use and pooled is limited to half
+ * the heap, but at least {@link #DEFAULT_MAXIMUM_MEMORY_COST}, in total across
+ * the process, so that concurrent verifications wait for memory instead of
+ * exhausting the heap. The lanes of a hash are filled in parallel by a shared
+ * pool of daemon threads with a bounded queue, the calling thread filling
+ * lanes itself as well, so that a hash never waits for a saturated pool. As
+ * the class is immutable a single instance, e.g. the one returned by
+ * {@link #getInstance()}, may be shared across threads
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class Argon2idHashGenerator extends BaseHashGenerator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Argon2idHashGenerator.class);
+
+  /**
+   * the passes of new hashes of the default instance
+   */
+  public static final int DEFAULT_PASSES = 2;
+
+  /**
+   * the default memory cost in KiB
+   */
+  public static final int DEFAULT_MEMORY_COST = HashCostPolicy.DEFAULT_TARGET_MEMORY_COST;
+
+  /**
+   * the default number of lanes
+   */
+  public static final int DEFAULT_PARALLELISM = HashCostPolicy.DEFAULT_TARGET_PARALLELISM;
+
+  /**
+   * the default maximum memory cost in KiB of a hash to be verified
+   */
+  public static final int DEFAULT_MAXIMUM_MEMORY_COST = 262144;
+
+  private static final int MAXIMUM_MEMORY_COST = Integer.MAX_VALUE / Argon2.BLOCK_WORDS;
+  private static final int MAXIMUM_PARALLELISM = 0xffffff;
+  private static final int TAG_LENGTH = 32;
+  private static final int MINIMUM_TAG_LENGTH = 4;
+  private static final int MAXIMUM_TAG_LENGTH = 1024;
+  private static final int SALT_LENGTH = 16;
+  private static final int MINIMUM_SALT_LENGTH = 8;
+  private static final int MAXIMUM_SALT_LENGTH = 64;
+  private static final String VERSION = "v=19";
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /**
+   * the pooled memories by number of blocks, a pool being created for the
+   * memory cost of every instance
+   */
+  private static final ConcurrentMap<Integer, BlockingQueue<long[]>> MEMORY_POOLS = new ConcurrentHashMap<Integer, BlockingQueue<long[]>>();
+
+  /**
+   * the limit of the memory in use and pooled in KiB, i.e. blocks
+   */
+  private static final int MEMORY_LIMIT = (int) Math.min(MAXIMUM_MEMORY_COST, Math.max(DEFAULT_MAXIMUM_MEMORY_COST,
+      Runtime.getRuntime().maxMemory() / 2048));
+
+  /**
+   * the KiB, i.e. blocks, which may still be allocated
+   */
+  private static final Semaphore MEMORY = new Semaphore(MEMORY_LIMIT, true);
+  private static final long MEMORY_WAIT_MILLIS = 50L;
+
+  private static final Argon2idHashGenerator INSTANCE = new Argon2idHashGenerator();
+
+  private final int passes;
+  private final int memoryCost;
+  private final int parallelism;
+  private final int maximumMemoryCost;
+  private final Executor laneExecutor;
+
+  /**
+   * 
+   * @return the shared instance using the default configuration
+   */
+  public static Argon2idHashGenerator getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * creates hashes with 2 passes, verifying hashes of 1 to 10 passes, and the
+   * default memory cost and parallelism
+   */
+  public Argon2idHashGenerator() {
+    this(new RoundConfiguration(1, 10), DEFAULT_PASSES, DEFAULT_MEMORY_COST, DEFAULT_PARALLELISM,
+        DEFAULT_MAXIMUM_MEMORY_COST, null);
+  }
+
+  /**
+   * 
+   * @param roundConfiguration
+   *          the configuration of the passes
+   */
+  public Argon2idHashGenerator(RoundConfiguration roundConfiguration) {
+    this(roundConfiguration, DEFAULT_MEMORY_COST, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * 
+   * @param roundConfiguration
+   *          the configuration of the passes
+   * @param memoryCost
+   *          the memory cost of new hashes in KiB, at least 8 KiB per lane
+   * @param parallelism
+   *          the number of lanes of new hashes
+   */
+  public Argon2idHashGenerator(RoundConfiguration roundConfiguration, int memoryCost, int parallelism) {
+    this(roundConfiguration, memoryCost, parallelism, Math.max(memoryCost, DEFAULT_MAXIMUM_MEMORY_COST), null);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param roundConfiguration
+   *          the configuration of the passes
+   * @param memoryCost
+   *          the memory cost of new hashes in KiB, at least 8 KiB per lane
+   * @param parallelism
+   *          the number of lanes of new hashes
+   * @param maximumMemoryCost
+   *          the maximum memory cost in KiB of a hash to be verified
+   * @param laneExecutor
+   *          the executor filling the lanes in parallel or null in order to
+   *          use the shared pool
+   */
+  public Argon2idHashGenerator(RoundConfiguration roundConfiguration, int memoryCost, int parallelism,
+      int maximumMemoryCost, Executor laneExecutor) {
+    this(roundConfiguration, 0, memoryCost, parallelism, maximumMemoryCost, laneExecutor);
+  }
+
+  private Argon2idHashGenerator(RoundConfiguration roundConfiguration, int passes, int memoryCost, int parallelism,
+      int maximumMemoryCost, Executor laneExecutor) {
+    super(Algorithm.ARGON2ID, roundConfiguration);
+    if (parallelism < 1 || parallelism > MAXIMUM_PARALLELISM) {
+      throw new IllegalArgumentException("The parallelism must be between 1 and " + MAXIMUM_PARALLELISM);
+    }
+    if (memoryCost < 2 * Argon2.SYNC_POINTS * parallelism || maximumMemoryCost < memoryCost
+        || maximumMemoryCost > MAXIMUM_MEMORY_COST) {
+      throw new IllegalArgumentException("The memory cost must be at least 8 KiB per lane and may not exceed the maximum");
+    }
+    this.passes = passes;
+    this.memoryCost = memoryCost;
+    this.parallelism = parallelism;
+    this.maximumMemoryCost = maximumMemoryCost;
+    this.laneExecutor = laneExecutor;
+    Integer pooledBlocks = Integer.valueOf(Argon2.getMemoryBlocks(memoryCost, parallelism));
+    if (!MEMORY_POOLS.containsKey(pooledBlocks)) {
+      MEMORY_POOLS.putIfAbsent(pooledBlocks, new ArrayBlockingQueue<long[]>(Runtime.getRuntime()
+          .availableProcessors()));
+    }
+  }
+
+  /**
+   * 
+   * @return the memory cost of new hashes in KiB
+   */
+  public int getMemoryCost() {
+    return memoryCost;
+  }
+
+  /**
+   * 
+   * @return the number of lanes of new hashes
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * the passes are not randomized, a random number of passes adds no security
+   * as every hash has its own salt
+   * 
+   * @return the passes of new hashes of the default instance, otherwise the
+   *         minimum passes of the round configuration
+   */
+  @Override
+  protected int getRandomRounds() {
+    return (passes > 0) ? passes : getMinimumRounds();
+  }
+
+  /**
+   * 
+   * @param testSalt
+   *          the base 64 encoded salt to verify
+   * @return the salt if it is the base 64 encoding of 8 to 64 bytes, otherwise
+   *         the encoding of a new random salt of 16 bytes
+   */
+  @Override
+  protected String verifySalt(String testSalt) {
+    if (testSalt != null) {
+      byte[] salt = StandardBase64.decodeUnpadded(testSalt, 0, testSalt.length());
+      if (salt != null && salt.length >= MINIMUM_SALT_LENGTH && salt.length <= MAXIMUM_SALT_LENGTH) {
+        return testSalt;
+      }
+      LOGGER.info("The salt is not the base 64 encoding of 8 to 64 bytes, creating a new salt");
+    }
+    byte[] salt = new byte[SALT_LENGTH];
+    RANDOM.nextBytes(salt);
+    return StandardBase64.encodeUnpadded(salt);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#hashPlainText(byte[],
+   * int, java.lang.String, int)
+   */
+  @Override
+  protected String hashPlainText(byte[] plainText, int length, String salt, int rounds) {
+    int passes = verifyRounds(rounds);
+    String actualSalt = verifySalt(salt);
+    byte[] tag = computeTag(plainText, length, StandardBase64.decodeUnpadded(actualSalt, 0, actualSalt.length()),
+        passes, memoryCost, parallelism, TAG_LENGTH);
+    if (tag == null) {
+      return null;
+    }
+    return getMagicPrefix() + VERSION + "$m=" + memoryCost + ",t=" + passes + ",p=" + parallelism + "$" + actualSalt
+        + "$" + StandardBase64.encodeUnpadded(tag);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#verifyPlainText(byte[],
+   * int, me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  protected boolean verifyPlainText(byte[] plainText, int length, ParsedHash parsedHash) {
+    Parameters parameters = Parameters.parse(parsedHash.getFormattedHash(), getMagicPrefix());
+    if (parameters == null) {
+      return false;
+    }
+    if (parameters.memoryCost > maximumMemoryCost) {
+      LOGGER.warn("The memory cost of the hash exceeds the maximum, rejecting verification!");
+      return false;
+    }
+    String salt = parsedHash.getSalt();
+    return parsedHash.matchesDigest(computeTag(plainText, length,
+        StandardBase64.decodeUnpadded(salt, 0, salt.length()), parsedHash.getRounds(), parameters.memoryCost,
+        parameters.parallelism, parameters.tagLength));
+  }
+
+  /**
+   * parses the PHC string format, rejecting other versions than 1.3 and
+   * additional parameters
+   * 
+   * @param formattedHash
+   *          the formatted hash value
+   * @return the parsed hash with the passes as rounds and the base 64 encoded
+   *         salt, or null if the formatted hash is malformed
+   */
+  @Override
+  public ParsedHash parseHash(String formattedHash) {
+    Parameters parameters = Parameters.parse(formattedHash, getMagicPrefix());
+    if (parameters == null) {
+      return null;
+    }
+    byte[] tag = StandardBase64.decodeUnpadded(formattedHash, parameters.tagStart, formattedHash.length()
+        - parameters.tagStart);
+    if (tag == null || tag.length != parameters.tagLength) {
+      return null;
+    }
+    return new ParsedHash(getAlgorithm(), parameters.passes, parameters.memoryCost, parameters.parallelism,
+        formattedHash.substring(parameters.saltStart, parameters.tagStart - 1), tag, formattedHash);
+  }
+
+  /**
+   * estimates the blocks processed by the compression function of Argon2,
+   * i.e. the 1 KiB memory blocks filled per pass, using the configured memory
+   * cost and parallelism; see {@link #estimateCost(int, ParsedHash)} for
+   * stored hashes
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param saltLength
+   *          the length of the salt in UTF-8 encoded bytes
+   * @param rounds
+   *          the number of passes
+   * @return the estimated number of compressed blocks
+   */
+  @Override
+  public long estimateCost(int passwordLength, int saltLength, int rounds) {
+    return (long) Math.max(rounds, 1) * Argon2.getMemoryBlocks(memoryCost, parallelism);
+  }
+
+  /**
+   * estimates the 1 KiB memory blocks filled when verifying against the hash,
+   * using the memory cost and parallelism stored in the hash
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param parsedHash
+   *          the parsed hash
+   * @return the estimated number of compressed blocks
+   */
+  @Override
+  public long estimateCost(int passwordLength, ParsedHash parsedHash) {
+    if (parsedHash.getMemoryCost() <= 0 || parsedHash.getParallelism() <= 0) {
+      return super.estimateCost(passwordLength, parsedHash);
+    }
+    return (long) Math.max(parsedHash.getRounds(), 1)
+        * Argon2.getMemoryBlocks(parsedHash.getMemoryCost(), parsedHash.getParallelism());
+  }
+
+  /**
+   * computes the tag in memory taken from the pool
+   * 
+   * @param plainText
+   *          the buffer holding the UTF-8 encoded plain text
+   * @param length
+   *          the number of bytes of the plain text
+   * @param salt
+   *          the decoded salt
+   * @param passes
+   *          the number of passes
+   * @param memoryCost
+   *          the memory cost in KiB
+   * @param parallelism
+   *          the number of lanes
+   * @param tagLength
+   *          the length of the tag
+   * @return the tag or null if the computation has been aborted
+   */
+  private byte[] computeTag(byte[] plainText, int length, byte[] salt, int passes, int memoryCost, int parallelism,
+      int tagLength) {
+    int blocks = Argon2.getMemoryBlocks(memoryCost, parallelism);
+    long[] memory = acquireMemory(blocks);
+    if (memory == null) {
+      return null;
+    }
+    try {
+      Argon2 argon2 = new Argon2(memory, memoryCost, passes, parallelism);
+      argon2.initialize(plainText, length, salt, null, null, tagLength);
+      for (int pass = 0; pass < passes; pass++) {
+        for (int slice = 0; slice < Argon2.SYNC_POINTS; slice++) {
+          if (isAborted()) {
+            return null;
+          }
+          fillSlice(argon2, pass, slice);
+        }
+      }
+      byte[] result = new byte[tagLength];
+      argon2.finish(result);
+      return result;
+    } finally {
+      releaseMemory(memory);
+    }
+  }
+
+  /**
+   * fills the segments of all lanes of the slice, in parallel if the hash has
+   * several lanes, and returns once all segments have been filled
+   * 
+   * @param argon2
+   *          the hash being computed
+   * @param pass
+   *          the pass
+   * @param slice
+   *          the slice
+   */
+  private void fillSlice(Argon2 argon2, int pass, int slice) {
+    int lanes = argon2.getLanes();
+    if (lanes == 1) {
+      argon2.fillSegment(pass, slice, 0);
+      return;
+    }
+    SliceTask task = new SliceTask(argon2, pass, slice);
+    Executor executor = (laneExecutor == null) ? LaneExecutorHolder.INSTANCE : laneExecutor;
+    for (int i = 1; i < lanes; i++) {
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        // the calling thread fills the remaining lanes
+        break;
+      }
+    }
+    task.run();
+    task.awaitCompletion();
+  }
+
+  /**
+   * takes a memory from the pool of its size or allocates a new memory once
+   * it fits into the limit, discarding the pooled memories if needed. A memory
+   * exceeding the limit on its own waits until no other memory is allocated
+   * 
+   * @param blocks
+   *          the number of blocks
+   * @return the memory or null if the calling thread has been interrupted
+   *         while waiting for memory
+   */
+  private static long[] acquireMemory(int blocks) {
+    BlockingQueue<long[]> pool = MEMORY_POOLS.get(Integer.valueOf(blocks));
+    long[] result = (pool == null) ? null : pool.poll();
+    if (result != null) {
+      // a pooled memory keeps the permits it has been allocated with
+      return result;
+    }
+    int permits = getPermits(blocks);
+    if (!MEMORY.tryAcquire(permits)) {
+      try {
+        // memory may be pooled again while waiting, it is discarded once more
+        do {
+          discardPooledMemory();
+        } while (!MEMORY.tryAcquire(permits, MEMORY_WAIT_MILLIS, TimeUnit.MILLISECONDS));
+      } catch (InterruptedException e) {
+        LOGGER.debug("Interrupted while waiting for memory, aborting the hash computation");
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+    try {
+      return new long[blocks * Argon2.BLOCK_WORDS];
+    } catch (OutOfMemoryError e) {
+      MEMORY.release(permits);
+      throw e;
+    }
+  }
+
+  /**
+   * wipes the memory and returns it to the pool of its size if there is one,
+   * it is not full and no thread waits for memory, otherwise the memory is
+   * discarded
+   * 
+   * @param memory
+   *          the memory
+   */
+  private static void releaseMemory(long[] memory) {
+    Arrays.fill(memory, 0L);
+    int blocks = memory.length / Argon2.BLOCK_WORDS;
+    BlockingQueue<long[]> pool = MEMORY_POOLS.get(Integer.valueOf(blocks));
+    if (pool == null || MEMORY.hasQueuedThreads() || !pool.offer(memory)) {
+      MEMORY.release(getPermits(blocks));
+    }
+  }
+
+  /**
+   * discards the pooled memories, so that their permits become available
+   */
+  private static void discardPooledMemory() {
+    for (BlockingQueue<long[]> pool : MEMORY_POOLS.values()) {
+      long[] memory;
+      while ((memory = pool.poll()) != null) {
+        MEMORY.release(getPermits(memory.length / Argon2.BLOCK_WORDS));
+      }
+    }
+  }
+
+  private static int getPermits(int blocks) {
+    return Math.min(blocks, MEMORY_LIMIT);
+  }
+
+  /**
+   * the parameters of a formatted hash
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class Parameters {
+
+    private final int memoryCost;
+    private final int passes;
+    private final int parallelism;
+    private final int saltStart;
+    private final int tagStart;
+    private final int tagLength;
+
+    private Parameters(int memoryCost, int passes, int parallelism, int saltStart, int tagStart, int tagLength) {
+      super();
+      this.memoryCost = memoryCost;
+      this.passes = passes;
+      this.parallelism = parallelism;
+      this.saltStart = saltStart;
+      this.tagStart = tagStart;
+      this.tagLength = tagLength;
+    }
+
+    /**
+     * parses the parameters and checks the length of salt and tag
+     * 
+     * @param formattedHash
+     *          the formatted hash
+     * @param magicPrefix
+     *          the magic prefix
+     * @return the parameters or null if the formatted hash is malformed
+     */
+    static Parameters parse(String formattedHash, String magicPrefix) {
+      String prefix = magicPrefix + VERSION + "$m=";
+      if (formattedHash == null || !formattedHash.startsWith(prefix)) {
+        return null;
+      }
+      int position = prefix.length();
+      int end = formattedHash.indexOf(",t=", position);
+      int memoryCost = (end < 0) ? -1 : parseDecimal(formattedHash, position, end);
+      position = end + 3;
+      end = (end < 0) ? -1 : formattedHash.indexOf(",p=", position);
+      int passes = (end < 0) ? -1 : parseDecimal(formattedHash, position, end);
+      position = end + 3;
+      end = (end < 0) ? -1 : formattedHash.indexOf('$', position);
+      int parallelism = (end < 0) ? -1 : parseDecimal(formattedHash, position, end);
+      if (memoryCost < 0 || passes < 1 || parallelism < 1 || parallelism > MAXIMUM_PARALLELISM
+          || memoryCost < 2 * Argon2.SYNC_POINTS * parallelism || memoryCost > MAXIMUM_MEMORY_COST) {
+        return null;
+      }
+      int saltStart = end + 1;
+      int tagStart = formattedHash.indexOf('$', saltStart) + 1;
+      if (tagStart - 1 <= saltStart || formattedHash.indexOf('$', tagStart) >= 0) {
+        return null;
+      }
+      int saltLength = getDecodedLength(tagStart - 1 - saltStart);
+      int tagLength = getDecodedLength(formattedHash.length() - tagStart);
+      if (saltLength < MINIMUM_SALT_LENGTH || saltLength > MAXIMUM_SALT_LENGTH || tagLength < MINIMUM_TAG_LENGTH
+          || tagLength > MAXIMUM_TAG_LENGTH) {
+        return null;
+      }
+      return new Parameters(memoryCost, passes, parallelism, saltStart, tagStart, tagLength);
+    }
+
+    private static int getDecodedLength(int encodedLength) {
+      return encodedLength / 4 * 3 + Math.max(encodedLength % 4 - 1, 0);
+    }
+
+  }
+
+  /**
+   * fills the segments of a slice, every thread running the task takes the
+   * next lane not taken yet until all lanes are taken
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class SliceTask implements Runnable {
+
+    private final Argon2 argon2;
+    private final int pass;
+    private final int slice;
+    private final AtomicInteger nextLane = new AtomicInteger();
+    private final CountDownLatch remainingLanes;
+    private volatile RuntimeException failure;
+
+    SliceTask(Argon2 argon2, int pass, int slice) {
+      super();
+      this.argon2 = argon2;
+      this.pass = pass;
+      this.slice = slice;
+      this.remainingLanes = new CountDownLatch(argon2.getLanes());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      int lane;
+      while ((lane = nextLane.getAndIncrement()) < argon2.getLanes()) {
+        try {
+          argon2.fillSegment(pass, slice, lane);
+        } catch (RuntimeException e) {
+          failure = e;
+        } finally {
+          remainingLanes.countDown();
+        }
+      }
+    }
+
+    /**
+     * waits for the lanes filled by other threads, the memory must not be
+     * released before, so an interrupt is deferred until all lanes are done
+     */
+    void awaitCompletion() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          remainingLanes.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+  }
+
+  /**
+   * lazily creates the shared lane executor on first use, its queue being
+   * bounded so that a saturated pool rejects lanes rather than queueing them
+   * behind other hashes
+   */
+  private static final class LaneExecutorHolder {
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final Executor INSTANCE = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(THREADS), new HashingThreadFactory("sniggle-argon2-lanes",
+            Thread.NORM_PRIORITY), new ThreadPoolExecutor.AbortPolicy());
+  }
+
+}
@@ -0,0 +1,187 @@
+package me.sniggle.security.digest.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.sniggle.security.digest.PasswordDigester;
+import me.sniggle.security.digest.PasswordMatchCallback;
+import me.sniggle.security.digest.config.PasswordMatchResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class moves password verification off the calling thread onto a
+ * dedicated, bounded pool. Once the queue limit is reached new verifications
+ * are not queued but immediately answered with a rejected
+ * {@link PasswordMatchResult}, so callers are able to shed load
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class AsyncPasswordDigester {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncPasswordDigester.class);
+
+  private final PasswordDigester passwordDigester;
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * uses one thread per available processor and allows 16 pending
+   * verifications per thread
+   * 
+   * @param passwordDigester
+   *          the digester performing the verification
+   */
+  public AsyncPasswordDigester(PasswordDigester passwordDigester) {
+    this(passwordDigester, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * 16);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param passwordDigester
+   *          the digester performing the verification
+   * @param threads
+   *          the number of verifying threads
+   * @param queueLimit
+   *          the maximum number of verifications waiting for a thread
+   */
+  public AsyncPasswordDigester(PasswordDigester passwordDigester, int threads, int queueLimit) {
+    super();
+    if (passwordDigester == null) {
+      throw new IllegalArgumentException("The password digester may not be null!");
+    }
+    if (threads < 1 || queueLimit < 1) {
+      throw new IllegalArgumentException("The number of threads and the queue limit must be positive");
+    }
+    this.passwordDigester = passwordDigester;
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+        queueLimit), new HashingThreadFactory("sniggle-async-verification", Thread.NORM_PRIORITY),
+        new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * schedules the verification of the plain text
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash to be used for verification
+   * @return the future result, which is already completed with a rejected
+   *         {@link PasswordMatchResult} if the queue is full
+   */
+  public Future<PasswordMatchResult> matchesPassword(String plainText, String formattedHash) {
+    return matchesPassword(plainText, formattedHash, null);
+  }
+
+  /**
+   * schedules the verification of the plain text and notifies the callback
+   * once it has completed. A rejection is reported to the callback on the
+   * calling thread
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash to be used for verification
+   * @param callback
+   *          the callback to be notified or null
+   * @return the future result, which is already completed with a rejected
+   *         {@link PasswordMatchResult} if the queue is full
+   */
+  public Future<PasswordMatchResult> matchesPassword(final String plainText, final String formattedHash,
+      PasswordMatchCallback callback) {
+    VerificationTask task = new VerificationTask(new Callable<PasswordMatchResult>() {
+      @Override
+      public PasswordMatchResult call() {
+        return passwordDigester.matchesPassword(plainText, formattedHash);
+      }
+    }, callback);
+    try {
+      executor.execute(task);
+      return task;
+    } catch (RejectedExecutionException e) {
+      rejectedCount.incrementAndGet();
+      LOGGER.warn("Verification queue is full, rejecting verification");
+    }
+    VerificationTask rejected = new VerificationTask(new Callable<PasswordMatchResult>() {
+      @Override
+      public PasswordMatchResult call() {
+        return new PasswordMatchResult(false, null, true);
+      }
+    }, callback);
+    rejected.run();
+    return rejected;
+  }
+
+  /**
+   * 
+   * @return the number of verifications rejected so far
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * 
+   * @return the number of verifications waiting for a thread
+   */
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * stops accepting verifications, already scheduled verifications are
+   * completed
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * the scheduled verification, notifying the callback on completion
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class VerificationTask extends FutureTask<PasswordMatchResult> {
+
+    private final PasswordMatchCallback callback;
+
+    VerificationTask(Callable<PasswordMatchResult> callable, PasswordMatchCallback callback) {
+      super(callable);
+      this.callback = callback;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.FutureTask#done()
+     */
+    @Override
+    protected void done() {
+      if (callback != null && !isCancelled()) {
+        try {
+          callback.onResult(get());
+        } catch (ExecutionException e) {
+          callback.onFailure(e.getCause());
+        } catch (InterruptedException e) {
+          // the task is done, get() does not block
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+  }
+
+}
@@ -3,13 +3,22 @@
  */
 package me.sniggle.security.digest.impl;
 
+import java.nio.CharBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import me.sniggle.security.crypto.config.RoundConfiguration;
 import me.sniggle.security.digest.HashGenerator;
 import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.ParsedHash;
 import me.sniggle.security.salt.impl.RandomSaltProvider;
 
 import org.slf4j.Logger;
@@ -17,7 +26,17 @@ import org.slf4j.LoggerFactory;
 
 /**
  * The base class for generating hashes, assembling hash algorithm independent
- * methods
+ * methods. Implementations are immutable and may be shared between threads. <br>
+ * <br>
+ * plain texts given as characters, no matter whether {@link String},
+ * <code>char[]</code> or {@link CharBuffer}, are encoded into a per-thread
+ * buffer which is wiped after use, implementations only deal with the UTF-8
+ * encoded bytes. <br>
+ * <br>
+ * the round loops check the interrupt flag of the calling thread and the
+ * cancellation flag a batch may have attached to it, so that a cancelled
+ * computation stops early: hashing then results in null and verification in
+ * false, the interrupt flag being kept
  * 
  * @author iulius
  * @since 0.0.1
@@ -27,6 +46,26 @@ public abstract class BaseHashGenerator implements HashGenerator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BaseHashGenerator.class);
 
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /**
+   * the round loops check the interrupt flag whenever the round counter has
+   * none of these bits set, i.e. every 1024 rounds
+   */
+  protected static final int INTERRUPT_CHECK_MASK = 0x3ff;
+
+  /**
+   * the message digests looked up once per algorithm name, which are cloned
+   * instead of querying the providers again
+   */
+  private static final ConcurrentMap<String, MessageDigest> MESSAGE_DIGEST_PROTOTYPES = new ConcurrentHashMap<String, MessageDigest>();
+
+  /**
+   * the cancellation flag of the task currently run by a thread, which allows
+   * to stop a computation without interrupting a thread of a foreign executor
+   */
+  private static final ThreadLocal<AtomicBoolean> CANCELLATION = new ThreadLocal<AtomicBoolean>();
+
   private final RoundConfiguration roundConfiguration;
 
   private final Algorithm algorithm;
@@ -51,17 +90,80 @@ public abstract class BaseHashGenerator implements HashGenerator {
   }
 
   /**
+   * provides a new message digest instance, cloned from a prototype if the
+   * provider supports it, so the provider lookup only happens once per
+   * algorithm
    * 
    * @return the message digester instance
    */
   protected MessageDigest getMessageDigest() {
+    String name = getAlgorithm().alternateName();
     try {
-      return MessageDigest.getInstance(getAlgorithm().alternateName());
+      MessageDigest prototype = MESSAGE_DIGEST_PROTOTYPES.get(name);
+      if (prototype == null) {
+        prototype = MessageDigest.getInstance(name);
+        MessageDigest existing = MESSAGE_DIGEST_PROTOTYPES.putIfAbsent(name, prototype);
+        if (existing != null) {
+          prototype = existing;
+        }
+      }
+      try {
+        return (MessageDigest) prototype.clone();
+      } catch (CloneNotSupportedException e) {
+        LOGGER.debug("Message digest {} is not cloneable, falling back to provider lookup", name);
+        return MessageDigest.getInstance(name);
+      }
     } catch (NoSuchAlgorithmException e) {
       return null;
     }
   }
 
+  /**
+   * checks whether the calling thread has been interrupted or the task it
+   * runs has been cancelled, e.g. because the verification it performs is no
+   * longer needed, without clearing the interrupt flag
+   * 
+   * @return true if the hash computation shall be aborted
+   */
+  protected static boolean isAborted() {
+    if (Thread.currentThread().isInterrupted()) {
+      LOGGER.debug("The thread has been interrupted, aborting the hash computation");
+      return true;
+    }
+    AtomicBoolean cancelled = CANCELLATION.get();
+    if (cancelled != null && cancelled.get()) {
+      LOGGER.debug("The task has been cancelled, aborting the hash computation");
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * runs the task on the calling thread with the cancellation flag attached,
+   * so that setting the flag aborts the hash computations of the task
+   * 
+   * @param task
+   *          the task to be run
+   * @param cancelled
+   *          the cancellation flag of the task
+   * @return the result of the task
+   * @throws Exception
+   *           if the task fails
+   */
+  static <T> T callCancellable(Callable<T> task, AtomicBoolean cancelled) throws Exception {
+    AtomicBoolean previous = CANCELLATION.get();
+    CANCELLATION.set(cancelled);
+    try {
+      return task.call();
+    } finally {
+      if (previous == null) {
+        CANCELLATION.remove();
+      } else {
+        CANCELLATION.set(previous);
+      }
+    }
+  }
+
   /**
    * 
    * @return the algorithm used for this implementation
@@ -77,7 +179,7 @@ public abstract class BaseHashGenerator implements HashGenerator {
   @Override
   public String getHashTypeCode() {
     String result = getMagicPrefix();
-    return (result != null && result.length() >= 3) ? result.substring(1, 3) : null;
+    return (result != null && result.length() >= 3) ? result.substring(1, result.length() - 1) : null;
   }
 
   /**
@@ -104,6 +206,144 @@ public abstract class BaseHashGenerator implements HashGenerator {
     return getRoundConfiguration() != null ? getRoundConfiguration().getMaximumRounds() : 999999999;
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#getMaximumPasswordLength()
+   */
+  @Override
+  public int getMaximumPasswordLength() {
+    return getRoundConfiguration() != null ? getRoundConfiguration().getMaximumPasswordLength()
+        : RoundConfiguration.DEFAULT_MAXIMUM_PASSWORD_LENGTH;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#isPasswordLengthAllowed(java.lang
+   * .String)
+   */
+  @Override
+  public boolean isPasswordLengthAllowed(String plainText) {
+    return isLengthAllowed(PlainText.of(plainText));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#isPasswordLengthAllowed(char[])
+   */
+  @Override
+  public boolean isPasswordLengthAllowed(char[] plainText) {
+    return isLengthAllowed(PlainText.of(plainText));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#isPasswordLengthAllowed(java.nio
+   * .CharBuffer)
+   */
+  @Override
+  public boolean isPasswordLengthAllowed(CharBuffer plainText) {
+    return isLengthAllowed(PlainText.of(plainText));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#isPasswordLengthAllowed(byte[])
+   */
+  @Override
+  public boolean isPasswordLengthAllowed(byte[] plainText) {
+    return isLengthAllowed(PlainText.of(plainText));
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text
+   * @return true if the plain text is given and does not exceed
+   *         {@link #getMaximumPasswordLength()} once normalized
+   */
+  private boolean isLengthAllowed(PlainText plainText) {
+    if (plainText == null) {
+      return false;
+    }
+    byte[] bytes = plainText.getBytes();
+    return isLengthAllowed(bytes, (bytes != null) ? null : normalize(plainText.getCharacters()));
+  }
+
+  /**
+   * checks the length of the plain text as it is encoded, i.e. after
+   * {@link #normalize(CharSequence)}
+   * 
+   * @param bytes
+   *          the UTF-8 encoded plain text or null if given as characters
+   * @param characters
+   *          the normalized characters if the plain text is not given as bytes
+   * @return true if the plain text does not exceed
+   *         {@link #getMaximumPasswordLength()}
+   */
+  private boolean isLengthAllowed(byte[] bytes, CharSequence characters) {
+    int maximumLength = getMaximumPasswordLength();
+    return (bytes != null) ? bytes.length <= maximumLength : PlainText.isLengthAllowed(characters, maximumLength);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#estimateCost(int,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public long estimateCost(int passwordLength, ParsedHash parsedHash) {
+    return estimateCost(passwordLength, parsedHash.getSaltBytes().length, parsedHash.getRounds());
+  }
+
+  /**
+   * 
+   * @param value
+   *          the text
+   * @return the length of the UTF-8 encoding of the text, without encoding it
+   */
+  protected static int getUtf8Length(CharSequence value) {
+    int result = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        result++;
+      } else if (c < 0x800) {
+        result += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        result += 4;
+        i++;
+      } else {
+        result += 3;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param length
+   *          the number of bytes passed to a message digest at once
+   * @param blockLength
+   *          the block length of the message digest
+   * @return the number of blocks compressed when digesting the bytes,
+   *         including the padding
+   */
+  protected static long getBlockCount(long length, int blockLength) {
+    // the padding appends at least one byte and the encoded length
+    return (length + 1 + blockLength / 8 + blockLength - 1) / blockLength;
+  }
+
   /**
    * 
    * @return a (pseudo-)randomly generated number of rounds to be used. the
@@ -111,8 +351,23 @@ public abstract class BaseHashGenerator implements HashGenerator {
    *         defined in {@link #getRoundConfiguration()}
    */
   protected int getRandomRounds() {
-    SecureRandom random = new SecureRandom();
-    return getMinimumRounds() + random.nextInt(getMaximumRounds() - getMinimumRounds());
+    return getRandomRounds(getMinimumRounds(), getMaximumRounds());
+  }
+
+  /**
+   * 
+   * @param minimumRounds
+   *          the minimum number of rounds, inclusive
+   * @param maximumRounds
+   *          the maximum number of rounds, exclusive
+   * @return a (pseudo-)randomly generated number of rounds within the range,
+   *         the minimum if the range is empty
+   */
+  protected static int getRandomRounds(int minimumRounds, int maximumRounds) {
+    if (maximumRounds <= minimumRounds) {
+      return minimumRounds;
+    }
+    return minimumRounds + RANDOM.nextInt(maximumRounds - minimumRounds);
   }
 
   /**
@@ -195,4 +450,390 @@ public abstract class BaseHashGenerator implements HashGenerator {
     return new RandomSaltProvider(getMinimumSaltLength(), getSaltLength()).getSaltString();
   }
 
+  /**
+   * checks whether the parsed hash can be verified by this instance, meaning
+   * it is of the same algorithm and its rounds and salt would be used
+   * unchanged by {@link #hashPassword(String, String, int)}
+   * 
+   * @param parsedHash
+   *          the parsed hash
+   * @return true if the hash can be verified
+   */
+  protected boolean isVerifiable(ParsedHash parsedHash) {
+    if (parsedHash.getAlgorithm() != getAlgorithm()) {
+      LOGGER.info("The hash is not of algorithm {}", getAlgorithm());
+      return false;
+    }
+    int rounds = parsedHash.getRounds();
+    String salt = parsedHash.getSalt();
+    if (rounds != verifyRounds(rounds) || !salt.equals(verifySalt(salt))) {
+      LOGGER.info("Rounds or salt of the hash are not supported by the configuration");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * parses the non-negative decimal number between start and end
+   * 
+   * @param value
+   *          the text containing the number
+   * @param start
+   *          the position of the first digit
+   * @param end
+   *          the position after the last digit
+   * @return the number or -1 if the range is empty, contains other characters
+   *         than digits or exceeds {@link Integer#MAX_VALUE}
+   */
+  protected static int parseDecimal(String value, int start, int end) {
+    if (start >= end) {
+      return -1;
+    }
+    long result = 0;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+      if (result > Integer.MAX_VALUE) {
+        return -1;
+      }
+    }
+    return (int) result;
+  }
+
+  /**
+   * hashes the UTF-8 encoded plain text
+   * 
+   * @param plainText
+   *          the buffer holding the UTF-8 encoded plain text
+   * @param length
+   *          the number of bytes of the plain text, not exceeding
+   *          {@link #getMaximumPasswordLength()}
+   * @param salt
+   *          the salt to be used or null in order to use a random salt
+   * @param rounds
+   *          the number of rounds to be applied
+   * @return the hashed value or null in case of an error
+   */
+  protected abstract String hashPlainText(byte[] plainText, int length, String salt, int rounds);
+
+  /**
+   * verifies the UTF-8 encoded plain text against the parsed hash
+   * 
+   * @param plainText
+   *          the buffer holding the UTF-8 encoded plain text
+   * @param length
+   *          the number of bytes of the plain text, not exceeding
+   *          {@link #getMaximumPasswordLength()}
+   * @param parsedHash
+   *          the parsed hash, verifiable by this instance
+   * @return true if the plain text matches the hash
+   */
+  protected abstract boolean verifyPlainText(byte[] plainText, int length, ParsedHash parsedHash);
+
+  /**
+   * prepares plain texts given as characters before they are encoded
+   * 
+   * @param plainText
+   *          the plain text
+   * @return the plain text unchanged
+   */
+  protected CharSequence normalize(CharSequence plainText) {
+    return plainText;
+  }
+
+  /**
+   * checks the length of the plain text and passes its UTF-8 encoding to
+   * {@link #hashPlainText(byte[], int, String, int)}
+   * 
+   * @param plainText
+   *          the plain text
+   * @param salt
+   *          the salt to be used or null in order to use a random salt
+   * @param rounds
+   *          the number of rounds to be applied
+   * @return the hashed value or null if the plain text is null, too long or
+   *         could not be hashed
+   */
+  private String hashPassword(PlainText plainText, String salt, int rounds) {
+    if (plainText == null) {
+      LOGGER.info("No text to hash provided!");
+      return null;
+    }
+    byte[] bytes = plainText.getBytes();
+    CharSequence characters = (bytes != null) ? null : normalize(plainText.getCharacters());
+    if (!isLengthAllowed(bytes, characters)) {
+      LOGGER.warn("The plain text exceeds the maximum length of {} bytes", getMaximumPasswordLength());
+      return null;
+    }
+    if (bytes != null) {
+      return hashPlainText(bytes, bytes.length, salt, rounds);
+    }
+    Utf8Buffer buffer = Utf8Buffer.encode(characters);
+    try {
+      return hashPlainText(buffer.getBytes(), buffer.getLength(), salt, rounds);
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  /**
+   * checks the hash and the length of the plain text and passes its UTF-8
+   * encoding to {@link #verifyPlainText(byte[], int, ParsedHash)}
+   * 
+   * @param plainText
+   *          the plain text
+   * @param parsedHash
+   *          the parsed hash
+   * @return true if the plain text matches the hash
+   */
+  private boolean verifyHash(PlainText plainText, ParsedHash parsedHash) {
+    if (plainText == null || parsedHash == null || !isVerifiable(parsedHash)) {
+      return false;
+    }
+    byte[] bytes = plainText.getBytes();
+    CharSequence characters = (bytes != null) ? null : normalize(plainText.getCharacters());
+    if (!isLengthAllowed(bytes, characters)) {
+      LOGGER.warn("The plain text exceeds the maximum length of {} bytes", getMaximumPasswordLength());
+      return false;
+    }
+    if (bytes != null) {
+      return verifyPlainText(bytes, bytes.length, parsedHash);
+    }
+    Utf8Buffer buffer = Utf8Buffer.encode(characters);
+    try {
+      return verifyPlainText(buffer.getBytes(), buffer.getLength(), parsedHash);
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text
+   * @param formattedHash
+   *          the formatted hash
+   * @return true if the formatted hash can be parsed and the plain text
+   *         matches it
+   */
+  private boolean verifyHash(PlainText plainText, String formattedHash) {
+    if (plainText != null && formattedHash != null) {
+      ParsedHash parsedHash = parseHash(formattedHash);
+      return parsedHash != null && verifyHash(plainText, parsedHash);
+    }
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#hashPassword(java.lang.String)
+   */
+  @Override
+  public String hashPassword(String plainText) {
+    return hashPassword(plainText, null, getRandomRounds());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#hashPassword(java.lang.String,
+   * java.lang.String, int)
+   */
+  @Override
+  public String hashPassword(String plainText, String salt, int rounds) {
+    return hashPassword(PlainText.of(plainText), salt, rounds);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#hashPassword(char[])
+   */
+  @Override
+  public String hashPassword(char[] plainText) {
+    return hashPassword(PlainText.of(plainText), null, getRandomRounds());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#hashPassword(java.nio.CharBuffer)
+   */
+  @Override
+  public String hashPassword(CharBuffer plainText) {
+    return hashPassword(PlainText.of(plainText), null, getRandomRounds());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#hashPassword(byte[])
+   */
+  @Override
+  public String hashPassword(byte[] plainText) {
+    return hashPassword(PlainText.of(plainText), null, getRandomRounds());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHash(java.lang.String,
+   * java.lang.String)
+   */
+  @Override
+  public boolean verifyHash(String plainText, String formattedHash) {
+    return verifyHash(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHash(char[],
+   * java.lang.String)
+   */
+  @Override
+  public boolean verifyHash(char[] plainText, String formattedHash) {
+    return verifyHash(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#verifyHash(java.nio.CharBuffer,
+   * java.lang.String)
+   */
+  @Override
+  public boolean verifyHash(CharBuffer plainText, String formattedHash) {
+    return verifyHash(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHash(byte[],
+   * java.lang.String)
+   */
+  @Override
+  public boolean verifyHash(byte[] plainText, String formattedHash) {
+    return verifyHash(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHash(java.lang.String,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public boolean verifyHash(String plainText, ParsedHash parsedHash) {
+    return verifyHash(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHash(char[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public boolean verifyHash(char[] plainText, ParsedHash parsedHash) {
+    return verifyHash(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGenerator#verifyHash(java.nio.CharBuffer,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public boolean verifyHash(CharBuffer plainText, ParsedHash parsedHash) {
+    return verifyHash(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHash(byte[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public boolean verifyHash(byte[] plainText, ParsedHash parsedHash) {
+    return verifyHash(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#hashPasswords(java.util.List)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts) {
+    return hashPasswords(plainTexts, BatchExecution.getDefaultExecutor());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#hashPasswords(java.util.List,
+   * java.util.concurrent.Executor)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts, Executor executor) {
+    BatchExecution.checkInput(plainTexts, "plain texts");
+    List<Callable<String>> tasks = new ArrayList<Callable<String>>(plainTexts.size());
+    for (final String plainText : plainTexts) {
+      tasks.add(new Callable<String>() {
+        @Override
+        public String call() {
+          return hashPassword(plainText);
+        }
+      });
+    }
+    return BatchExecution.execute(tasks, executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHashes(java.util.List,
+   * java.util.List)
+   */
+  @Override
+  public List<Boolean> verifyHashes(List<String> plainTexts, List<String> formattedHashes) {
+    return verifyHashes(plainTexts, formattedHashes, BatchExecution.getDefaultExecutor());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGenerator#verifyHashes(java.util.List,
+   * java.util.List, java.util.concurrent.Executor)
+   */
+  @Override
+  public List<Boolean> verifyHashes(List<String> plainTexts, List<String> formattedHashes, Executor executor) {
+    BatchExecution.checkInput(plainTexts, formattedHashes);
+    List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(plainTexts.size());
+    for (int i = 0; i < plainTexts.size(); i++) {
+      final String plainText = plainTexts.get(i);
+      final String formattedHash = formattedHashes.get(i);
+      tasks.add(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return verifyHash(plainText, formattedHash);
+        }
+      });
+    }
+    return BatchExecution.execute(tasks, executor);
+  }
+
 }
@@ -0,0 +1,272 @@
+package me.sniggle.security.digest.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import me.sniggle.security.digest.PasswordDigester;
+import me.sniggle.security.digest.config.PasswordMatchResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs the elements of a batch as independent tasks and collects their
+ * results in input order. A failing element results in null at its position
+ * and does not affect the other elements
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class BatchExecution {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchExecution.class);
+
+  /**
+   * lazily creates the shared executor on first use
+   */
+  private static final class DefaultExecutorHolder {
+    private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+        new HashingThreadFactory("sniggle-batch-hashing", Thread.NORM_PRIORITY));
+  }
+
+  private BatchExecution() {
+    super();
+  }
+
+  /**
+   * 
+   * @return the shared executor running one thread per available processor
+   */
+  static Executor getDefaultExecutor() {
+    return DefaultExecutorHolder.INSTANCE;
+  }
+
+  /**
+   * verifies that the batch input is present
+   * 
+   * @param values
+   *          the batch input
+   * @param name
+   *          the name of the input used in the error message
+   */
+  static void checkInput(List<?> values, String name) {
+    if (values == null) {
+      throw new IllegalArgumentException("The " + name + " may not be null!");
+    }
+  }
+
+  /**
+   * verifies that both batch inputs are present and of equal size
+   * 
+   * @param plainTexts
+   *          the plain texts
+   * @param formattedHashes
+   *          the formatted hashes
+   */
+  static void checkInput(List<String> plainTexts, List<String> formattedHashes) {
+    checkInput(plainTexts, "plain texts");
+    checkInput(formattedHashes, "formatted hashes");
+    if (plainTexts.size() != formattedHashes.size()) {
+      throw new IllegalArgumentException("The number of plain texts (" + plainTexts.size() + ") and formatted hashes ("
+          + formattedHashes.size() + ") must be equal");
+    }
+  }
+
+  /**
+   * executes all tasks and waits for their completion. If the calling thread
+   * is interrupted while waiting, the outstanding tasks are cancelled, their
+   * results are null and the interrupt flag is restored. Like in
+   * {@link #findFirst(List, Executor)} running tasks are stopped through a
+   * shared cancellation flag rather than by interrupting the threads of the
+   * given executor
+   * 
+   * @param tasks
+   *          the tasks to be executed
+   * @param executor
+   *          the executor running the tasks
+   * @return the results in the order of the tasks
+   */
+  static <T> List<T> execute(List<Callable<T>> tasks, Executor executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("The executor may not be null!");
+    }
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+    for (final Callable<T> task : tasks) {
+      FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          if (cancelled.get()) {
+            return null;
+          }
+          return BaseHashGenerator.callCancellable(task, cancelled);
+        }
+      });
+      futures.add(future);
+      try {
+        executor.execute(future);
+      } catch (RejectedExecutionException e) {
+        LOGGER.warn("Batch element was rejected by the executor! {}", e.getMessage());
+        future.cancel(false);
+      }
+    }
+    List<T> result = new ArrayList<T>(futures.size());
+    boolean interrupted = false;
+    for (FutureTask<T> future : futures) {
+      T value = null;
+      if (!interrupted) {
+        try {
+          value = future.get();
+        } catch (InterruptedException e) {
+          LOGGER.warn("Interrupted while waiting for the batch, cancelling the outstanding elements");
+          interrupted = true;
+          cancelled.set(true);
+        } catch (ExecutionException e) {
+          LOGGER.error("Error during processing of batch element! {}", e.getCause().getMessage());
+        } catch (CancellationException e) {
+          LOGGER.debug("Batch element has been cancelled");
+        }
+      }
+      if (interrupted) {
+        future.cancel(false);
+      }
+      result.add(value);
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return result;
+  }
+
+  /**
+   * verifies every plain text against the hash at the same position as an
+   * independent task
+   * 
+   * @param passwordDigester
+   *          the digester verifying a single plain text
+   * @param plainTexts
+   *          the plain texts to be verified
+   * @param formattedHashes
+   *          the hashes, one per plain text
+   * @param executor
+   *          the executor running the verifications
+   * @return the results in input order
+   */
+  static List<PasswordMatchResult> matchesPasswords(final PasswordDigester passwordDigester, List<String> plainTexts,
+      List<String> formattedHashes, Executor executor) {
+    checkInput(plainTexts, formattedHashes);
+    List<Callable<PasswordMatchResult>> tasks = new ArrayList<Callable<PasswordMatchResult>>(plainTexts.size());
+    for (int i = 0; i < plainTexts.size(); i++) {
+      final String plainText = plainTexts.get(i);
+      final String formattedHash = formattedHashes.get(i);
+      tasks.add(new Callable<PasswordMatchResult>() {
+        @Override
+        public PasswordMatchResult call() {
+          return passwordDigester.matchesPassword(plainText, formattedHash);
+        }
+      });
+    }
+    return execute(tasks, executor);
+  }
+
+  /**
+   * executes all tasks until one of them returns true and cancels the
+   * outstanding tasks. The running ones are stopped through a shared
+   * cancellation flag rather than by interrupting the threads of the given
+   * executor, which may go on to run unrelated work. Tasks rejected by the
+   * executor are run on the calling thread, so that a saturated executor
+   * cannot hide a match; a failing task counts as false
+   * 
+   * @param tasks
+   *          the tasks to be executed
+   * @param executor
+   *          the executor running the tasks
+   * @return the index of the first task completing with true, -1 if no task
+   *         does or null if the calling thread has been interrupted before
+   *         all tasks completed
+   */
+  static Integer findFirst(List<Callable<Boolean>> tasks, Executor executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("The executor may not be null!");
+    }
+    final BlockingQueue<Integer> completed = new LinkedBlockingQueue<Integer>();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    List<FutureTask<Boolean>> futures = new ArrayList<FutureTask<Boolean>>(tasks.size());
+    List<FutureTask<Boolean>> rejected = new ArrayList<FutureTask<Boolean>>();
+    for (int i = 0; i < tasks.size(); i++) {
+      final Integer index = Integer.valueOf(i);
+      final Callable<Boolean> task = tasks.get(i);
+      FutureTask<Boolean> future = new FutureTask<Boolean>(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          if (cancelled.get()) {
+            return Boolean.FALSE;
+          }
+          return BaseHashGenerator.callCancellable(task, cancelled);
+        }
+      }) {
+        @Override
+        protected void done() {
+          completed.add(index);
+        }
+      };
+      futures.add(future);
+      try {
+        executor.execute(future);
+      } catch (RejectedExecutionException e) {
+        rejected.add(future);
+      }
+    }
+    if (!rejected.isEmpty()) {
+      LOGGER.debug("{} tasks were rejected by the executor, running them on the calling thread", rejected.size());
+    }
+    Integer result = Integer.valueOf(-1);
+    boolean interrupted = false;
+    int nextRejected = 0;
+    for (int remaining = futures.size(); remaining > 0; remaining--) {
+      try {
+        Integer index = completed.poll();
+        while (index == null && nextRejected < rejected.size()) {
+          rejected.get(nextRejected++).run();
+          index = completed.poll();
+        }
+        if (index == null) {
+          index = completed.take();
+        }
+        if (Boolean.TRUE.equals(futures.get(index.intValue()).get())) {
+          result = index;
+          break;
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+        break;
+      } catch (ExecutionException e) {
+        LOGGER.error("Error during processing of batch element! {}", e.getCause().getMessage());
+      }
+    }
+    cancelled.set(true);
+    for (FutureTask<Boolean> future : futures) {
+      future.cancel(false);
+    }
+    // a task run by the calling thread stops early once it is interrupted
+    if (interrupted || Thread.currentThread().isInterrupted()) {
+      LOGGER.warn("Interrupted before all batch elements completed, cancelling the outstanding elements");
+      Thread.currentThread().interrupt();
+      return (result.intValue() < 0) ? null : result;
+    }
+    return result;
+  }
+
+}
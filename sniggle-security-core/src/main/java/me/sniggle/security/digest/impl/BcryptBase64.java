@@ -0,0 +1,115 @@
+package me.sniggle.security.digest.impl;
+
+/**
+ * Encoder and decoder of the base 64 variant of bcrypt, which packs the bits
+ * like the standard alphabet (RFC 4648) without padding, but uses the alphabet
+ * ./A-Za-z0-9
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class BcryptBase64 {
+
+  private static final char[] ENCODING_TABLE = "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789"
+      .toCharArray();
+
+  private static final byte[] DECODING_TABLE = new byte[128];
+
+  static {
+    for (int i = 0; i < DECODING_TABLE.length; i++) {
+      DECODING_TABLE[i] = -1;
+    }
+    for (int i = 0; i < ENCODING_TABLE.length; i++) {
+      DECODING_TABLE[ENCODING_TABLE[i]] = (byte) i;
+    }
+  }
+
+  private BcryptBase64() {
+    super();
+  }
+
+  /**
+   * 
+   * @param byteCount
+   *          the number of bytes to be encoded
+   * @return the number of characters of the encoded bytes
+   */
+  static int getEncodedLength(int byteCount) {
+    return (byteCount * 8 + 5) / 6;
+  }
+
+  /**
+   * encodes the first bytes of the source
+   * 
+   * @param source
+   *          the bytes to be encoded
+   * @param length
+   *          the number of bytes to be encoded
+   * @param target
+   *          the target buffer
+   * @return the target buffer
+   */
+  static StringBuilder encode(byte[] source, int length, StringBuilder target) {
+    for (int i = 0; i < length; i += 3) {
+      int remaining = length - i;
+      int v = (source[i] & 0xff) << 16;
+      if (remaining > 1) {
+        v |= (source[i + 1] & 0xff) << 8;
+      }
+      if (remaining > 2) {
+        v |= source[i + 2] & 0xff;
+      }
+      target.append(ENCODING_TABLE[v >>> 18]);
+      target.append(ENCODING_TABLE[(v >>> 12) & 0x3f]);
+      if (remaining > 1) {
+        target.append(ENCODING_TABLE[(v >>> 6) & 0x3f]);
+      }
+      if (remaining > 2) {
+        target.append(ENCODING_TABLE[v & 0x3f]);
+      }
+    }
+    return target;
+  }
+
+  /**
+   * decodes the given number of bytes, surplus bits of the last character are
+   * ignored
+   * 
+   * @param source
+   *          the encoded characters
+   * @param offset
+   *          the position of the first encoded character
+   * @param byteCount
+   *          the number of bytes to decode, {@link #getEncodedLength(int)}
+   *          characters are read
+   * @return the decoded bytes or null if the characters are no valid encoding
+   */
+  static byte[] decode(CharSequence source, int offset, int byteCount) {
+    int length = getEncodedLength(byteCount);
+    if (offset + length > source.length()) {
+      return null;
+    }
+    byte[] result = new byte[byteCount];
+    int bits = 0;
+    int bitCount = 0;
+    int position = 0;
+    for (int i = offset; i < offset + length; i++) {
+      char c = source.charAt(i);
+      int value = (c < DECODING_TABLE.length) ? DECODING_TABLE[c] : -1;
+      if (value < 0) {
+        return null;
+      }
+      bits = (bits << 6) | value;
+      bitCount += 6;
+      if (bitCount >= 8) {
+        bitCount -= 8;
+        if (position < byteCount) {
+          result[position++] = (byte) (bits >>> bitCount);
+        }
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,288 @@
+package me.sniggle.security.digest.impl;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.ParsedHash;
+
+/**
+ * This class implements bcrypt in the $2a$ and $2b$ variants, the hashes being
+ * formatted as $2b$cost$salt+checksum. Both variants are computed alike, as
+ * they only differ for passwords longer than 255 bytes, whose length wrapped
+ * around in the original $2a$ implementation. The rounds of this generator
+ * are the logarithmic cost factor: new hashes use {@link #DEFAULT_COST} unless
+ * the round configuration excludes it, while hashes of any cost within the
+ * configuration are verified. As specified only the first 72 bytes of a
+ * password are used. <br>
+ * <br>
+ * the P-array and S-boxes of the key schedule are kept per thread and reset by
+ * copying the initial state, so that hashing does not allocate them per call.
+ * As the class is immutable a single instance, e.g. the one returned by
+ * {@link #getInstance(Algorithm)}, may be shared across threads
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class BcryptHashGenerator extends BaseHashGenerator {
+
+  /**
+   * the cost of new hashes unless the round configuration excludes it
+   */
+  public static final int DEFAULT_COST = 10;
+
+  private static final int MINIMUM_COST = 4;
+  private static final int MAXIMUM_COST = 31;
+  private static final int SALT_LENGTH = 16;
+  private static final int CHECKSUM_LENGTH = 23;
+  private static final int MAXIMUM_KEY_LENGTH = 72;
+  private static final int ENCRYPTIONS = 64;
+  /**
+   * "OrpheanBeholderScryDoubt" as big endian words
+   */
+  private static final int[] MAGIC_TEXT = { 0x4f727068, 0x65616e42, 0x65686f6c, 0x64657253, 0x63727944, 0x6f756274 };
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /**
+   * the key schedule state of the current thread
+   */
+  private static final ThreadLocal<BcryptBuffers> BCRYPT_BUFFERS = new ThreadLocal<BcryptBuffers>() {
+    @Override
+    protected BcryptBuffers initialValue() {
+      return new BcryptBuffers();
+    }
+  };
+
+  private static final BcryptHashGenerator INSTANCE_2A = new BcryptHashGenerator(Algorithm.BCRYPT_2A);
+  private static final BcryptHashGenerator INSTANCE_2B = new BcryptHashGenerator(Algorithm.BCRYPT_2B);
+
+  /**
+   * 
+   * @param algorithm
+   *          {@link Algorithm#BCRYPT_2A} or {@link Algorithm#BCRYPT_2B}
+   * @return the shared instance using the default round configuration
+   */
+  public static BcryptHashGenerator getInstance(Algorithm algorithm) {
+    if (algorithm == Algorithm.BCRYPT_2A) {
+      return INSTANCE_2A;
+    }
+    if (algorithm == Algorithm.BCRYPT_2B) {
+      return INSTANCE_2B;
+    }
+    throw new IllegalArgumentException("Not a bcrypt algorithm: " + algorithm);
+  }
+
+  /**
+   * verifies hashes of cost 4 to 14
+   * 
+   * @param algorithm
+   *          {@link Algorithm#BCRYPT_2A} or {@link Algorithm#BCRYPT_2B}
+   */
+  public BcryptHashGenerator(Algorithm algorithm) {
+    this(algorithm, new RoundConfiguration(MINIMUM_COST, 14));
+  }
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          {@link Algorithm#BCRYPT_2A} or {@link Algorithm#BCRYPT_2B}
+   * @param roundConfiguration
+   *          the configuration of the cost factor
+   */
+  public BcryptHashGenerator(Algorithm algorithm, RoundConfiguration roundConfiguration) {
+    super(algorithm, roundConfiguration);
+    if (algorithm != Algorithm.BCRYPT_2A && algorithm != Algorithm.BCRYPT_2B) {
+      throw new IllegalArgumentException("Not a bcrypt algorithm: " + algorithm);
+    }
+  }
+
+  /**
+   * the cost is not randomized, as every increment doubles the time of a hash
+   * 
+   * @return {@link #DEFAULT_COST} limited to the round configuration
+   */
+  @Override
+  protected int getRandomRounds() {
+    return Math.min(Math.max(DEFAULT_COST, getMinimumRounds()), getMaximumRounds());
+  }
+
+  /**
+   * 
+   * @return the requested cost limited to the round configuration and the
+   *         cost of 4 to 31 supported by bcrypt
+   */
+  @Override
+  protected int verifyRounds(int requestedRounds) {
+    return Math.min(Math.max(super.verifyRounds(requestedRounds), MINIMUM_COST), MAXIMUM_COST);
+  }
+
+  /**
+   * 
+   * @param testSalt
+   *          the salt to verify
+   * @return the salt if it is the encoding of 16 bytes, otherwise the encoding
+   *         of a new random salt
+   */
+  @Override
+  protected String verifySalt(String testSalt) {
+    if (testSalt != null && testSalt.length() == BcryptBase64.getEncodedLength(SALT_LENGTH)
+        && BcryptBase64.decode(testSalt, 0, SALT_LENGTH) != null) {
+      return testSalt;
+    }
+    byte[] salt = new byte[SALT_LENGTH];
+    RANDOM.nextBytes(salt);
+    return BcryptBase64.encode(salt, SALT_LENGTH, new StringBuilder()).toString();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#hashPlainText(byte[],
+   * int, java.lang.String, int)
+   */
+  @Override
+  protected String hashPlainText(byte[] plainText, int length, String salt, int rounds) {
+    int cost = verifyRounds(rounds);
+    String actualSalt = verifySalt(salt);
+    byte[] checksum = computeChecksum(plainText, length, BcryptBase64.decode(actualSalt, 0, SALT_LENGTH), cost);
+    if (checksum == null) {
+      return null;
+    }
+    StringBuilder result = new StringBuilder(60).append(getMagicPrefix());
+    if (cost < 10) {
+      result.append('0');
+    }
+    result.append(cost).append('$').append(actualSalt);
+    return BcryptBase64.encode(checksum, CHECKSUM_LENGTH, result).toString();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#verifyPlainText(byte[],
+   * int, me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  protected boolean verifyPlainText(byte[] plainText, int length, ParsedHash parsedHash) {
+    return parsedHash.matchesDigest(computeChecksum(plainText, length,
+        BcryptBase64.decode(parsedHash.getSalt(), 0, SALT_LENGTH), parsedHash.getRounds()));
+  }
+
+  /**
+   * 
+   * @param formattedHash
+   *          the formatted hash value
+   * @return the parsed hash with the cost as rounds and the 22 characters of
+   *         the encoded salt, or null if the formatted hash is malformed
+   */
+  @Override
+  public ParsedHash parseHash(String formattedHash) {
+    String magicPrefix = getMagicPrefix();
+    int saltStart = magicPrefix.length() + 3;
+    int checksumStart = saltStart + BcryptBase64.getEncodedLength(SALT_LENGTH);
+    if (formattedHash == null || !formattedHash.startsWith(magicPrefix)
+        || formattedHash.length() != checksumStart + BcryptBase64.getEncodedLength(CHECKSUM_LENGTH)
+        || formattedHash.charAt(saltStart - 1) != '$') {
+      return null;
+    }
+    int cost = parseDecimal(formattedHash, magicPrefix.length(), saltStart - 1);
+    byte[] checksum = BcryptBase64.decode(formattedHash, checksumStart, CHECKSUM_LENGTH);
+    if (cost < MINIMUM_COST || cost > MAXIMUM_COST || checksum == null
+        || BcryptBase64.decode(formattedHash, saltStart, SALT_LENGTH) == null) {
+      return null;
+    }
+    return new ParsedHash(getAlgorithm(), cost, formattedHash.substring(saltStart, checksumStart), checksum,
+        formattedHash);
+  }
+
+  /**
+   * estimates the Blowfish block encryptions: each of the 2 * 2^cost + 1 key
+   * schedules encrypts 521 blocks, followed by 64 encryptions of the three
+   * blocks of the magic text
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param saltLength
+   *          the length of the salt in UTF-8 encoded bytes
+   * @param rounds
+   *          the cost factor
+   * @return the estimated number of block encryptions
+   */
+  @Override
+  public long estimateCost(int passwordLength, int saltLength, int rounds) {
+    int cost = Math.min(Math.max(rounds, MINIMUM_COST), MAXIMUM_COST);
+    return ((2L << cost) + 1) * 521 + ENCRYPTIONS * MAGIC_TEXT.length / 2;
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the buffer holding the UTF-8 encoded plain text
+   * @param length
+   *          the number of bytes of the plain text
+   * @param salt
+   *          the decoded salt
+   * @param cost
+   *          the cost factor
+   * @return the first 23 bytes of the encrypted magic text or null if the
+   *         computation has been aborted
+   */
+  private byte[] computeChecksum(byte[] plainText, int length, byte[] salt, int cost) {
+    BcryptBuffers buffers = BCRYPT_BUFFERS.get();
+    Blowfish blowfish = buffers.blowfish;
+    byte[] key = buffers.key;
+    int[] text = buffers.text;
+    try {
+      // the key is the password including its terminating zero byte
+      int keyLength = Math.min(length, MAXIMUM_KEY_LENGTH);
+      System.arraycopy(plainText, 0, key, 0, keyLength);
+      key[keyLength++] = 0;
+      blowfish.reset();
+      blowfish.expandKey(key, keyLength, salt);
+      for (long i = 1L << cost; i > 0; i--) {
+        if (isAborted()) {
+          return null;
+        }
+        blowfish.expandKey(key, keyLength, null);
+        blowfish.expandKey(salt, salt.length, null);
+      }
+      System.arraycopy(MAGIC_TEXT, 0, text, 0, MAGIC_TEXT.length);
+      for (int i = 0; i < ENCRYPTIONS; i++) {
+        for (int j = 0; j < text.length; j += 2) {
+          blowfish.encrypt(text, j);
+        }
+      }
+      byte[] result = new byte[text.length * 4];
+      for (int i = 0; i < text.length; i++) {
+        Sha2Digest.putInt(text[i], result, i * 4);
+      }
+      // the last byte is dropped by the format
+      return Arrays.copyOf(result, CHECKSUM_LENGTH);
+    } finally {
+      blowfish.clear();
+      Arrays.fill(key, (byte) 0);
+      Arrays.fill(text, 0);
+    }
+  }
+
+  /**
+   * the key schedule state and scratch buffers of a thread
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class BcryptBuffers {
+
+    private final Blowfish blowfish = new Blowfish();
+    private final byte[] key = new byte[MAXIMUM_KEY_LENGTH + 1];
+    private final int[] text = new int[MAGIC_TEXT.length];
+
+  }
+
+}
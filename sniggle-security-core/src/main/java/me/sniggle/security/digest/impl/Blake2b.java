@@ -0,0 +1,207 @@
+package me.sniggle.security.digest.impl;
+
+import java.util.Arrays;
+
+/**
+ * In-house unkeyed BLAKE2b implementation as specified in RFC 7693 working on
+ * a primitive long state, providing the digests of 1 to 64 bytes and the
+ * variable length hash function H' used by Argon2 (RFC 9106). Instances are
+ * reusable after {@link #reset(int)} but not thread-safe
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class Blake2b {
+
+  /**
+   * the maximum length of a single digest
+   */
+  static final int MAXIMUM_DIGEST_LENGTH = 64;
+
+  private static final int BLOCK_LENGTH = 128;
+
+  private static final long[] IV = { 0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+      0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L };
+
+  private static final byte[][] SIGMA = { { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+      { 14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3 }, { 11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4 },
+      { 7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8 }, { 9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13 },
+      { 2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9 }, { 12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11 },
+      { 13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10 }, { 6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5 },
+      { 10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0 } };
+
+  private final long[] state = new long[8];
+  private final long[] m = new long[16];
+  private final long[] v = new long[16];
+  private final byte[] buffer = new byte[BLOCK_LENGTH];
+  private final byte[] scratch = new byte[MAXIMUM_DIGEST_LENGTH];
+  private int bufferPosition;
+  private long byteCount;
+  private int digestLength;
+
+  /**
+   * constructor
+   * 
+   * @param digestLength
+   *          the length of the digest in bytes, 1 to
+   *          {@link #MAXIMUM_DIGEST_LENGTH}
+   */
+  Blake2b(int digestLength) {
+    super();
+    reset(digestLength);
+  }
+
+  /**
+   * discards the digested bytes and starts a new digest
+   * 
+   * @param digestLength
+   *          the length of the digest in bytes, 1 to
+   *          {@link #MAXIMUM_DIGEST_LENGTH}
+   */
+  void reset(int digestLength) {
+    if (digestLength < 1 || digestLength > MAXIMUM_DIGEST_LENGTH) {
+      throw new IllegalArgumentException("The digest length must be between 1 and " + MAXIMUM_DIGEST_LENGTH);
+    }
+    System.arraycopy(IV, 0, state, 0, 8);
+    state[0] ^= 0x01010000L ^ digestLength;
+    Arrays.fill(buffer, (byte) 0);
+    bufferPosition = 0;
+    byteCount = 0;
+    this.digestLength = digestLength;
+  }
+
+  /**
+   * 
+   * @param input
+   *          the bytes to digest
+   * @param offset
+   *          the position of the first byte
+   * @param length
+   *          the number of bytes
+   */
+  void update(byte[] input, int offset, int length) {
+    while (length > 0) {
+      if (bufferPosition == BLOCK_LENGTH) {
+        // the last block is only compressed once it is known to be the last
+        byteCount += BLOCK_LENGTH;
+        compress(buffer, false);
+        bufferPosition = 0;
+      }
+      int count = Math.min(length, BLOCK_LENGTH - bufferPosition);
+      System.arraycopy(input, offset, buffer, bufferPosition, count);
+      bufferPosition += count;
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * digests the value as four little endian bytes
+   * 
+   * @param value
+   *          the value
+   */
+  void updateInt(int value) {
+    byte[] bytes = scratch;
+    bytes[0] = (byte) value;
+    bytes[1] = (byte) (value >>> 8);
+    bytes[2] = (byte) (value >>> 16);
+    bytes[3] = (byte) (value >>> 24);
+    update(bytes, 0, 4);
+  }
+
+  /**
+   * completes the digest, the instance has to be reset before it is used
+   * again
+   * 
+   * @param target
+   *          the buffer receiving the digest
+   * @param offset
+   *          the position of the first digest byte
+   */
+  void digest(byte[] target, int offset) {
+    byteCount += bufferPosition;
+    Arrays.fill(buffer, bufferPosition, BLOCK_LENGTH, (byte) 0);
+    compress(buffer, true);
+    for (int i = 0; i < digestLength; i++) {
+      target[offset + i] = (byte) (state[i >>> 3] >>> ((i & 7) << 3));
+    }
+  }
+
+  /**
+   * computes the variable length hash H' of Argon2 over the bytes digested
+   * since the last reset, which have to be preceded by the output length as
+   * little endian integer
+   * 
+   * @param target
+   *          the buffer receiving the hash
+   * @param offset
+   *          the position of the first hash byte
+   * @param length
+   *          the length of the hash
+   */
+  void digestLong(byte[] target, int offset, int length) {
+    if (length <= MAXIMUM_DIGEST_LENGTH) {
+      digest(target, offset);
+      return;
+    }
+    byte[] v = scratch;
+    digest(v, 0);
+    int position = 0;
+    while (length - position > MAXIMUM_DIGEST_LENGTH) {
+      System.arraycopy(v, 0, target, offset + position, MAXIMUM_DIGEST_LENGTH / 2);
+      position += MAXIMUM_DIGEST_LENGTH / 2;
+      reset(Math.min(MAXIMUM_DIGEST_LENGTH, length - position));
+      update(v, 0, MAXIMUM_DIGEST_LENGTH);
+      if (length - position > MAXIMUM_DIGEST_LENGTH) {
+        digest(v, 0);
+      }
+    }
+    digest(target, offset + position);
+    Arrays.fill(v, (byte) 0);
+  }
+
+  private void compress(byte[] block, boolean last) {
+    long[] m = this.m;
+    long[] v = this.v;
+    for (int i = 0, offset = 0; i < 16; i++, offset += 8) {
+      m[i] = (block[offset] & 0xffL) | ((block[offset + 1] & 0xffL) << 8) | ((block[offset + 2] & 0xffL) << 16)
+          | ((block[offset + 3] & 0xffL) << 24) | ((block[offset + 4] & 0xffL) << 32) | ((block[offset + 5] & 0xffL) << 40)
+          | ((block[offset + 6] & 0xffL) << 48) | ((block[offset + 7] & 0xffL) << 56);
+    }
+    System.arraycopy(state, 0, v, 0, 8);
+    System.arraycopy(IV, 0, v, 8, 8);
+    // the byte counter never exceeds 64 bits for the supported input
+    v[12] ^= byteCount;
+    if (last) {
+      v[14] = ~v[14];
+    }
+    for (int round = 0; round < 12; round++) {
+      byte[] s = SIGMA[round % 10];
+      mix(v, 0, 4, 8, 12, m[s[0]], m[s[1]]);
+      mix(v, 1, 5, 9, 13, m[s[2]], m[s[3]]);
+      mix(v, 2, 6, 10, 14, m[s[4]], m[s[5]]);
+      mix(v, 3, 7, 11, 15, m[s[6]], m[s[7]]);
+      mix(v, 0, 5, 10, 15, m[s[8]], m[s[9]]);
+      mix(v, 1, 6, 11, 12, m[s[10]], m[s[11]]);
+      mix(v, 2, 7, 8, 13, m[s[12]], m[s[13]]);
+      mix(v, 3, 4, 9, 14, m[s[14]], m[s[15]]);
+    }
+    for (int i = 0; i < 8; i++) {
+      state[i] ^= v[i] ^ v[i + 8];
+    }
+  }
+
+  private static void mix(long[] v, int a, int b, int c, int d, long x, long y) {
+    v[a] = v[a] + v[b] + x;
+    v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+    v[c] = v[c] + v[d];
+    v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+    v[a] = v[a] + v[b] + y;
+    v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+    v[c] = v[c] + v[d];
+    v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+  }
+
+}
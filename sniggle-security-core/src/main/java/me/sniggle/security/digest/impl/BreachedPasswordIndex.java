@@ -0,0 +1,401 @@
+package me.sniggle.security.digest.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import me.sniggle.security.digest.BreachedPasswordScreener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Screens plain texts against an index file created by
+ * {@link BreachedPasswordIndexBuilder}. The index is memory-mapped rather than
+ * loaded, so that it may hold billions of SHA-1 digests without occupying the
+ * heap: only the table of the 65536 buckets, addressed by the first two bytes
+ * of a digest, is kept on the heap. <br>
+ * <br>
+ * a blocked Bloom filter, whose probes of a digest all fall into the same 64
+ * byte block, answers most lookups of passwords not in the index. It is about
+ * a 14th of the size of the digests and preloaded, so that such a lookup
+ * touches a single page held in memory. The remaining lookups search the
+ * sorted digests of a single bucket, typically a few pages. <br>
+ * <br>
+ * the index file consists of
+ * <ul>
+ * <li>a header holding the format version, the entry count and the size of
+ * the Bloom filter</li>
+ * <li>the index of the first digest of each bucket, followed by the entry
+ * count</li>
+ * <li>the Bloom filter, starting at {@link #BLOOM_FILTER_OFFSET}</li>
+ * <li>the digests sorted in ascending order without duplicates, each being
+ * stored without the two bytes of its bucket</li>
+ * </ul>
+ * As instances are immutable they may be shared across threads
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class BreachedPasswordIndex implements BreachedPasswordScreener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BreachedPasswordIndex.class);
+
+  /**
+   * "SNGLBPI" followed by the format version
+   */
+  static final long MAGIC = 0x534e474c42504901L;
+  static final int DIGEST_LENGTH = 20;
+  static final int BUCKET_COUNT = 1 << 16;
+  /**
+   * the length of a stored digest, whose first two bytes are the bucket
+   */
+  static final int RECORD_LENGTH = DIGEST_LENGTH - 2;
+  static final int HEADER_LENGTH = 32;
+  static final long BLOOM_FILTER_OFFSET = roundUp(HEADER_LENGTH + (BUCKET_COUNT + 1) * 8L, 4096);
+  static final int BLOOM_BLOCK_LENGTH = 64;
+  static final int BLOOM_BLOCK_BITS = BLOOM_BLOCK_LENGTH * 8;
+  /**
+   * the maximum number of probes, each consuming 9 bits of a long
+   */
+  static final int MAXIMUM_BLOOM_HASH_COUNT = 7;
+  /**
+   * the length of the mapped segments of the Bloom filter, a multiple of the
+   * block length below the 2 GiB limit of a single mapping
+   */
+  static final long BLOOM_SEGMENT_LENGTH = 1L << 30;
+  /**
+   * the length of the mapped segments of the digests, a multiple of the record
+   * length so that no digest spans two segments
+   */
+  static final long RECORD_SEGMENT_LENGTH = ((1L << 30) / RECORD_LENGTH) * RECORD_LENGTH;
+
+  /**
+   * the SHA-1 digester and digest buffer of the current thread
+   */
+  private static final ThreadLocal<DigestBuffers> DIGEST_BUFFERS = new ThreadLocal<DigestBuffers>() {
+    @Override
+    protected DigestBuffers initialValue() {
+      return new DigestBuffers();
+    }
+  };
+
+  private final long[] bucketStarts;
+  private final long entryCount;
+  private final long bloomBlockCount;
+  private final int bloomHashCount;
+  private final ByteBuffer[] bloomSegments;
+  private final ByteBuffer[] recordSegments;
+
+  private BreachedPasswordIndex(long[] bucketStarts, long bloomBlockCount, int bloomHashCount,
+      ByteBuffer[] bloomSegments, ByteBuffer[] recordSegments) {
+    super();
+    this.bucketStarts = bucketStarts;
+    this.entryCount = bucketStarts[BUCKET_COUNT];
+    this.bloomBlockCount = bloomBlockCount;
+    this.bloomHashCount = bloomHashCount;
+    this.bloomSegments = bloomSegments;
+    this.recordSegments = recordSegments;
+  }
+
+  /**
+   * maps the index file into memory, the file may not be modified while the
+   * index is in use
+   * 
+   * @param indexFile
+   *          the file created by {@link BreachedPasswordIndexBuilder}
+   * @return the index or null if the file could not be read or is no valid
+   *         index
+   */
+  public static BreachedPasswordIndex open(File indexFile) {
+    String message = "Error opening breached password index. {}";
+    if (indexFile == null || !indexFile.isFile()) {
+      LOGGER.error(message, "The index file does not exist");
+      return null;
+    }
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(indexFile, "r");
+      FileChannel channel = file.getChannel();
+      ByteBuffer header = ByteBuffer.allocate((int) BLOOM_FILTER_OFFSET);
+      if (channel.size() < BLOOM_FILTER_OFFSET
+          || MappedFiles.readFully(channel, header, 0) < BLOOM_FILTER_OFFSET) {
+        LOGGER.error(message, "The index file is truncated");
+        return null;
+      }
+      header.flip();
+      if (header.getLong() != MAGIC) {
+        LOGGER.error(message, "The file is no breached password index of a supported version");
+        return null;
+      }
+      int bloomHashCount = header.getInt();
+      // reserved
+      header.getInt();
+      long entryCount = header.getLong();
+      long bloomBlockCount = header.getLong();
+      long[] bucketStarts = new long[BUCKET_COUNT + 1];
+      header.asLongBuffer().get(bucketStarts);
+      long recordOffset = BLOOM_FILTER_OFFSET + bloomBlockCount * BLOOM_BLOCK_LENGTH;
+      if (bloomHashCount < 1 || bloomHashCount > MAXIMUM_BLOOM_HASH_COUNT || bloomBlockCount < 1
+          || !isAscending(bucketStarts) || bucketStarts[BUCKET_COUNT] != entryCount
+          || channel.size() != recordOffset + entryCount * RECORD_LENGTH) {
+        LOGGER.error(message, "The header of the index file is inconsistent");
+        return null;
+      }
+      ByteBuffer[] bloomSegments = MappedFiles.map(channel, MapMode.READ_ONLY, BLOOM_FILTER_OFFSET, bloomBlockCount
+          * BLOOM_BLOCK_LENGTH, BLOOM_SEGMENT_LENGTH);
+      for (ByteBuffer segment : bloomSegments) {
+        ((MappedByteBuffer) segment).load();
+      }
+      ByteBuffer[] recordSegments = MappedFiles.map(channel, MapMode.READ_ONLY, recordOffset, entryCount
+          * RECORD_LENGTH, RECORD_SEGMENT_LENGTH);
+      LOGGER.info("Opened breached password index of {} entries", entryCount);
+      // the mappings stay valid once the file is closed
+      return new BreachedPasswordIndex(bucketStarts, bloomBlockCount, bloomHashCount, bloomSegments, recordSegments);
+    } catch (IOException e) {
+      LOGGER.error(message, e.getMessage());
+    } finally {
+      if (file != null) {
+        try {
+          file.close();
+        } catch (IOException e) {
+          LOGGER.error(message, e.getMessage());
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 
+   * @return the number of distinct digests in the index
+   */
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.BreachedPasswordScreener#isBreached(java.lang
+   * .String)
+   */
+  @Override
+  public boolean isBreached(String plainText) {
+    return plainText != null && isBreached((CharSequence) plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.BreachedPasswordScreener#isBreached(char[])
+   */
+  @Override
+  public boolean isBreached(char[] plainText) {
+    return plainText != null && isBreached(CharBuffer.wrap(plainText));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.BreachedPasswordScreener#isBreached(byte[])
+   */
+  @Override
+  public boolean isBreached(byte[] plainText) {
+    return plainText != null && isBreached(plainText, plainText.length);
+  }
+
+  /**
+   * 
+   * @param sha1Digest
+   *          the 20 bytes of the SHA-1 digest of a UTF-8 encoded plain text
+   * @return true if the digest belongs to a known breached password
+   * @throws IllegalArgumentException
+   *           if the digest is not 20 bytes long
+   */
+  @Override
+  public boolean isBreachedDigest(byte[] sha1Digest) {
+    if (sha1Digest == null || sha1Digest.length != DIGEST_LENGTH) {
+      throw new IllegalArgumentException("The SHA-1 digest must be " + DIGEST_LENGTH + " bytes long");
+    }
+    if (!mightContain(sha1Digest)) {
+      return false;
+    }
+    int bucket = getBucket(sha1Digest);
+    long low = bucketStarts[bucket];
+    long high = bucketStarts[bucket + 1] - 1;
+    while (low <= high) {
+      long middle = (low + high) >>> 1;
+      int comparison = compareRecord(middle, sha1Digest);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isBreached(CharSequence plainText) {
+    Utf8Buffer buffer = Utf8Buffer.encode(plainText);
+    try {
+      return isBreached(buffer.getBytes(), buffer.getLength());
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  private boolean isBreached(byte[] plainText, int length) {
+    DigestBuffers buffers = DIGEST_BUFFERS.get();
+    try {
+      buffers.sha1.update(plainText, 0, length);
+      buffers.sha1.digest(buffers.digest, 0, DIGEST_LENGTH);
+      return isBreachedDigest(buffers.digest);
+    } catch (DigestException e) {
+      // the buffer always holds the digest
+      throw new IllegalStateException(e);
+    } finally {
+      buffers.sha1.reset();
+    }
+  }
+
+  /**
+   * 
+   * @param sha1Digest
+   *          the digest
+   * @return false if the digest is certainly not in the index
+   */
+  private boolean mightContain(byte[] sha1Digest) {
+    long blockOffset = getBloomBlock(sha1Digest, bloomBlockCount) * BLOOM_BLOCK_LENGTH;
+    ByteBuffer segment = bloomSegments[(int) (blockOffset / BLOOM_SEGMENT_LENGTH)];
+    int base = (int) (blockOffset % BLOOM_SEGMENT_LENGTH);
+    long bits = getBloomBits(sha1Digest);
+    for (int i = 0; i < bloomHashCount; i++, bits >>>= 9) {
+      int bit = (int) (bits & (BLOOM_BLOCK_BITS - 1));
+      if ((segment.getLong(base + (bit >>> 6) * 8) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * compares the stored digest to the digest looked up, the bucket being
+   * known to match
+   * 
+   * @param index
+   *          the index of the stored digest
+   * @param sha1Digest
+   *          the digest looked up
+   * @return a negative number, zero or a positive number if the stored digest
+   *         is less than, equal to or greater than the digest looked up
+   */
+  private int compareRecord(long index, byte[] sha1Digest) {
+    long position = index * RECORD_LENGTH;
+    ByteBuffer segment = recordSegments[(int) (position / RECORD_SEGMENT_LENGTH)];
+    int offset = (int) (position % RECORD_SEGMENT_LENGTH);
+    for (int i = 0; i < RECORD_LENGTH; i++) {
+      int difference = (segment.get(offset + i) & 0xff) - (sha1Digest[i + 2] & 0xff);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * 
+   * @param sha1Digest
+   *          the digest
+   * @return the bucket given by the first two bytes of the digest
+   */
+  static int getBucket(byte[] sha1Digest) {
+    return ((sha1Digest[0] & 0xff) << 8) | (sha1Digest[1] & 0xff);
+  }
+
+  /**
+   * selects the Bloom filter block from bytes of the digest not used by the
+   * bucket, as the digest is uniformly distributed already
+   * 
+   * @param sha1Digest
+   *          the digest
+   * @param blockCount
+   *          the number of blocks of the Bloom filter
+   * @return the index of the block
+   */
+  static long getBloomBlock(byte[] sha1Digest, long blockCount) {
+    return (readLong(sha1Digest, 4) >>> 1) % blockCount;
+  }
+
+  /**
+   * 
+   * @param sha1Digest
+   *          the digest
+   * @return the bits of the digest providing 9 bit probe positions within a
+   *         block
+   */
+  static long getBloomBits(byte[] sha1Digest) {
+    return readLong(sha1Digest, 12);
+  }
+
+  private static boolean isAscending(long[] bucketStarts) {
+    if (bucketStarts[0] != 0) {
+      return false;
+    }
+    for (int i = 1; i < bucketStarts.length; i++) {
+      if (bucketStarts[i] < bucketStarts[i - 1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long readLong(byte[] bytes, int offset) {
+    long result = 0;
+    for (int i = 0; i < 8; i++) {
+      result = (result << 8) | (bytes[offset + i] & 0xff);
+    }
+    return result;
+  }
+
+  private static long roundUp(long value, long multiple) {
+    return (value + multiple - 1) / multiple * multiple;
+  }
+
+  /**
+   * the SHA-1 digester and digest buffer of a thread
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class DigestBuffers {
+
+    private final MessageDigest sha1;
+    private final byte[] digest = new byte[DIGEST_LENGTH];
+
+    DigestBuffers() {
+      super();
+      try {
+        sha1 = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        // every Java platform supports SHA-1
+        throw new IllegalStateException(e);
+      }
+    }
+
+  }
+
+}
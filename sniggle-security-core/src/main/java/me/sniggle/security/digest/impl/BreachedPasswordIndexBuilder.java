@@ -0,0 +1,435 @@
+package me.sniggle.security.digest.impl;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the index file of a {@link BreachedPasswordIndex} from a local list
+ * of breached SHA-1 digests, one hexadecimal digest per line, optionally
+ * followed by a colon and an occurrence count as in the commonly distributed
+ * breached password downloads. Malformed lines are skipped. <br>
+ * <br>
+ * the list is read twice and the heap use does not depend on its size: the
+ * first pass counts the digests per bucket, the second one scatters them into
+ * a memory-mapped temporary file next to the index file, sequentially if the
+ * list is sorted already. Finally each bucket is sorted on the heap, its
+ * duplicates are dropped and its digests are added to the Bloom filter, which
+ * is mapped as well. The temporary file needs 18 bytes per line
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class BreachedPasswordIndexBuilder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BreachedPasswordIndexBuilder.class);
+
+  /**
+   * the default size of the Bloom filter per digest, resulting in about 1%
+   * false positives
+   */
+  public static final int DEFAULT_BLOOM_BITS_PER_ENTRY = 10;
+
+  private static final int RECORD_LENGTH = BreachedPasswordIndex.RECORD_LENGTH;
+  private static final int READ_BUFFER_LENGTH = 1 << 16;
+
+  private int bloomBitsPerEntry = DEFAULT_BLOOM_BITS_PER_ENTRY;
+
+  /**
+   * uses a Bloom filter of {@link #DEFAULT_BLOOM_BITS_PER_ENTRY} bits per
+   * digest
+   */
+  public BreachedPasswordIndexBuilder() {
+    super();
+  }
+
+  /**
+   * 
+   * @return the size of the Bloom filter in bits per digest
+   */
+  public int getBloomBitsPerEntry() {
+    return bloomBitsPerEntry;
+  }
+
+  /**
+   * a larger Bloom filter answers more lookups of passwords not in the index
+   * without reading the digests, each additional bit reducing the false
+   * positives by about 40%
+   * 
+   * @param bloomBitsPerEntry
+   *          the size of the Bloom filter in bits per digest, 1 to 32
+   */
+  public void setBloomBitsPerEntry(int bloomBitsPerEntry) {
+    if (bloomBitsPerEntry < 1 || bloomBitsPerEntry > 32) {
+      throw new IllegalArgumentException("The Bloom filter bits per entry must be between 1 and 32");
+    }
+    this.bloomBitsPerEntry = bloomBitsPerEntry;
+  }
+
+  /**
+   * creates the index file, replacing an existing file
+   * 
+   * @param breachedDigestList
+   *          the list of hexadecimal SHA-1 digests
+   * @param indexFile
+   *          the index file to be created
+   * @return true if the index file has been created
+   */
+  public boolean build(File breachedDigestList, File indexFile) {
+    String message = "Error building breached password index. {}";
+    if (breachedDigestList == null || !breachedDigestList.isFile() || indexFile == null) {
+      LOGGER.error(message, "The list of breached digests does not exist");
+      return false;
+    }
+    File temporaryFile = null;
+    try {
+      long[] bucketCounts = new long[BreachedPasswordIndex.BUCKET_COUNT];
+      long lineCount = countDigests(breachedDigestList, bucketCounts);
+      for (long bucketCount : bucketCounts) {
+        if (bucketCount * RECORD_LENGTH > Integer.MAX_VALUE) {
+          LOGGER.error(message, "A bucket exceeds the supported size");
+          return false;
+        }
+      }
+      File directory = indexFile.getAbsoluteFile().getParentFile();
+      temporaryFile = File.createTempFile("breached", ".tmp", directory);
+      scatterDigests(breachedDigestList, temporaryFile, bucketCounts, lineCount);
+      long entryCount = writeIndex(temporaryFile, indexFile, bucketCounts, lineCount);
+      LOGGER.info("Built breached password index of {} entries from {} digests", entryCount, lineCount);
+      return true;
+    } catch (IOException e) {
+      LOGGER.error(message, e.getMessage());
+    } finally {
+      if (temporaryFile != null && !temporaryFile.delete()) {
+        // a mapped file cannot be deleted on some platforms
+        temporaryFile.deleteOnExit();
+      }
+    }
+    return false;
+  }
+
+  /**
+   * first pass counting the digests per bucket
+   * 
+   * @return the number of digests
+   */
+  private long countDigests(File breachedDigestList, long[] bucketCounts) throws IOException {
+    DigestListReader reader = new DigestListReader(breachedDigestList);
+    try {
+      byte[] digest = new byte[BreachedPasswordIndex.DIGEST_LENGTH];
+      long result = 0;
+      while (reader.next(digest)) {
+        bucketCounts[BreachedPasswordIndex.getBucket(digest)]++;
+        result++;
+      }
+      if (reader.getMalformedLines() > 0) {
+        LOGGER.warn("Skipped {} malformed lines of the list of breached digests", reader.getMalformedLines());
+      }
+      return result;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * second pass writing the digests without their bucket into the bucket
+   * ranges of the temporary file
+   */
+  private void scatterDigests(File breachedDigestList, File temporaryFile, long[] bucketCounts, long lineCount)
+      throws IOException {
+    long[] positions = new long[bucketCounts.length];
+    for (int i = 1; i < positions.length; i++) {
+      positions[i] = positions[i - 1] + bucketCounts[i - 1] * RECORD_LENGTH;
+    }
+    RandomAccessFile file = new RandomAccessFile(temporaryFile, "rw");
+    DigestListReader reader = null;
+    try {
+      file.setLength(lineCount * RECORD_LENGTH);
+      ByteBuffer[] segments = MappedFiles.map(file.getChannel(), MapMode.READ_WRITE, 0, lineCount
+          * RECORD_LENGTH, BreachedPasswordIndex.RECORD_SEGMENT_LENGTH);
+      reader = new DigestListReader(breachedDigestList);
+      byte[] digest = new byte[BreachedPasswordIndex.DIGEST_LENGTH];
+      long scattered = 0;
+      while (scattered < lineCount && reader.next(digest)) {
+        int bucket = BreachedPasswordIndex.getBucket(digest);
+        long position = positions[bucket];
+        positions[bucket] += RECORD_LENGTH;
+        ByteBuffer segment = segments[(int) (position / BreachedPasswordIndex.RECORD_SEGMENT_LENGTH)];
+        int offset = (int) (position % BreachedPasswordIndex.RECORD_SEGMENT_LENGTH);
+        for (int i = 0; i < RECORD_LENGTH; i++) {
+          segment.put(offset + i, digest[i + 2]);
+        }
+        scattered++;
+      }
+      if (scattered < lineCount) {
+        throw new IOException("The list of breached digests has changed while building the index");
+      }
+      MappedFiles.force(segments);
+    } finally {
+      if (reader != null) {
+        reader.close();
+      }
+      file.close();
+    }
+  }
+
+  /**
+   * final pass sorting the buckets and writing the index file
+   * 
+   * @return the number of distinct digests
+   */
+  private long writeIndex(File temporaryFile, File indexFile, long[] bucketCounts, long lineCount) throws IOException {
+    long bloomBlockCount = Math.max(1, (lineCount * bloomBitsPerEntry + BreachedPasswordIndex.BLOOM_BLOCK_BITS - 1)
+        / BreachedPasswordIndex.BLOOM_BLOCK_BITS);
+    // ln 2 probes per bit and digest
+    int bloomHashCount = Math.min(Math.max(1, (int) Math.round(bloomBitsPerEntry * Math.log(2))),
+        BreachedPasswordIndex.MAXIMUM_BLOOM_HASH_COUNT);
+    long recordOffset = BreachedPasswordIndex.BLOOM_FILTER_OFFSET + bloomBlockCount
+        * BreachedPasswordIndex.BLOOM_BLOCK_LENGTH;
+    RandomAccessFile source = new RandomAccessFile(temporaryFile, "r");
+    RandomAccessFile target = null;
+    try {
+      target = new RandomAccessFile(indexFile, "rw");
+      target.setLength(0);
+      target.setLength(recordOffset);
+      FileChannel targetChannel = target.getChannel();
+      ByteBuffer[] recordSegments = MappedFiles.map(source.getChannel(), MapMode.READ_ONLY, 0, lineCount
+          * RECORD_LENGTH, BreachedPasswordIndex.RECORD_SEGMENT_LENGTH);
+      ByteBuffer[] bloomSegments = MappedFiles.map(targetChannel, MapMode.READ_WRITE,
+          BreachedPasswordIndex.BLOOM_FILTER_OFFSET, bloomBlockCount * BreachedPasswordIndex.BLOOM_BLOCK_LENGTH,
+          BreachedPasswordIndex.BLOOM_SEGMENT_LENGTH);
+      long[] bucketStarts = new long[BreachedPasswordIndex.BUCKET_COUNT + 1];
+      byte[] records = new byte[0];
+      byte[] digest = new byte[BreachedPasswordIndex.DIGEST_LENGTH];
+      long sourcePosition = 0;
+      long targetPosition = recordOffset;
+      for (int bucket = 0; bucket < BreachedPasswordIndex.BUCKET_COUNT; bucket++) {
+        int length = (int) (bucketCounts[bucket] * RECORD_LENGTH);
+        if (records.length < length) {
+          records = new byte[length];
+        }
+        read(recordSegments, sourcePosition, records, length);
+        sourcePosition += length;
+        RecordSorter.sort(records, length / RECORD_LENGTH);
+        int uniqueLength = 0;
+        digest[0] = (byte) (bucket >>> 8);
+        digest[1] = (byte) bucket;
+        for (int offset = 0; offset < length; offset += RECORD_LENGTH) {
+          if (uniqueLength > 0 && RecordSorter.compare(records, uniqueLength - RECORD_LENGTH, offset) == 0) {
+            continue;
+          }
+          System.arraycopy(records, offset, records, uniqueLength, RECORD_LENGTH);
+          System.arraycopy(records, offset, digest, 2, RECORD_LENGTH);
+          addToBloomFilter(bloomSegments, bloomBlockCount, bloomHashCount, digest);
+          uniqueLength += RECORD_LENGTH;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(records, 0, uniqueLength);
+        while (buffer.hasRemaining()) {
+          targetPosition += targetChannel.write(buffer, targetPosition);
+        }
+        bucketStarts[bucket + 1] = bucketStarts[bucket] + uniqueLength / RECORD_LENGTH;
+      }
+      MappedFiles.force(bloomSegments);
+      long entryCount = bucketStarts[BreachedPasswordIndex.BUCKET_COUNT];
+      ByteBuffer header = ByteBuffer.allocate((int) BreachedPasswordIndex.BLOOM_FILTER_OFFSET);
+      header.putLong(BreachedPasswordIndex.MAGIC).putInt(bloomHashCount).putInt(0).putLong(entryCount)
+          .putLong(bloomBlockCount);
+      header.asLongBuffer().put(bucketStarts);
+      header.clear();
+      while (header.hasRemaining()) {
+        targetChannel.write(header, header.position());
+      }
+      targetChannel.force(true);
+      return entryCount;
+    } finally {
+      source.close();
+      if (target != null) {
+        target.close();
+      }
+    }
+  }
+
+  private static void addToBloomFilter(ByteBuffer[] bloomSegments, long bloomBlockCount, int bloomHashCount,
+      byte[] digest) {
+    long blockOffset = BreachedPasswordIndex.getBloomBlock(digest, bloomBlockCount)
+        * BreachedPasswordIndex.BLOOM_BLOCK_LENGTH;
+    ByteBuffer segment = bloomSegments[(int) (blockOffset / BreachedPasswordIndex.BLOOM_SEGMENT_LENGTH)];
+    int base = (int) (blockOffset % BreachedPasswordIndex.BLOOM_SEGMENT_LENGTH);
+    long bits = BreachedPasswordIndex.getBloomBits(digest);
+    for (int i = 0; i < bloomHashCount; i++, bits >>>= 9) {
+      int bit = (int) (bits & (BreachedPasswordIndex.BLOOM_BLOCK_BITS - 1));
+      int index = base + (bit >>> 6) * 8;
+      segment.putLong(index, segment.getLong(index) | (1L << bit));
+    }
+  }
+
+  /**
+   * copies a range of the segmented region, which may span segments
+   */
+  private static void read(ByteBuffer[] segments, long position, byte[] target, int length) {
+    int copied = 0;
+    while (copied < length) {
+      long current = position + copied;
+      ByteBuffer segment = segments[(int) (current / BreachedPasswordIndex.RECORD_SEGMENT_LENGTH)].duplicate();
+      segment.position((int) (current % BreachedPasswordIndex.RECORD_SEGMENT_LENGTH));
+      int count = Math.min(length - copied, segment.remaining());
+      segment.get(target, copied, count);
+      copied += count;
+    }
+  }
+
+  /**
+   * reads the digests of a list of hexadecimal SHA-1 digests without creating
+   * a string per line
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class DigestListReader {
+
+    private static final int HEX_DIGITS = BreachedPasswordIndex.DIGEST_LENGTH * 2;
+
+    private final InputStream in;
+    private long malformedLines;
+
+    DigestListReader(File file) throws IOException {
+      super();
+      this.in = new BufferedInputStream(new FileInputStream(file), READ_BUFFER_LENGTH);
+    }
+
+    /**
+     * reads the next well-formed line
+     * 
+     * @param digest
+     *          the buffer receiving the 20 bytes of the digest
+     * @return false if the end of the list has been reached
+     * @throws IOException
+     *           if the list could not be read
+     */
+    boolean next(byte[] digest) throws IOException {
+      while (true) {
+        int digits = 0;
+        boolean valid = true;
+        boolean blank = true;
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+          if (c != '\r') {
+            blank = false;
+          }
+          if (!valid || digits > HEX_DIGITS) {
+            continue;
+          }
+          if (digits == HEX_DIGITS) {
+            // the digest may be followed by an occurrence count
+            valid = c == ':' || c == '\r' || c == ' ' || c == '\t';
+            digits++;
+            continue;
+          }
+          int value = Character.digit(c, 16);
+          if (value < 0) {
+            valid = false;
+            continue;
+          }
+          if ((digits & 1) == 0) {
+            digest[digits >>> 1] = (byte) (value << 4);
+          } else {
+            digest[digits >>> 1] |= value;
+          }
+          digits++;
+        }
+        if (valid && digits >= HEX_DIGITS) {
+          return true;
+        }
+        if (!blank) {
+          malformedLines++;
+        }
+        if (c < 0) {
+          return false;
+        }
+      }
+    }
+
+    long getMalformedLines() {
+      return malformedLines;
+    }
+
+    void close() throws IOException {
+      in.close();
+    }
+
+  }
+
+  /**
+   * sorts the records of a bucket in ascending unsigned byte order by
+   * heapsort, which neither degrades on duplicates nor needs extra memory
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class RecordSorter {
+
+    private RecordSorter() {
+      super();
+    }
+
+    static void sort(byte[] records, int count) {
+      byte[] scratch = new byte[RECORD_LENGTH];
+      for (int i = count / 2 - 1; i >= 0; i--) {
+        siftDown(records, i, count, scratch);
+      }
+      for (int end = count - 1; end > 0; end--) {
+        swap(records, 0, end, scratch);
+        siftDown(records, 0, end, scratch);
+      }
+    }
+
+    private static void siftDown(byte[] records, int root, int count, byte[] scratch) {
+      int parent = root;
+      int child;
+      while ((child = 2 * parent + 1) < count) {
+        if (child + 1 < count && compare(records, child * RECORD_LENGTH, (child + 1) * RECORD_LENGTH) < 0) {
+          child++;
+        }
+        if (compare(records, parent * RECORD_LENGTH, child * RECORD_LENGTH) >= 0) {
+          return;
+        }
+        swap(records, parent, child, scratch);
+        parent = child;
+      }
+    }
+
+    static int compare(byte[] records, int first, int second) {
+      for (int i = 0; i < RECORD_LENGTH; i++) {
+        int difference = (records[first + i] & 0xff) - (records[second + i] & 0xff);
+        if (difference != 0) {
+          return difference;
+        }
+      }
+      return 0;
+    }
+
+    private static void swap(byte[] records, int first, int second, byte[] scratch) {
+      if (first != second) {
+        int firstOffset = first * RECORD_LENGTH;
+        int secondOffset = second * RECORD_LENGTH;
+        System.arraycopy(records, firstOffset, scratch, 0, RECORD_LENGTH);
+        System.arraycopy(records, secondOffset, records, firstOffset, RECORD_LENGTH);
+        System.arraycopy(scratch, 0, records, secondOffset, RECORD_LENGTH);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,83 @@
+package me.sniggle.security.digest.impl;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.HashGenerator;
+import me.sniggle.security.digest.HashGeneratorFactory;
+import me.sniggle.security.digest.config.Algorithm;
+
+/**
+ * Creates the hash generators shipped with this library. The implementing
+ * class is only loaded once a hash generator is created, so that e.g. the
+ * legacy JASYPT compatible generator is not loaded by applications only using
+ * SHA-CRYPT
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class BuiltInHashGeneratorFactory implements HashGeneratorFactory {
+
+  private final Algorithm algorithm;
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          the algorithm
+   */
+  BuiltInHashGeneratorFactory(Algorithm algorithm) {
+    super();
+    this.algorithm = algorithm;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.HashGeneratorFactory#getAlgorithm()
+   */
+  @Override
+  public Algorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * 
+   * @return 0
+   */
+  @Override
+  public int getPriority() {
+    return 0;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.HashGeneratorFactory#createHashGenerator(me.sniggle
+   * .security.crypto.config.RoundConfiguration)
+   */
+  @Override
+  public HashGenerator createHashGenerator(RoundConfiguration roundConfiguration) {
+    switch (algorithm) {
+    case SHA256_CRYPT:
+      return (roundConfiguration == null) ? Sha256Crypt.getInstance() : new Sha256Crypt(roundConfiguration);
+    case SHA512_CRYPT:
+      return (roundConfiguration == null) ? Sha512Crypt.getInstance() : new Sha512Crypt(roundConfiguration);
+    case PBKDF2_SHA256:
+      return (roundConfiguration == null) ? Pbkdf2Sha256.getInstance() : new Pbkdf2Sha256(roundConfiguration);
+    case PBKDF2_SHA512:
+      return (roundConfiguration == null) ? Pbkdf2Sha512.getInstance() : new Pbkdf2Sha512(roundConfiguration);
+    case BCRYPT_2A:
+    case BCRYPT_2B:
+      return (roundConfiguration == null) ? BcryptHashGenerator.getInstance(algorithm) : new BcryptHashGenerator(
+          algorithm, roundConfiguration);
+    case ARGON2ID:
+      return (roundConfiguration == null) ? Argon2idHashGenerator.getInstance() : new Argon2idHashGenerator(
+          roundConfiguration);
+    default:
+      return (roundConfiguration == null) ? JasyptHashGenerator.getInstance(algorithm) : new JasyptHashGenerator(
+          algorithm, roundConfiguration);
+    }
+  }
+
+}
@@ -0,0 +1,459 @@
+package me.sniggle.security.digest.impl;
+
+import java.nio.CharBuffer;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import me.sniggle.security.digest.PasswordDigester;
+import me.sniggle.security.digest.config.ParsedHash;
+import me.sniggle.security.digest.config.PasswordMatchResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class caches successful verifications in front of another
+ * {@link PasswordDigester}, so that a credential presented repeatedly, e.g. by
+ * HTTP basic authentication, is only verified by the expensive hash
+ * computation once per time to live. <br>
+ * <br>
+ * per stored hash only a keyed fingerprint of the last verified plain text is
+ * kept, never the plain text itself. The cache is bounded and evicts the least
+ * recently used entries, verifications resulting in an updated hash are not
+ * cached so that the upgrade is offered again
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class CachingPasswordDigester implements PasswordDigester {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachingPasswordDigester.class);
+
+  private final PasswordDigester passwordDigester;
+  private final long timeToLiveNanos;
+  private final CredentialFingerprint fingerprint = new CredentialFingerprint();
+  private final Map<String, CacheEntry> entries;
+
+  /**
+   * caches up to 10000 verified credentials for five minutes
+   * 
+   * @param passwordDigester
+   *          the digester performing the verification on a cache miss
+   */
+  public CachingPasswordDigester(PasswordDigester passwordDigester) {
+    this(passwordDigester, 10000, 5, TimeUnit.MINUTES);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param passwordDigester
+   *          the digester performing the verification on a cache miss
+   * @param maximumEntries
+   *          the maximum number of cached credentials
+   * @param timeToLive
+   *          the time a verification is cached
+   * @param unit
+   *          the unit of the time to live
+   */
+  public CachingPasswordDigester(PasswordDigester passwordDigester, final int maximumEntries, long timeToLive,
+      TimeUnit unit) {
+    super();
+    if (passwordDigester == null || unit == null) {
+      throw new IllegalArgumentException("The password digester and the time unit may not be null!");
+    }
+    if (maximumEntries < 1 || timeToLive < 1) {
+      throw new IllegalArgumentException("The maximum number of entries and the time to live must be positive");
+    }
+    this.passwordDigester = passwordDigester;
+    this.timeToLiveNanos = unit.toNanos(timeToLive);
+    this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+        return size() > maximumEntries;
+      }
+
+    };
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(java.lang.String)
+   */
+  @Override
+  public String hashPassword(String plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(char[])
+   */
+  @Override
+  public String hashPassword(char[] plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#hashPassword(java.nio.CharBuffer)
+   */
+  @Override
+  public String hashPassword(CharBuffer plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(byte[])
+   */
+  @Override
+  public String hashPassword(byte[] plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.lang.String,
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(String plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(char[],
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(char[] plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.nio.CharBuffer,
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(CharBuffer plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(byte[],
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(byte[] plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.lang.String,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(String plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(char[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(char[] plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.nio.CharBuffer,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(CharBuffer plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(byte[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(byte[] plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /**
+   * serves the verification from the cache or performs and caches it
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash
+   * @return the result of the verification
+   */
+  private PasswordMatchResult matchesPassword(PlainText plainText, String formattedHash) {
+    if (plainText == null) {
+      return passwordDigester.matchesPassword((String) null, formattedHash);
+    }
+    if (formattedHash == null) {
+      return plainText.matchesPassword(passwordDigester, formattedHash);
+    }
+    byte[] credential = fingerprint.create(formattedHash, plainText);
+    if (isCached(formattedHash, credential)) {
+      return new PasswordMatchResult(true, null);
+    }
+    PasswordMatchResult result = plainText.matchesPassword(passwordDigester, formattedHash);
+    cache(formattedHash, credential, result);
+    return result;
+  }
+
+  /**
+   * serves the verification from the cache or performs and caches it
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash
+   * @return the result of the verification
+   */
+  private PasswordMatchResult matchesPassword(PlainText plainText, ParsedHash parsedHash) {
+    if (plainText == null) {
+      return passwordDigester.matchesPassword((String) null, parsedHash);
+    }
+    if (parsedHash == null) {
+      return plainText.matchesPassword(passwordDigester, parsedHash);
+    }
+    String formattedHash = parsedHash.getFormattedHash();
+    byte[] credential = fingerprint.create(formattedHash, plainText);
+    if (isCached(formattedHash, credential)) {
+      return new PasswordMatchResult(true, null);
+    }
+    PasswordMatchResult result = plainText.matchesPassword(passwordDigester, parsedHash);
+    cache(formattedHash, credential, result);
+    return result;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#parseHash(java.lang.String)
+   */
+  @Override
+  public ParsedHash parseHash(String formattedHash) {
+    return passwordDigester.parseHash(formattedHash);
+  }
+
+  /**
+   * removes the cached verification of the hash, e.g. after the password has
+   * been changed or the account has been locked
+   * 
+   * @param formattedHash
+   *          the stored hash
+   */
+  public void invalidate(String formattedHash) {
+    synchronized (entries) {
+      entries.remove(formattedHash);
+    }
+  }
+
+  /**
+   * removes all cached verifications
+   */
+  public void invalidateAll() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * 
+   * @return the number of cached verifications, including expired ones not
+   *         yet removed
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * 
+   * @param formattedHash
+   *          the stored hash
+   * @param credential
+   *          the fingerprint of the presented plain text
+   * @return true if the credential has been verified against the hash within
+   *         the time to live
+   */
+  private boolean isCached(String formattedHash, byte[] credential) {
+    if (credential == null) {
+      return false;
+    }
+    CacheEntry entry;
+    synchronized (entries) {
+      entry = entries.get(formattedHash);
+      if (entry != null && entry.isExpired(System.nanoTime())) {
+        entries.remove(formattedHash);
+        entry = null;
+      }
+    }
+    if (entry != null && MessageDigest.isEqual(entry.credential, credential)) {
+      LOGGER.debug("verification served from cache");
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * caches the credential if the result is a plain match
+   * 
+   * @param formattedHash
+   *          the stored hash
+   * @param credential
+   *          the fingerprint of the verified plain text
+   * @param result
+   *          the result of the verification
+   */
+  private void cache(String formattedHash, byte[] credential, PasswordMatchResult result) {
+    if (credential != null && result != null && result.isMatching() && !result.isRejected()
+        && result.getUpdatedHash() == null) {
+      CacheEntry entry = new CacheEntry(credential, System.nanoTime() + timeToLiveNanos);
+      synchronized (entries) {
+        entries.put(formattedHash, entry);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPasswords(java.util.List)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts) {
+    return passwordDigester.hashPasswords(plainTexts);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPasswords(java.util.List,
+   * java.util.concurrent.Executor)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts, Executor executor) {
+    return passwordDigester.hashPasswords(plainTexts, executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPasswords(java.util.List,
+   * java.util.List)
+   */
+  @Override
+  public List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes) {
+    return matchesPasswords(plainTexts, formattedHashes, BatchExecution.getDefaultExecutor());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPasswords(java.util.List,
+   * java.util.List, java.util.concurrent.Executor)
+   */
+  @Override
+  public List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes, Executor executor) {
+    return BatchExecution.matchesPasswords(this, plainTexts, formattedHashes, executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#findMatchingHash(java.lang.String,
+   * java.util.List)
+   */
+  @Override
+  public Integer findMatchingHash(String plainText, List<String> formattedHashes) {
+    return passwordDigester.findMatchingHash(plainText, formattedHashes);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#findMatchingHash(java.lang.String,
+   * java.util.List, java.util.concurrent.Executor)
+   */
+  @Override
+  public Integer findMatchingHash(String plainText, List<String> formattedHashes, Executor executor) {
+    return passwordDigester.findMatchingHash(plainText, formattedHashes, executor);
+  }
+
+  /**
+   * the fingerprint of a verified credential and its expiry
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class CacheEntry {
+
+    private final byte[] credential;
+    private final long expiresAt;
+
+    CacheEntry(byte[] credential, long expiresAt) {
+      super();
+      this.credential = credential;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(long now) {
+      return now - expiresAt >= 0;
+    }
+
+  }
+
+}
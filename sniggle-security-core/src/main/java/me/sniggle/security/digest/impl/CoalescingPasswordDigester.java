@@ -0,0 +1,509 @@
+package me.sniggle.security.digest.impl;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.sniggle.security.digest.PasswordDigester;
+import me.sniggle.security.digest.config.ParsedHash;
+import me.sniggle.security.digest.config.PasswordMatchResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class coalesces concurrent verifications of the same plain text
+ * against the same stored hash in front of another {@link PasswordDigester}.
+ * The first caller performs the verification, callers arriving while it is in
+ * flight wait for and share its result instead of repeating the computation,
+ * e.g. during retry storms. <br>
+ * <br>
+ * in-flight verifications are identified by the stored hash and a keyed
+ * fingerprint of the plain text, the plain text itself is not kept. Only
+ * concurrent calls are coalesced, no result is kept after completion. The
+ * result of a verification aborted by the interrupt of the first caller is not
+ * shared, the waiting callers then verify on their own
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class CoalescingPasswordDigester implements PasswordDigester {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingPasswordDigester.class);
+
+  private final PasswordDigester passwordDigester;
+  private final CredentialFingerprint fingerprint = new CredentialFingerprint();
+  private final ConcurrentMap<InFlightKey, FutureTask<PasswordMatchResult>> inFlight = new ConcurrentHashMap<InFlightKey, FutureTask<PasswordMatchResult>>();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  /**
+   * constructor
+   * 
+   * @param passwordDigester
+   *          the digester performing the verification
+   */
+  public CoalescingPasswordDigester(PasswordDigester passwordDigester) {
+    super();
+    if (passwordDigester == null) {
+      throw new IllegalArgumentException("The password digester may not be null!");
+    }
+    this.passwordDigester = passwordDigester;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(java.lang.String)
+   */
+  @Override
+  public String hashPassword(String plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(char[])
+   */
+  @Override
+  public String hashPassword(char[] plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#hashPassword(java.nio.CharBuffer)
+   */
+  @Override
+  public String hashPassword(CharBuffer plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(byte[])
+   */
+  @Override
+  public String hashPassword(byte[] plainText) {
+    return passwordDigester.hashPassword(plainText);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.lang.String,
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(String plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(char[],
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(char[] plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.nio.CharBuffer,
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(CharBuffer plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(byte[],
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(byte[] plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.lang.String,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(String plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(char[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(char[] plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.nio.CharBuffer,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(CharBuffer plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(byte[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(byte[] plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash
+   * @return the result of the verification
+   */
+  private PasswordMatchResult matchesPassword(final PlainText plainText, final String formattedHash) {
+    if (plainText == null) {
+      return passwordDigester.matchesPassword((String) null, formattedHash);
+    }
+    if (formattedHash == null) {
+      return plainText.matchesPassword(passwordDigester, formattedHash);
+    }
+    return coalesce(formattedHash, plainText, new Callable<PasswordMatchResult>() {
+      @Override
+      public PasswordMatchResult call() {
+        return plainText.matchesPassword(passwordDigester, formattedHash);
+      }
+    });
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash
+   * @return the result of the verification
+   */
+  private PasswordMatchResult matchesPassword(final PlainText plainText, final ParsedHash parsedHash) {
+    if (plainText == null) {
+      return passwordDigester.matchesPassword((String) null, parsedHash);
+    }
+    if (parsedHash == null) {
+      return plainText.matchesPassword(passwordDigester, parsedHash);
+    }
+    return coalesce(parsedHash.getFormattedHash(), plainText, new Callable<PasswordMatchResult>() {
+      @Override
+      public PasswordMatchResult call() {
+        return plainText.matchesPassword(passwordDigester, parsedHash);
+      }
+    });
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#parseHash(java.lang.String)
+   */
+  @Override
+  public ParsedHash parseHash(String formattedHash) {
+    return passwordDigester.parseHash(formattedHash);
+  }
+
+  /**
+   * 
+   * @return the number of verifications answered with the result of an
+   *         identical in-flight verification so far
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * performs the verification unless an identical one is in flight, in which
+   * case its result is awaited
+   * 
+   * @param formattedHash
+   *          the stored hash
+   * @param plainText
+   *          the plain text to be verified
+   * @param verification
+   *          the verification
+   * @return the result of the verification, not matching if the caller is
+   *         interrupted while waiting
+   */
+  private PasswordMatchResult coalesce(String formattedHash, PlainText plainText,
+      Callable<PasswordMatchResult> verification) {
+    byte[] credential = fingerprint.create(formattedHash, plainText);
+    if (credential == null) {
+      return verify(verification);
+    }
+    SharedVerification sharedVerification = new SharedVerification(verification);
+    FutureTask<PasswordMatchResult> task = new FutureTask<PasswordMatchResult>(sharedVerification);
+    InFlightKey key = new InFlightKey(formattedHash, credential);
+    FutureTask<PasswordMatchResult> existing = inFlight.putIfAbsent(key, task);
+    if (existing == null) {
+      try {
+        task.run();
+      } finally {
+        inFlight.remove(key, task);
+      }
+      awaitResult(task);
+      return sharedVerification.getResult();
+    }
+    coalescedCount.incrementAndGet();
+    LOGGER.debug("joining in-flight verification");
+    PasswordMatchResult result = awaitResult(existing);
+    if (result == null) {
+      if (Thread.currentThread().isInterrupted()) {
+        // answered like a verification aborted by the interrupt
+        return new PasswordMatchResult(false, null);
+      }
+      LOGGER.debug("in-flight verification has been aborted or failed, verifying separately");
+      return verify(verification);
+    }
+    // every caller gets its own instance, the result is mutable
+    return new PasswordMatchResult(result.isMatching(), result.getUpdatedHash(), result.isRejected());
+  }
+
+  /**
+   * performs the verification on the calling thread without coalescing
+   * 
+   * @param verification
+   *          the verification
+   * @return the result of the verification
+   */
+  private PasswordMatchResult verify(Callable<PasswordMatchResult> verification) {
+    FutureTask<PasswordMatchResult> task = new FutureTask<PasswordMatchResult>(verification);
+    task.run();
+    return awaitResult(task);
+  }
+
+  /**
+   * 
+   * @param task
+   *          the verification
+   * @return the result of the verification or null if the waiting thread has
+   *         been interrupted
+   */
+  private PasswordMatchResult awaitResult(FutureTask<PasswordMatchResult> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      LOGGER.warn("Interrupted while waiting for in-flight verification");
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPasswords(java.util.List)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts) {
+    return passwordDigester.hashPasswords(plainTexts);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPasswords(java.util.List,
+   * java.util.concurrent.Executor)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts, Executor executor) {
+    return passwordDigester.hashPasswords(plainTexts, executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPasswords(java.util.List,
+   * java.util.List)
+   */
+  @Override
+  public List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes) {
+    return matchesPasswords(plainTexts, formattedHashes, BatchExecution.getDefaultExecutor());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPasswords(java.util.List,
+   * java.util.List, java.util.concurrent.Executor)
+   */
+  @Override
+  public List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes, Executor executor) {
+    return BatchExecution.matchesPasswords(this, plainTexts, formattedHashes, executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#findMatchingHash(java.lang.String,
+   * java.util.List)
+   */
+  @Override
+  public Integer findMatchingHash(String plainText, List<String> formattedHashes) {
+    return passwordDigester.findMatchingHash(plainText, formattedHashes);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#findMatchingHash(java.lang.String,
+   * java.util.List, java.util.concurrent.Executor)
+   */
+  @Override
+  public Integer findMatchingHash(String plainText, List<String> formattedHashes, Executor executor) {
+    return passwordDigester.findMatchingHash(plainText, formattedHashes, executor);
+  }
+
+  /**
+   * the verification performed by the first caller, which keeps its own result
+   * but shares it only if the verification has not been aborted, as an aborted
+   * verification does not match no matter the plain text
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class SharedVerification implements Callable<PasswordMatchResult> {
+
+    private final Callable<PasswordMatchResult> verification;
+    private PasswordMatchResult result;
+
+    SharedVerification(Callable<PasswordMatchResult> verification) {
+      super();
+      this.verification = verification;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public PasswordMatchResult call() throws Exception {
+      result = verification.call();
+      return BaseHashGenerator.isAborted() ? null : result;
+    }
+
+    /**
+     * 
+     * @return the result of the verification for the first caller, only to be
+     *         called by the thread having performed it
+     */
+    PasswordMatchResult getResult() {
+      return result;
+    }
+
+  }
+
+  /**
+   * identifies a verification by the stored hash and the fingerprint of the
+   * plain text
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class InFlightKey {
+
+    private final String formattedHash;
+    private final byte[] credential;
+    private final int hashCode;
+
+    InFlightKey(String formattedHash, byte[] credential) {
+      super();
+      this.formattedHash = formattedHash;
+      this.credential = credential;
+      this.hashCode = 31 * formattedHash.hashCode() + Arrays.hashCode(credential);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof InFlightKey)) {
+        return false;
+      }
+      InFlightKey other = (InFlightKey) obj;
+      return formattedHash.equals(other.formattedHash) && Arrays.equals(credential, other.credential);
+    }
+
+  }
+
+}
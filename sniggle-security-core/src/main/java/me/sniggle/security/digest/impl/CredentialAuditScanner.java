@@ -0,0 +1,428 @@
+package me.sniggle.security.digest.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.AlgorithmAudit;
+import me.sniggle.security.digest.config.CredentialAuditReport;
+import me.sniggle.security.digest.config.ParsedHash;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the statistics of a {@link CredentialAuditReport} over a credential
+ * export holding one stored hash per line, optionally preceded by an
+ * identifier and the field separator, e.g. <code>user:$6$rounds=5000$...</code>.
+ * The hashes are judged by a {@link SecurePasswordDigester}: lines it cannot
+ * parse are malformed, and the hashes it would upgrade or refuse to verify are
+ * counted as such. <br>
+ * <br>
+ * the export is memory-mapped and scanned in chunks of 16 MiB in parallel, a
+ * chunk covering the lines starting within it. Blank lines, separators and
+ * lines not holding an ASCII hash with a magic prefix are handled on the
+ * mapped bytes, only the hash of a candidate line is turned into a string for
+ * the parser of its algorithm. The export may be of any size, the heap use
+ * only depends on the number of chunks and distinct rounds and salt lengths
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class CredentialAuditScanner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CredentialAuditScanner.class);
+
+  /**
+   * the length of the plain texts in UTF-8 encoded bytes assumed by the cost
+   * estimation, it barely affects the estimate as long as it fits into a block
+   */
+  public static final int ASSUMED_PASSWORD_LENGTH = 16;
+
+  /**
+   * the maximum number of malformed lines whose line number is reported
+   */
+  public static final int MAXIMUM_REPORTED_LINES = 100;
+
+  private static final long CHUNK_LENGTH = 1L << 24;
+  /**
+   * the length a line may extend beyond its chunk, longer lines are malformed
+   */
+  private static final int MAXIMUM_LINE_LENGTH = 1 << 16;
+
+  private final SecurePasswordDigester passwordDigester;
+  private char fieldSeparator = ':';
+
+  /**
+   * constructor
+   * 
+   * @param passwordDigester
+   *          the digester whose parsing, cost policy and upgrade decisions are
+   *          applied to the hashes
+   */
+  public CredentialAuditScanner(SecurePasswordDigester passwordDigester) {
+    super();
+    if (passwordDigester == null) {
+      throw new IllegalArgumentException("The password digester may not be null!");
+    }
+    this.passwordDigester = passwordDigester;
+  }
+
+  /**
+   * 
+   * @return the character separating the identifier from the hash
+   */
+  public char getFieldSeparator() {
+    return fieldSeparator;
+  }
+
+  /**
+   * the hash is the text following the last separator of a line, or the whole
+   * line if it does not contain the separator
+   * 
+   * @param fieldSeparator
+   *          the ASCII character separating the identifier from the hash,
+   *          defaults to a colon
+   */
+  public void setFieldSeparator(char fieldSeparator) {
+    if (fieldSeparator == '$' || fieldSeparator >= 0x80) {
+      throw new IllegalArgumentException("The field separator must be an ASCII character other than '$'");
+    }
+    this.fieldSeparator = fieldSeparator;
+  }
+
+  /**
+   * scans the export on the shared hashing executor
+   * 
+   * @param exportFile
+   *          the credential export
+   * @return the report or null if the export could not be read or the calling
+   *         thread has been interrupted
+   */
+  public CredentialAuditReport scan(File exportFile) {
+    return scan(exportFile, BatchExecution.getDefaultExecutor());
+  }
+
+  /**
+   * scans the export on the given executor
+   * 
+   * @param exportFile
+   *          the credential export
+   * @param executor
+   *          the executor scanning the chunks
+   * @return the report or null if the export could not be read or the calling
+   *         thread has been interrupted
+   */
+  public CredentialAuditReport scan(File exportFile, Executor executor) {
+    String message = "Error scanning credential export. {}";
+    if (exportFile == null || !exportFile.isFile()) {
+      LOGGER.error(message, "The export file does not exist");
+      return null;
+    }
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(exportFile, "r");
+      final FileChannel channel = file.getChannel();
+      final long size = channel.size();
+      List<Callable<ChunkStatistics>> tasks = new ArrayList<Callable<ChunkStatistics>>();
+      for (long start = 0; start < size; start += CHUNK_LENGTH) {
+        final long chunkStart = start;
+        final long chunkEnd = Math.min(size, start + CHUNK_LENGTH);
+        tasks.add(new Callable<ChunkStatistics>() {
+          @Override
+          public ChunkStatistics call() throws IOException {
+            return scanChunk(channel, size, chunkStart, chunkEnd);
+          }
+        });
+      }
+      ChunkStatistics total = new ChunkStatistics();
+      for (ChunkStatistics chunkStatistics : BatchExecution.execute(tasks, executor)) {
+        if (chunkStatistics == null) {
+          LOGGER.error(message, "A chunk has not been scanned");
+          return null;
+        }
+        total.append(chunkStatistics);
+      }
+      return total.toReport();
+    } catch (IOException e) {
+      LOGGER.error(message, e.getMessage());
+    } finally {
+      if (file != null) {
+        try {
+          file.close();
+        } catch (IOException e) {
+          LOGGER.error(message, e.getMessage());
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * scans the lines starting within the chunk, mapping the preceding byte to
+   * detect a line start and enough following bytes to complete the last line
+   * 
+   * @param channel
+   *          the channel of the export
+   * @param size
+   *          the size of the export
+   * @param start
+   *          the position of the chunk
+   * @param end
+   *          the position following the chunk
+   * @return the statistics of the chunk
+   * @throws IOException
+   *           if the chunk could not be mapped
+   */
+  private ChunkStatistics scanChunk(FileChannel channel, long size, long start, long end) throws IOException {
+    long mapStart = Math.max(0, start - 1);
+    long mapEnd = Math.min(size, end + MAXIMUM_LINE_LENGTH);
+    ByteBuffer buffer = channel.map(MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+    int position = (int) (start - mapStart);
+    int limit = (int) (end - mapStart);
+    if (start > 0 && buffer.get(0) != '\n') {
+      // the line started in the preceding chunk
+      position = indexOf(buffer, '\n', position) + 1;
+      if (position == 0) {
+        position = buffer.limit();
+      }
+    }
+    ChunkStatistics result = new ChunkStatistics();
+    while (position < limit) {
+      int lineEnd = indexOf(buffer, '\n', position);
+      if (lineEnd < 0) {
+        if (mapEnd < size) {
+          result.addMalformed();
+          break;
+        }
+        lineEnd = buffer.limit();
+      }
+      scanLine(buffer, position, lineEnd, result);
+      position = lineEnd + 1;
+    }
+    return result;
+  }
+
+  /**
+   * adds the line to the statistics
+   * 
+   * @param buffer
+   *          the mapped chunk
+   * @param start
+   *          the position of the first byte of the line
+   * @param end
+   *          the position of the line feed or the end of the export
+   * @param statistics
+   *          the statistics of the chunk
+   */
+  private void scanLine(ByteBuffer buffer, int start, int end, ChunkStatistics statistics) {
+    if (end > start && buffer.get(end - 1) == '\r') {
+      end--;
+    }
+    if (end == start) {
+      statistics.addBlank();
+      return;
+    }
+    int hashStart = start;
+    for (int i = end - 1; i >= start; i--) {
+      if (buffer.get(i) == fieldSeparator) {
+        hashStart = i + 1;
+        break;
+      }
+    }
+    int length = end - hashStart;
+    if (length == 0 || buffer.get(hashStart) != '$') {
+      statistics.addMalformed();
+      return;
+    }
+    char[] characters = statistics.getCharacters(length);
+    for (int i = 0; i < length; i++) {
+      byte value = buffer.get(hashStart + i);
+      if (value < 0) {
+        statistics.addMalformed();
+        return;
+      }
+      characters[i] = (char) value;
+    }
+    ParsedHash parsedHash = passwordDigester.parseHash(new String(characters, 0, length));
+    if (parsedHash == null) {
+      statistics.addMalformed();
+      return;
+    }
+    long cost = Math.max(0, passwordDigester.estimateCost(ASSUMED_PASSWORD_LENGTH, parsedHash));
+    boolean refused = !passwordDigester.isVerificationAllowed(parsedHash);
+    statistics.add(parsedHash, cost, refused, !refused && passwordDigester.isOutdated(parsedHash));
+  }
+
+  private static int indexOf(ByteBuffer buffer, char value, int from) {
+    for (int i = from; i < buffer.limit(); i++) {
+      if (buffer.get(i) == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * the statistics of a chunk, chunks being appended in the order of the
+   * export
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class ChunkStatistics {
+
+    private final Map<Algorithm, AlgorithmStatistics> algorithms = new EnumMap<Algorithm, AlgorithmStatistics>(
+        Algorithm.class);
+    private final List<Long> malformedLineNumbers = new ArrayList<Long>();
+    private long lineCount;
+    private long entryCount;
+    private long malformedCount;
+    private char[] characters = new char[128];
+
+    char[] getCharacters(int length) {
+      if (characters.length < length) {
+        characters = new char[length];
+      }
+      return characters;
+    }
+
+    void addBlank() {
+      lineCount++;
+    }
+
+    void addMalformed() {
+      lineCount++;
+      entryCount++;
+      malformedCount++;
+      if (malformedLineNumbers.size() < MAXIMUM_REPORTED_LINES) {
+        malformedLineNumbers.add(Long.valueOf(lineCount));
+      }
+    }
+
+    void add(ParsedHash parsedHash, long cost, boolean refused, boolean outdated) {
+      lineCount++;
+      entryCount++;
+      AlgorithmStatistics statistics = algorithms.get(parsedHash.getAlgorithm());
+      if (statistics == null) {
+        statistics = new AlgorithmStatistics();
+        algorithms.put(parsedHash.getAlgorithm(), statistics);
+      }
+      statistics.count++;
+      increment(statistics.roundCounts, parsedHash.getRounds(), 1);
+      increment(statistics.saltLengthCounts, parsedHash.getSalt().length(), 1);
+      statistics.verificationCost += cost;
+      if (refused) {
+        statistics.refusedCount++;
+      } else if (outdated) {
+        statistics.upgradeCount++;
+        statistics.upgradeCost += cost;
+      }
+    }
+
+    /**
+     * appends the statistics of the following chunk
+     * 
+     * @param next
+     *          the statistics of the chunk following the ones appended so far
+     */
+    void append(ChunkStatistics next) {
+      for (Long lineNumber : next.malformedLineNumbers) {
+        if (malformedLineNumbers.size() == MAXIMUM_REPORTED_LINES) {
+          break;
+        }
+        malformedLineNumbers.add(Long.valueOf(lineCount + lineNumber.longValue()));
+      }
+      lineCount += next.lineCount;
+      entryCount += next.entryCount;
+      malformedCount += next.malformedCount;
+      for (Map.Entry<Algorithm, AlgorithmStatistics> entry : next.algorithms.entrySet()) {
+        AlgorithmStatistics statistics = algorithms.get(entry.getKey());
+        if (statistics == null) {
+          algorithms.put(entry.getKey(), entry.getValue());
+        } else {
+          statistics.add(entry.getValue());
+        }
+      }
+    }
+
+    CredentialAuditReport toReport() {
+      List<AlgorithmAudit> algorithmAudits = new ArrayList<AlgorithmAudit>(algorithms.size());
+      for (Map.Entry<Algorithm, AlgorithmStatistics> entry : algorithms.entrySet()) {
+        AlgorithmStatistics statistics = entry.getValue();
+        algorithmAudits.add(new AlgorithmAudit(entry.getKey(), statistics.count,
+            toDistribution(statistics.roundCounts), toDistribution(statistics.saltLengthCounts),
+            statistics.upgradeCount, statistics.refusedCount, statistics.verificationCost, statistics.upgradeCost));
+      }
+      return new CredentialAuditReport(entryCount, malformedCount, malformedLineNumbers, algorithmAudits);
+    }
+
+    private static void increment(Map<Integer, long[]> counts, int key, long value) {
+      Integer boxedKey = Integer.valueOf(key);
+      long[] count = counts.get(boxedKey);
+      if (count == null) {
+        count = new long[1];
+        counts.put(boxedKey, count);
+      }
+      count[0] += value;
+    }
+
+    private static SortedMap<Integer, Long> toDistribution(Map<Integer, long[]> counts) {
+      SortedMap<Integer, Long> result = new TreeMap<Integer, Long>();
+      for (Map.Entry<Integer, long[]> entry : counts.entrySet()) {
+        result.put(entry.getKey(), Long.valueOf(entry.getValue()[0]));
+      }
+      return result;
+    }
+
+  }
+
+  /**
+   * the mutable statistics of an algorithm, the distributions counting in
+   * arrays so that no count is boxed per line
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class AlgorithmStatistics {
+
+    private final Map<Integer, long[]> roundCounts = new TreeMap<Integer, long[]>();
+    private final Map<Integer, long[]> saltLengthCounts = new TreeMap<Integer, long[]>();
+    private long count;
+    private long upgradeCount;
+    private long refusedCount;
+    private long verificationCost;
+    private long upgradeCost;
+
+    void add(AlgorithmStatistics other) {
+      for (Map.Entry<Integer, long[]> entry : other.roundCounts.entrySet()) {
+        ChunkStatistics.increment(roundCounts, entry.getKey().intValue(), entry.getValue()[0]);
+      }
+      for (Map.Entry<Integer, long[]> entry : other.saltLengthCounts.entrySet()) {
+        ChunkStatistics.increment(saltLengthCounts, entry.getKey().intValue(), entry.getValue()[0]);
+      }
+      count += other.count;
+      upgradeCount += other.upgradeCount;
+      refusedCount += other.refusedCount;
+      verificationCost += other.verificationCost;
+      upgradeCost += other.upgradeCost;
+    }
+
+  }
+
+}
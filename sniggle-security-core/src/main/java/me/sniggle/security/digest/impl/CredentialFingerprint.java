@@ -0,0 +1,89 @@
+package me.sniggle.security.digest.impl;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates keyed fingerprints (HMAC-SHA256) of a plain text bound to a stored
+ * hash. The key is random and only held in memory by the instance, so a
+ * fingerprint allows to recognize a credential without keeping the plain text
+ * and is useless outside of the instance that created it
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class CredentialFingerprint {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CredentialFingerprint.class);
+
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+
+  private final SecretKeySpec key;
+
+  private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+    @Override
+    protected Mac initialValue() {
+      try {
+        Mac result = Mac.getInstance(MAC_ALGORITHM);
+        result.init(key);
+        return result;
+      } catch (NoSuchAlgorithmException e) {
+        LOGGER.error("No MAC available for {}", MAC_ALGORITHM);
+      } catch (InvalidKeyException e) {
+        LOGGER.error(e.getMessage());
+      }
+      return null;
+    }
+  };
+
+  /**
+   * creates an instance with a new random key
+   */
+  CredentialFingerprint() {
+    super();
+    byte[] keyBytes = new byte[32];
+    new SecureRandom().nextBytes(keyBytes);
+    this.key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+    Arrays.fill(keyBytes, (byte) 0);
+  }
+
+  /**
+   * 
+   * @param formattedHash
+   *          the stored hash the plain text is verified against
+   * @param plainText
+   *          the plain text, the fingerprint of its UTF-8 encoding does not
+   *          depend on its representation
+   * @return the fingerprint or null if no MAC is available
+   */
+  byte[] create(String formattedHash, PlainText plainText) {
+    Mac mac = macs.get();
+    if (mac == null) {
+      return null;
+    }
+    mac.update(formattedHash.getBytes(Utf8Buffer.UTF_8));
+    mac.update((byte) 0);
+    byte[] bytes = plainText.getBytes();
+    if (bytes != null) {
+      mac.update(bytes);
+    } else {
+      Utf8Buffer buffer = Utf8Buffer.encode(plainText.getCharacters());
+      try {
+        mac.update(buffer.getBytes(), 0, buffer.getLength());
+      } finally {
+        buffer.clear();
+      }
+    }
+    return mac.doFinal();
+  }
+
+}
@@ -0,0 +1,146 @@
+package me.sniggle.security.digest.impl;
+
+/**
+ * Table driven implementation of the base 64 variant used by the crypt(3)
+ * family of hashes. The digest bytes are not encoded in their natural order but
+ * in an algorithm specific permutation, which is passed as array of byte
+ * indices: every three indices form a 24 bit group encoded to four characters
+ * (least significant six bits first), a trailing group of one or two bytes
+ * results in two or three characters
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public final class CryptBase64 {
+
+  private static final char[] ENCODING_TABLE = "./0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
+      .toCharArray();
+
+  private static final byte[] DECODING_TABLE = new byte[128];
+
+  static {
+    for (int i = 0; i < DECODING_TABLE.length; i++) {
+      DECODING_TABLE[i] = -1;
+    }
+    for (int i = 0; i < ENCODING_TABLE.length; i++) {
+      DECODING_TABLE[ENCODING_TABLE[i]] = (byte) i;
+    }
+  }
+
+  private CryptBase64() {
+    super();
+  }
+
+  /**
+   * 
+   * @param byteCount
+   *          the number of bytes to be encoded
+   * @return the number of characters of the encoded bytes
+   */
+  public static int getEncodedLength(int byteCount) {
+    int rest = byteCount % 3;
+    return (byteCount / 3) * 4 + ((rest == 0) ? 0 : rest + 1);
+  }
+
+  /**
+   * encodes the bytes in the given order
+   * 
+   * @param source
+   *          the bytes to be encoded
+   * @param order
+   *          the indices of the source bytes in the order they are encoded
+   * @param target
+   *          the target buffer
+   * @param offset
+   *          the position to start writing at
+   * @return the position after the last written character
+   */
+  public static int encode(byte[] source, int[] order, char[] target, int offset) {
+    int i = 0;
+    for (; i + 3 <= order.length; i += 3) {
+      int v = ((source[order[i]] & 0xff) << 16) | ((source[order[i + 1]] & 0xff) << 8) | (source[order[i + 2]] & 0xff);
+      target[offset++] = ENCODING_TABLE[v & 0x3f];
+      target[offset++] = ENCODING_TABLE[(v >>> 6) & 0x3f];
+      target[offset++] = ENCODING_TABLE[(v >>> 12) & 0x3f];
+      target[offset++] = ENCODING_TABLE[v >>> 18];
+    }
+    int rest = order.length - i;
+    if (rest > 0) {
+      int v = 0;
+      for (; i < order.length; i++) {
+        v = (v << 8) | (source[order[i]] & 0xff);
+      }
+      for (int c = 0; c <= rest; c++) {
+        target[offset++] = ENCODING_TABLE[v & 0x3f];
+        v >>>= 6;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * decodes the characters into the bytes at the positions given by the
+   * order. Only the canonical encoding, as produced by
+   * {@link #encode(byte[], int[], char[], int)}, is accepted
+   * 
+   * @param source
+   *          the encoded characters
+   * @param offset
+   *          the position of the first encoded character
+   * @param length
+   *          the number of encoded characters
+   * @param order
+   *          the indices of the target bytes in the order they are encoded
+   * @param target
+   *          the target buffer, at least as long as the order
+   * @return true if the characters are a valid encoding of order.length bytes
+   */
+  public static boolean decode(CharSequence source, int offset, int length, int[] order, byte[] target) {
+    if (length != getEncodedLength(order.length)) {
+      return false;
+    }
+    int i = 0;
+    for (; i + 3 <= order.length; i += 3, offset += 4) {
+      int v = decodeChar(source.charAt(offset)) | (decodeChar(source.charAt(offset + 1)) << 6)
+          | (decodeChar(source.charAt(offset + 2)) << 12) | (decodeChar(source.charAt(offset + 3)) << 18);
+      if (v < 0) {
+        return false;
+      }
+      target[order[i]] = (byte) (v >>> 16);
+      target[order[i + 1]] = (byte) (v >>> 8);
+      target[order[i + 2]] = (byte) v;
+    }
+    int rest = order.length - i;
+    if (rest > 0) {
+      int v = 0;
+      for (int c = rest; c >= 0; c--) {
+        int value = decodeChar(source.charAt(offset + c));
+        if (value < 0) {
+          return false;
+        }
+        v = (v << 6) | value;
+      }
+      if ((v >>> (rest * 8)) != 0) {
+        return false;
+      }
+      for (int b = order.length - 1; b >= i; b--) {
+        target[order[b]] = (byte) v;
+        v >>>= 8;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 
+   * @param c
+   *          the encoded character
+   * @return the six bit value or a negative value for an invalid character
+   */
+  private static int decodeChar(char c) {
+    // an invalid character turns the whole group negative
+    return (c < DECODING_TABLE.length) ? DECODING_TABLE[c] : Integer.MIN_VALUE;
+  }
+
+}
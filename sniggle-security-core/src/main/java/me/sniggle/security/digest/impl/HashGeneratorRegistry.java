@@ -0,0 +1,179 @@
+package me.sniggle.security.digest.impl;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.HashGenerator;
+import me.sniggle.security.digest.HashGeneratorFactory;
+import me.sniggle.security.digest.config.Algorithm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class maps the algorithms, and thereby their magic prefixes, to the
+ * {@link HashGeneratorFactory} creating their hash generators. Besides the
+ * built-in factories the factories registered via {@link ServiceLoader} are
+ * used, for every algorithm the factory with the highest priority wins. <br>
+ * <br>
+ * hash generators with the default configuration are created on first use
+ * and shared, so neither reflection nor class loading happens when hashing
+ * or verifying
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public final class HashGeneratorRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HashGeneratorRegistry.class);
+
+  private final ConcurrentMap<Algorithm, HashGeneratorFactory> factories = new ConcurrentHashMap<Algorithm, HashGeneratorFactory>();
+  private final ConcurrentMap<Algorithm, HashGenerator> sharedGenerators = new ConcurrentHashMap<Algorithm, HashGenerator>();
+
+  /**
+   * creates a registry holding only the built-in factories
+   */
+  public HashGeneratorRegistry() {
+    super();
+    for (Algorithm algorithm : Algorithm.values()) {
+      factories.put(algorithm, new BuiltInHashGeneratorFactory(algorithm));
+    }
+  }
+
+  /**
+   * creates a registry holding the built-in factories and the factories
+   * registered via {@link ServiceLoader}
+   * 
+   * @param classLoader
+   *          the class loader used to look up the service providers
+   */
+  public HashGeneratorRegistry(ClassLoader classLoader) {
+    this();
+    Iterator<HashGeneratorFactory> providers = ServiceLoader.load(HashGeneratorFactory.class, classLoader).iterator();
+    while (true) {
+      try {
+        if (!providers.hasNext()) {
+          break;
+        }
+        register(providers.next());
+      } catch (ServiceConfigurationError e) {
+        LOGGER.warn("Skipping invalid hash generator factory! {}", e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * the registry used by {@link SecurePasswordDigester}, loaded on first use
+   * with the service providers visible to the class loader of this library
+   * 
+   * @return the default registry
+   */
+  public static HashGeneratorRegistry getDefault() {
+    return DefaultRegistry.INSTANCE;
+  }
+
+  /**
+   * registers the factory unless a factory with a higher priority is already
+   * registered for its algorithm
+   * 
+   * @param factory
+   *          the factory
+   * @return true if the factory has been registered
+   */
+  public synchronized boolean register(HashGeneratorFactory factory) {
+    if (factory == null || factory.getAlgorithm() == null) {
+      throw new IllegalArgumentException("The factory and its algorithm may not be null!");
+    }
+    Algorithm algorithm = factory.getAlgorithm();
+    HashGeneratorFactory current = factories.get(algorithm);
+    if (current != null && current.getPriority() > factory.getPriority()) {
+      LOGGER.debug("Keeping {} for {}", current.getClass().getName(), algorithm);
+      return false;
+    }
+    LOGGER.debug("Registering {} for {}", factory.getClass().getName(), algorithm);
+    factories.put(algorithm, factory);
+    sharedGenerators.remove(algorithm);
+    return true;
+  }
+
+  /**
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @return the factory used for the algorithm
+   */
+  public HashGeneratorFactory getFactory(Algorithm algorithm) {
+    HashGeneratorFactory result = factories.get(algorithm);
+    if (result == null) {
+      throw new IllegalArgumentException("No hash generator registered for " + algorithm);
+    }
+    return result;
+  }
+
+  /**
+   * provides the shared hash generator of the algorithm using the default
+   * configuration, creating it on first use
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @return the hash generator
+   */
+  public HashGenerator getHashGenerator(Algorithm algorithm) {
+    HashGenerator result = sharedGenerators.get(algorithm);
+    if (result == null) {
+      // creating it twice in a race is harmless, the generators are immutable
+      result = getFactory(algorithm).createHashGenerator(null);
+      HashGenerator existing = sharedGenerators.putIfAbsent(algorithm, result);
+      if (existing != null) {
+        result = existing;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * provides the shared hash generator of the algorithm identified by the
+   * magic prefix of the formatted hash
+   * 
+   * @param formattedHash
+   *          the formatted hash
+   * @return the hash generator or null if the hash has no known magic prefix
+   */
+  public HashGenerator getHashGenerator(String formattedHash) {
+    Algorithm algorithm = Algorithm.getForFormattedHash(formattedHash);
+    return (algorithm == null) ? null : getHashGenerator(algorithm);
+  }
+
+  /**
+   * creates a new hash generator of the algorithm
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @param roundConfiguration
+   *          the configuration of minimal and maximal rounds
+   * @return the hash generator
+   */
+  public HashGenerator createHashGenerator(Algorithm algorithm, RoundConfiguration roundConfiguration) {
+    return getFactory(algorithm).createHashGenerator(roundConfiguration);
+  }
+
+  /**
+   * holds the default registry, so that the service providers are looked up
+   * on first use rather than when this class is loaded
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class DefaultRegistry {
+
+    static final HashGeneratorRegistry INSTANCE = new HashGeneratorRegistry(HashGeneratorRegistry.class.getClassLoader());
+
+  }
+
+}
@@ -0,0 +1,401 @@
+package me.sniggle.security.digest.impl;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import me.sniggle.security.digest.PasswordDigester;
+import me.sniggle.security.digest.config.PasswordMatchResult;
+import me.sniggle.security.digest.config.Priority;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class schedules hashing work on a fixed number of threads using
+ * separate lanes per {@link Priority}. A free thread always takes the most
+ * urgent pending work, within a lane the tenants are served round robin so a
+ * single tenant cannot monopolize a lane. Additionally a number of threads is
+ * reserved for {@link Priority#INTERACTIVE} work, so that non-interactive work
+ * can never occupy all threads and a login does not have to wait for a bulk
+ * hash to finish
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class HashingScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HashingScheduler.class);
+
+  private static final String DEFAULT_TENANT = "";
+
+  private final PasswordDigester passwordDigester;
+  private final int queueLimit;
+  private final int nonInteractiveThreadLimit;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition workAvailable = lock.newCondition();
+  private final Map<Priority, Lane> lanes = new EnumMap<Priority, Lane>(Priority.class);
+  private int nonInteractiveRunning;
+  private boolean shutdown;
+
+  /**
+   * uses one thread per available processor, reserves a quarter of them for
+   * interactive work and allows 64 pending tasks per lane
+   * 
+   * @param passwordDigester
+   *          the digester performing the hashing
+   */
+  public HashingScheduler(PasswordDigester passwordDigester) {
+    this(passwordDigester, Runtime.getRuntime().availableProcessors(), defaultReservedThreads(Runtime.getRuntime()
+        .availableProcessors()), 64);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param passwordDigester
+   *          the digester performing the hashing
+   * @param threads
+   *          the number of hashing threads
+   * @param reservedThreads
+   *          the number of threads only available to interactive work, must
+   *          be less than threads
+   * @param queueLimit
+   *          the maximum number of pending tasks per lane
+   */
+  public HashingScheduler(PasswordDigester passwordDigester, int threads, int reservedThreads, int queueLimit) {
+    super();
+    if (passwordDigester == null) {
+      throw new IllegalArgumentException("The password digester may not be null!");
+    }
+    if (threads < 1 || queueLimit < 1) {
+      throw new IllegalArgumentException("The number of threads and the queue limit must be positive");
+    }
+    if (reservedThreads < 0 || reservedThreads >= threads) {
+      throw new IllegalArgumentException("The number of reserved threads must be between 0 and " + (threads - 1));
+    }
+    this.passwordDigester = passwordDigester;
+    this.queueLimit = queueLimit;
+    this.nonInteractiveThreadLimit = threads - reservedThreads;
+    for (Priority priority : Priority.values()) {
+      lanes.put(priority, new Lane());
+    }
+    HashingThreadFactory threadFactory = new HashingThreadFactory("sniggle-hashing-scheduler", Thread.NORM_PRIORITY);
+    for (int i = 0; i < threads; i++) {
+      Thread worker = threadFactory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      });
+      worker.start();
+    }
+  }
+
+  /**
+   * 
+   * @param threads
+   *          the number of threads
+   * @return a quarter of the threads but at least one, or none if there is
+   *         only one thread
+   */
+  private static int defaultReservedThreads(int threads) {
+    return (threads > 1) ? Math.max(1, threads / 4) : 0;
+  }
+
+  /**
+   * schedules the task in the lane of the priority on behalf of the tenant
+   * 
+   * @param priority
+   *          the priority of the task
+   * @param tenant
+   *          the tenant the work is done for, null for the default tenant
+   * @param task
+   *          the task
+   * @return the future result
+   * @throws RejectedExecutionException
+   *           if the lane is full or the scheduler has been shut down
+   */
+  public <T> Future<T> submit(Priority priority, String tenant, Callable<T> task) {
+    if (priority == null || task == null) {
+      throw new IllegalArgumentException("The priority and the task may not be null!");
+    }
+    ScheduledTask<T> result = new ScheduledTask<T>(priority, task);
+    lock.lock();
+    try {
+      if (shutdown) {
+        throw new RejectedExecutionException("The scheduler has been shut down");
+      }
+      Lane lane = lanes.get(priority);
+      if (lane.size >= queueLimit) {
+        throw new RejectedExecutionException("The " + priority + " lane is full");
+      }
+      lane.add((tenant == null) ? DEFAULT_TENANT : tenant, result);
+      workAvailable.signal();
+    } finally {
+      lock.unlock();
+    }
+    return result;
+  }
+
+  /**
+   * schedules the verification of the plain text
+   * 
+   * @param priority
+   *          the priority of the verification
+   * @param tenant
+   *          the tenant the verification is done for, null for the default
+   *          tenant
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash to be used for verification
+   * @return the future result, which is already completed with a rejected
+   *         {@link PasswordMatchResult} if the lane is full
+   */
+  public Future<PasswordMatchResult> matchesPassword(Priority priority, String tenant, final String plainText,
+      final String formattedHash) {
+    try {
+      return submit(priority, tenant, new Callable<PasswordMatchResult>() {
+        @Override
+        public PasswordMatchResult call() {
+          return passwordDigester.matchesPassword(plainText, formattedHash);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Rejecting verification! {}", e.getMessage());
+    }
+    FutureTask<PasswordMatchResult> rejected = new FutureTask<PasswordMatchResult>(new Callable<PasswordMatchResult>() {
+      @Override
+      public PasswordMatchResult call() {
+        return new PasswordMatchResult(false, null, true);
+      }
+    });
+    rejected.run();
+    return rejected;
+  }
+
+  /**
+   * schedules the hashing of the plain text
+   * 
+   * @param priority
+   *          the priority of the hashing
+   * @param tenant
+   *          the tenant the hashing is done for, null for the default tenant
+   * @param plainText
+   *          the plain text to be hashed
+   * @return the future hash value
+   * @throws RejectedExecutionException
+   *           if the lane is full or the scheduler has been shut down
+   */
+  public Future<String> hashPassword(Priority priority, String tenant, final String plainText) {
+    return submit(priority, tenant, new Callable<String>() {
+      @Override
+      public String call() {
+        return passwordDigester.hashPassword(plainText);
+      }
+    });
+  }
+
+  /**
+   * provides a view of a lane as executor, e.g. to run the batch methods of
+   * {@link me.sniggle.security.digest.HashGenerator} or
+   * {@link PasswordDigester} as bulk work of a tenant
+   * 
+   * @param priority
+   *          the priority of the executed work
+   * @param tenant
+   *          the tenant the work is done for, null for the default tenant
+   * @return the executor scheduling into the lane
+   */
+  public Executor executor(final Priority priority, final String tenant) {
+    return new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        submit(priority, tenant, new Callable<Object>() {
+          @Override
+          public Object call() {
+            command.run();
+            return null;
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * 
+   * @param priority
+   *          the priority of the lane
+   * @return the number of pending tasks in the lane
+   */
+  public int getQueueSize(Priority priority) {
+    lock.lock();
+    try {
+      return lanes.get(priority).size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * stops accepting work, pending work is completed
+   */
+  public void shutdown() {
+    lock.lock();
+    try {
+      shutdown = true;
+      workAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * the loop of a hashing thread
+   */
+  private void work() {
+    while (true) {
+      ScheduledTask<?> task;
+      lock.lock();
+      try {
+        task = next();
+        while (task == null) {
+          if (shutdown && isIdle()) {
+            return;
+          }
+          workAvailable.awaitUninterruptibly();
+          task = next();
+        }
+        if (task.priority != Priority.INTERACTIVE) {
+          nonInteractiveRunning++;
+        }
+      } finally {
+        lock.unlock();
+      }
+      try {
+        task.run();
+      } finally {
+        // like a ThreadPoolExecutor the thread must not carry an interrupt,
+        // e.g. of a cancelled task, into the next task
+        Thread.interrupted();
+        lock.lock();
+        try {
+          if (task.priority != Priority.INTERACTIVE) {
+            nonInteractiveRunning--;
+            workAvailable.signal();
+          }
+          if (shutdown && isIdle()) {
+            workAvailable.signalAll();
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * takes the most urgent task a thread may run, has to be called holding the
+   * lock
+   * 
+   * @return the task or null if there is none
+   */
+  private ScheduledTask<?> next() {
+    for (Priority priority : Priority.values()) {
+      Lane lane = lanes.get(priority);
+      if (lane.size > 0 && (priority == Priority.INTERACTIVE || nonInteractiveRunning < nonInteractiveThreadLimit)) {
+        return lane.poll();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * has to be called holding the lock
+   * 
+   * @return true if no task is pending
+   */
+  private boolean isIdle() {
+    for (Lane lane : lanes.values()) {
+      if (lane.size > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * the pending tasks of one priority, queued per tenant. The tenants are kept
+   * in the order they are served next
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class Lane {
+
+    private final LinkedHashMap<String, LinkedList<ScheduledTask<?>>> tenantQueues = new LinkedHashMap<String, LinkedList<ScheduledTask<?>>>();
+    private int size;
+
+    void add(String tenant, ScheduledTask<?> task) {
+      LinkedList<ScheduledTask<?>> queue = tenantQueues.get(tenant);
+      if (queue == null) {
+        queue = new LinkedList<ScheduledTask<?>>();
+        tenantQueues.put(tenant, queue);
+      }
+      queue.add(task);
+      size++;
+    }
+
+    /**
+     * takes the next task of the tenant in turn and moves the tenant to the
+     * end of the order
+     * 
+     * @return the task
+     */
+    ScheduledTask<?> poll() {
+      Iterator<Map.Entry<String, LinkedList<ScheduledTask<?>>>> iterator = tenantQueues.entrySet().iterator();
+      Map.Entry<String, LinkedList<ScheduledTask<?>>> entry = iterator.next();
+      String tenant = entry.getKey();
+      LinkedList<ScheduledTask<?>> queue = entry.getValue();
+      ScheduledTask<?> result = queue.poll();
+      iterator.remove();
+      if (!queue.isEmpty()) {
+        tenantQueues.put(tenant, queue);
+      }
+      size--;
+      return result;
+    }
+
+  }
+
+  /**
+   * a task remembering its priority
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class ScheduledTask<T> extends FutureTask<T> {
+
+    private final Priority priority;
+
+    ScheduledTask(Priority priority, Callable<T> callable) {
+      super(callable);
+      this.priority = priority;
+    }
+
+  }
+
+}
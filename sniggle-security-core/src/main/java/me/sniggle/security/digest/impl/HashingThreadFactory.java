@@ -0,0 +1,47 @@
+package me.sniggle.security.digest.impl;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * creates the daemon threads used to run hashing work in the background, so
+ * that pending hashes never prevent the shutdown of the JVM
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+class HashingThreadFactory implements ThreadFactory {
+
+  private final AtomicInteger threadCount = new AtomicInteger();
+  private final String namePrefix;
+  private final int priority;
+
+  /**
+   * constructor
+   * 
+   * @param namePrefix
+   *          the prefix of the thread names
+   * @param priority
+   *          the priority of the created threads
+   */
+  HashingThreadFactory(String namePrefix, int priority) {
+    super();
+    this.namePrefix = namePrefix;
+    this.priority = priority;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+   */
+  @Override
+  public Thread newThread(Runnable runnable) {
+    Thread result = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+    result.setDaemon(true);
+    result.setPriority(priority);
+    return result;
+  }
+
+}
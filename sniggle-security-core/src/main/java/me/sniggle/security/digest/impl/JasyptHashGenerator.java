@@ -1,20 +1,29 @@
 package me.sniggle.security.digest.impl;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.text.Normalizer;
+import java.util.EnumMap;
+import java.util.Map;
 
 import me.sniggle.security.crypto.config.RoundConfiguration;
 import me.sniggle.security.digest.config.Algorithm;
-import me.sniggle.security.salt.SaltProvider;
-import me.sniggle.security.salt.impl.FixedSaltProvider;
-import me.sniggle.security.salt.impl.RandomSaltProvider;
-
-import org.jasypt.digest.StandardStringDigester;
+import me.sniggle.security.digest.config.ParsedHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * This class assembles all the methods to create a standard JASYPT library
- * based hash and can be used for all hash algorithms provided by jasypt
+ * This class implements the iterated salted digest of the JASYPT library's
+ * standard digesters, producing hashes identical to those formerly created by
+ * JASYPT itself without depending on the library: salt and plain text are
+ * digested once, the digest is digested again for every further iteration.
+ * Every thread keeps a message digest and digest buffer per algorithm, so an
+ * instance is safe to be used concurrently without allocating per iteration;
+ * {@link #getInstance(Algorithm)} offers shared instances. <br>
+ * <br>
+ * like the JASYPT string digester, plain texts given as characters are
+ * normalized to the unicode normalization form C before they are encoded,
+ * plain texts given as bytes are digested as is
  * 
  * @author iulius
  * @since 0.0.1
@@ -22,7 +31,44 @@ import org.jasypt.digest.StandardStringDigester;
  */
 public class JasyptHashGenerator extends BaseHashGenerator {
 
-  private static final Pattern HASH_PATTERN = Pattern.compile("\\$([0-9]+)\\$([0-9]+)\\$(.+)\\$(.+)");
+  private static final Logger LOGGER = LoggerFactory.getLogger(JasyptHashGenerator.class);
+
+  /**
+   * the message digests and digest buffers of the current thread per
+   * algorithm
+   */
+  private static final ThreadLocal<Map<Algorithm, DigestBuffers>> DIGEST_BUFFERS = new ThreadLocal<Map<Algorithm, DigestBuffers>>() {
+    @Override
+    protected Map<Algorithm, DigestBuffers> initialValue() {
+      return new EnumMap<Algorithm, DigestBuffers>(Algorithm.class);
+    }
+  };
+
+  private static final Map<Algorithm, JasyptHashGenerator> INSTANCES = new EnumMap<Algorithm, JasyptHashGenerator>(
+      Algorithm.class);
+
+  static {
+    for (Algorithm algorithm : new Algorithm[] { Algorithm.MD5, Algorithm.SHA256, Algorithm.SHA512 }) {
+      INSTANCES.put(algorithm, new JasyptHashGenerator(algorithm));
+    }
+  }
+
+  /**
+   * provides the shared instance for the algorithm using the default round
+   * configuration
+   * 
+   * @param algorithm
+   *          one of the algorithms implemented by this class
+   * @return the shared instance
+   */
+  public static JasyptHashGenerator getInstance(Algorithm algorithm) {
+    JasyptHashGenerator result = INSTANCES.get(algorithm);
+    if (result == null) {
+      throw new IllegalArgumentException("The algorithm " + algorithm + " is not implemented by "
+          + JasyptHashGenerator.class.getSimpleName());
+    }
+    return result;
+  }
 
   public JasyptHashGenerator(Algorithm algorithm) {
     super(algorithm);
@@ -33,81 +79,205 @@ public class JasyptHashGenerator extends BaseHashGenerator {
   }
 
   /**
-   * this returns null as we are relying on the JASYPT implementation
+   * normalizes the plain text to the unicode normalization form C, as the
+   * JASYPT string digester does
+   * 
+   * @param plainText
+   *          the plain text
+   * @return the normalized plain text, the plain text itself if it already is
+   *         normalized
    */
   @Override
-  protected MessageDigest getMessageDigest() {
-    return null;
+  protected CharSequence normalize(CharSequence plainText) {
+    if (Normalizer.isNormalized(plainText, Normalizer.Form.NFC)) {
+      return plainText;
+    }
+    return Normalizer.normalize(plainText, Normalizer.Form.NFC);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#hashPlainText(byte[],
+   * int, java.lang.String, int)
+   */
+  @Override
+  protected String hashPlainText(byte[] plainText, int length, String salt, int rounds) {
+    int iterations = verifyRounds(rounds);
+    String actualSalt = verifySalt(salt);
+    byte[] digest = digest(plainText, length, actualSalt, iterations);
+    if (digest == null) {
+      return null;
+    }
+    return getMagicPrefix() + iterations + "$" + actualSalt + "$" + StandardBase64.encode(digest);
   }
 
   /**
-   * create a salt provider, either a RandomSaltProvider, or FixedSaltProvider
-   * in case a salt was provided
+   * creates the raw digest the way the JASYPT standard digesters do
    * 
+   * @param plainText
+   *          the buffer holding the UTF-8 encoded plain text
+   * @param length
+   *          the number of bytes of the plain text
    * @param salt
-   *          the salt to be used or null in order trigger the creation of a
-   *          RandomSaltProvider
-   * @return the appropriate SaltProvider
+   *          the verified salt
+   * @param iterations
+   *          the verified number of iterations
+   * @return the buffer of the current thread holding the digest, valid until
+   *         the next digest of the algorithm on this thread, or null if the
+   *         message digest is not available or the computation has been
+   *         aborted
+   */
+  private byte[] digest(byte[] plainText, int length, String salt, int iterations) {
+    DigestBuffers buffers = getDigestBuffers();
+    if (buffers == null) {
+      return null;
+    }
+    MessageDigest digester = buffers.getDigester();
+    byte[] digest = buffers.getDigest();
+    try {
+      digester.reset();
+      digester.update(salt.getBytes(Utf8Buffer.UTF_8));
+      digester.update(plainText, 0, length);
+      digester.digest(digest, 0, digest.length);
+      for (int i = 1; i < iterations; i++) {
+        if ((i & INTERRUPT_CHECK_MASK) == 0 && isAborted()) {
+          return null;
+        }
+        digester.update(digest);
+        digester.digest(digest, 0, digest.length);
+      }
+    } catch (DigestException e) {
+      LOGGER.error(e.getMessage());
+      return null;
+    }
+    return digest;
+  }
+
+  /**
+   * provides the message digest and digest buffer of the current thread for
+   * the algorithm, creating them on first use
+   * 
+   * @return the buffers or null if the message digest is not available
    */
-  protected SaltProvider getSaltGenerator(String salt) {
-    SaltProvider result;
-    if (salt == null) {
-      result = new RandomSaltProvider(getMinimumSaltLength(), getSaltLength());
-    } else {
-      result = new FixedSaltProvider(salt);
+  private DigestBuffers getDigestBuffers() {
+    Map<Algorithm, DigestBuffers> buffersByAlgorithm = DIGEST_BUFFERS.get();
+    DigestBuffers result = buffersByAlgorithm.get(getAlgorithm());
+    if (result == null) {
+      MessageDigest digester = getMessageDigest();
+      if (digester == null) {
+        LOGGER.error("No message digest available for {}", getAlgorithm().alternateName());
+        return null;
+      }
+      result = new DigestBuffers(digester);
+      buffersByAlgorithm.put(getAlgorithm(), result);
     }
     return result;
   }
 
-  /*
-   * (non-Javadoc)
+  /**
+   * parses $id$iterations$salt$digest, the salt extending up to the last
+   * dollar sign, and decodes the standard base 64 digest into its raw bytes
    * 
-   * @see
-   * me.sniggle.security.digest.HashGenerator#hashPassword(java.lang.String)
+   * @param formattedHash
+   *          the formatted hash value
+   * @return the parsed hash or null if the formatted hash is malformed
    */
   @Override
-  public String hashPassword(String plainText) {
-    return hashPassword(plainText, null, getRandomRounds());
+  public ParsedHash parseHash(String formattedHash) {
+    String magicPrefix = getMagicPrefix();
+    if (formattedHash == null || !formattedHash.startsWith(magicPrefix)) {
+      return null;
+    }
+    int position = magicPrefix.length();
+    int end = formattedHash.indexOf('$', position);
+    int iterations = parseDecimal(formattedHash, position, (end < 0) ? position : end);
+    if (iterations < 0) {
+      return null;
+    }
+    position = end + 1;
+    int digestStart = formattedHash.lastIndexOf('$') + 1;
+    if (digestStart - 1 <= position) {
+      return null;
+    }
+    byte[] digest = StandardBase64.decode(formattedHash, digestStart, formattedHash.length() - digestStart);
+    if (digest == null) {
+      return null;
+    }
+    return new ParsedHash(getAlgorithm(), iterations, formattedHash.substring(position, digestStart - 1), digest,
+        formattedHash);
   }
 
   /*
    * (non-Javadoc)
    * 
    * @see
-   * me.sniggle.security.crypto.HashGenerator#hashPassword(java.lang.String,
-   * java.lang.String, int)
+   * me.sniggle.security.digest.impl.BaseHashGenerator#verifyPlainText(byte[],
+   * int, me.sniggle.security.digest.config.ParsedHash)
    */
   @Override
-  public String hashPassword(String plainText, String salt, int rounds) {
-    if (plainText != null) {
-      StandardStringDigester digester = new StandardStringDigester();
-      digester.setAlgorithm(getAlgorithm().alternateName());
-      int iterations = verifyRounds(rounds);
-      digester.setIterations(iterations);
-      SaltProvider provider = getSaltGenerator(verifySalt(salt));
-      digester.setSaltGenerator(provider);
-      String hashValue = digester.digest(plainText);
-      return getMagicPrefix() + iterations + "$" + provider.getLastGeneratedSalt() + "$" + hashValue;
-    }
-    return null;
+  protected boolean verifyPlainText(byte[] plainText, int length, ParsedHash parsedHash) {
+    return parsedHash.matchesDigest(digest(plainText, length, parsedHash.getSalt(), parsedHash.getRounds()));
   }
 
-  /*
-   * (non-Javadoc)
+  /**
+   * estimates the compressed blocks: salt and plain text are
+   * digested once, the digest is digested again for every further iteration
    * 
-   * @see me.sniggle.security.crypto.HashGenerator#verifyHash(java.lang.String,
-   * java.lang.String)
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param saltLength
+   *          the length of the salt in UTF-8 encoded bytes
+   * @param rounds
+   *          the number of iterations
+   * @return the estimated number of compressed blocks
    */
   @Override
-  public boolean verifyHash(String plainText, String formattedHash) {
-    if (plainText != null && formattedHash != null) {
-      Matcher matcher = HASH_PATTERN.matcher(formattedHash);
-      if (matcher.matches()) {
-        String hashedPlainText = hashPassword(plainText, matcher.group(3), Integer.valueOf(matcher.group(2)));
-        return formattedHash.equals(hashedPlainText);
-      }
+  public long estimateCost(int passwordLength, int saltLength, int rounds) {
+    int blockLength = (getAlgorithm() == Algorithm.SHA512) ? 128 : 64;
+    int digestLength;
+    switch (getAlgorithm()) {
+    case SHA512:
+      digestLength = 64;
+      break;
+    case SHA256:
+      digestLength = 32;
+      break;
+    default:
+      digestLength = 16;
     }
-    return false;
+    return getBlockCount((long) saltLength + passwordLength, blockLength) + Math.max(rounds - 1, 0)
+        * getBlockCount(digestLength, blockLength);
+  }
+
+  /**
+   * the message digest of an algorithm together with the buffer receiving its
+   * digests. Instances are confined to a single thread
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class DigestBuffers {
+
+    private final MessageDigest digester;
+    private final byte[] digest;
+
+    DigestBuffers(MessageDigest digester) {
+      super();
+      this.digester = digester;
+      this.digest = new byte[digester.getDigestLength()];
+    }
+
+    MessageDigest getDigester() {
+      return digester;
+    }
+
+    byte[] getDigest() {
+      return digest;
+    }
+
   }
 
 }
@@ -0,0 +1,89 @@
+package me.sniggle.security.digest.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Maps file regions of any size, as a single mapping is limited to 2 GiB, and
+ * reads file channels without going through a stream
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class MappedFiles {
+
+  private MappedFiles() {
+    super();
+  }
+
+  /**
+   * maps a region of the file in segments
+   * 
+   * @param channel
+   *          the channel of the file
+   * @param mode
+   *          the mapping mode
+   * @param offset
+   *          the position of the region
+   * @param length
+   *          the length of the region
+   * @param segmentLength
+   *          the maximum length of a segment
+   * @return the segments
+   * @throws IOException
+   *           if the region could not be mapped
+   */
+  static ByteBuffer[] map(FileChannel channel, MapMode mode, long offset, long length, long segmentLength)
+      throws IOException {
+    ByteBuffer[] result = new ByteBuffer[(int) Math.max(1, (length + segmentLength - 1) / segmentLength)];
+    for (int i = 0; i < result.length; i++) {
+      long position = i * segmentLength;
+      result[i] = channel.map(mode, offset + position, Math.min(segmentLength, length - position));
+    }
+    return result;
+  }
+
+  /**
+   * reads from the channel until the buffer is full or the end of the file is
+   * reached
+   * 
+   * @param channel
+   *          the channel
+   * @param buffer
+   *          the buffer receiving the bytes
+   * @param position
+   *          the position of the first byte
+   * @return the number of bytes read
+   * @throws IOException
+   *           if the channel could not be read
+   */
+  static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    int result = 0;
+    while (buffer.hasRemaining()) {
+      int count = channel.read(buffer, position + result);
+      if (count < 0) {
+        break;
+      }
+      result += count;
+    }
+    return result;
+  }
+
+  /**
+   * writes the changes of mapped segments to the file
+   * 
+   * @param segments
+   *          the segments created by
+   *          {@link #map(FileChannel, MapMode, long, long, long)}
+   */
+  static void force(ByteBuffer[] segments) {
+    for (ByteBuffer segment : segments) {
+      ((MappedByteBuffer) segment).force();
+    }
+  }
+
+}
@@ -0,0 +1,387 @@
+package me.sniggle.security.digest.impl;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.HashCostPolicy;
+import me.sniggle.security.digest.config.ParsedHash;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class of the PBKDF2 (RFC 8018) hash generators using HMAC with a SHA-2
+ * digest as pseudo random function, e.g. where a FIPS approved algorithm is
+ * required. The hashes use the format of passlib,
+ * $pbkdf2-digest$iterations$salt$checksum, salt and checksum being encoded in
+ * the adapted base 64 alphabet, and the checksum being as long as the digest.
+ * <br>
+ * <br>
+ * the inner and outer pad of the HMAC key are compressed once per password;
+ * every iteration resumes from these midstates, so that it costs two
+ * compressions rather than four
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public abstract class Pbkdf2HashGenerator extends BaseHashGenerator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Pbkdf2HashGenerator.class);
+
+  /**
+   * the minimum iterations of a hash verified by the default instances, the
+   * minimum recommended by RFC 8018
+   */
+  public static final int DEFAULT_MINIMUM_VERIFICATION_ITERATIONS = 1000;
+
+  /**
+   * the maximum iterations of a hash verified by the default instances
+   */
+  public static final int DEFAULT_MAXIMUM_VERIFICATION_ITERATIONS =
+      HashCostPolicy.DEFAULT_MAXIMUM_VERIFICATION_ITERATIONS;
+
+  private static final int SALT_LENGTH = 16;
+  private static final int MINIMUM_SALT_LENGTH = 8;
+  private static final int MAXIMUM_SALT_LENGTH = 64;
+  private static final byte INNER_PAD = 0x36;
+  private static final byte OUTER_PAD = 0x5c;
+  /**
+   * the big endian index of the only block derived, as the checksum is never
+   * longer than the digest
+   */
+  private static final byte[] FIRST_BLOCK_INDEX = { 0, 0, 0, 1 };
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /**
+   * the HMAC buffers of the current thread, one set per algorithm
+   */
+  private static final ThreadLocal<Map<Algorithm, HmacBuffers>> HMAC_BUFFERS = new ThreadLocal<Map<Algorithm, HmacBuffers>>() {
+    @Override
+    protected Map<Algorithm, HmacBuffers> initialValue() {
+      return new EnumMap<Algorithm, HmacBuffers>(Algorithm.class);
+    }
+  };
+
+  private final RoundConfiguration hashRoundConfiguration;
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          the algorithm to be used
+   * @param roundConfiguration
+   *          the configuration of the iterations
+   */
+  protected Pbkdf2HashGenerator(Algorithm algorithm, RoundConfiguration roundConfiguration) {
+    this(algorithm, roundConfiguration, null);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          the algorithm to be used
+   * @param roundConfiguration
+   *          the configuration of the iterations of hashes to be verified
+   * @param hashRoundConfiguration
+   *          the configuration of the iterations of new hashes or null in
+   *          order to use the round configuration
+   */
+  protected Pbkdf2HashGenerator(Algorithm algorithm, RoundConfiguration roundConfiguration,
+      RoundConfiguration hashRoundConfiguration) {
+    super(algorithm, roundConfiguration);
+    this.hashRoundConfiguration = hashRoundConfiguration;
+  }
+
+  /**
+   * 
+   * @return a new instance of the built-in message digest of the algorithm
+   */
+  protected abstract Sha2Digest createDigest();
+
+  /**
+   * 
+   * @return the block length of the message digest of the algorithm
+   */
+  protected abstract int getBlockLength();
+
+  /**
+   * 
+   * @return the digest length of the algorithm, which is the length of the
+   *         checksum
+   */
+  protected abstract int getDigestLength();
+
+  /**
+   * 
+   * @return a random number of iterations of the configuration of new hashes
+   *         if there is one, otherwise of the round configuration
+   */
+  @Override
+  protected int getRandomRounds() {
+    if (hashRoundConfiguration == null) {
+      return super.getRandomRounds();
+    }
+    return getRandomRounds(hashRoundConfiguration.getMinimumRounds(), hashRoundConfiguration.getMaximumRounds());
+  }
+
+  /**
+   * provides the minimum iteration count recommended by RFC 8018
+   * 
+   * @return 1000
+   */
+  @Override
+  protected int getDefaultRoundCount() {
+    return 1000;
+  }
+
+  /**
+   * provides the HMAC buffers of the calling thread, creating them on first
+   * use
+   * 
+   * @return the buffers
+   */
+  private HmacBuffers getHmacBuffers() {
+    Map<Algorithm, HmacBuffers> buffersByAlgorithm = HMAC_BUFFERS.get();
+    HmacBuffers result = buffersByAlgorithm.get(getAlgorithm());
+    if (result == null) {
+      result = new HmacBuffers(createDigest(), createDigest(), createDigest());
+      buffersByAlgorithm.put(getAlgorithm(), result);
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param testSalt
+   *          the adapted base 64 encoded salt to verify
+   * @return the salt if it is the encoding of 8 to 64 bytes, otherwise the
+   *         encoding of a new random salt of 16 bytes
+   */
+  @Override
+  protected String verifySalt(String testSalt) {
+    if (testSalt != null) {
+      byte[] salt = StandardBase64.decodeAdapted(testSalt, 0, testSalt.length());
+      if (salt != null && salt.length >= MINIMUM_SALT_LENGTH && salt.length <= MAXIMUM_SALT_LENGTH) {
+        return testSalt;
+      }
+      LOGGER.info("The salt is not the adapted base 64 encoding of 8 to 64 bytes, creating a new salt");
+    }
+    byte[] salt = new byte[SALT_LENGTH];
+    RANDOM.nextBytes(salt);
+    return StandardBase64.encodeAdapted(salt);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#hashPlainText(byte[],
+   * int, java.lang.String, int)
+   */
+  @Override
+  protected String hashPlainText(byte[] plainText, int length, String salt, int rounds) {
+    int iterations = verifyRounds(rounds);
+    String actualSalt = verifySalt(salt);
+    byte[] checksum = deriveKey(plainText, length, StandardBase64.decodeAdapted(actualSalt, 0, actualSalt.length()),
+        iterations);
+    if (checksum == null) {
+      return null;
+    }
+    return getMagicPrefix() + iterations + "$" + actualSalt + "$" + StandardBase64.encodeAdapted(checksum);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#verifyPlainText(byte[],
+   * int, me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  protected boolean verifyPlainText(byte[] plainText, int length, ParsedHash parsedHash) {
+    String salt = parsedHash.getSalt();
+    return parsedHash.matchesDigest(deriveKey(plainText, length, StandardBase64.decodeAdapted(salt, 0, salt.length()),
+        parsedHash.getRounds()));
+  }
+
+  /**
+   * 
+   * @param formattedHash
+   *          the formatted hash value
+   * @return the parsed hash with the iterations as rounds and the encoded
+   *         salt, or null if the formatted hash is malformed
+   */
+  @Override
+  public ParsedHash parseHash(String formattedHash) {
+    String magicPrefix = getMagicPrefix();
+    if (formattedHash == null || !formattedHash.startsWith(magicPrefix)) {
+      return null;
+    }
+    int saltStart = formattedHash.indexOf('$', magicPrefix.length()) + 1;
+    int checksumStart = (saltStart > 0) ? formattedHash.indexOf('$', saltStart) + 1 : 0;
+    if (checksumStart <= saltStart || formattedHash.indexOf('$', checksumStart) >= 0) {
+      return null;
+    }
+    int iterations = parseDecimal(formattedHash, magicPrefix.length(), saltStart - 1);
+    byte[] salt = StandardBase64.decodeAdapted(formattedHash, saltStart, checksumStart - 1 - saltStart);
+    byte[] checksum = StandardBase64.decodeAdapted(formattedHash, checksumStart, formattedHash.length()
+        - checksumStart);
+    if (iterations < 1 || salt == null || salt.length < MINIMUM_SALT_LENGTH || salt.length > MAXIMUM_SALT_LENGTH
+        || checksum == null || checksum.length != getDigestLength()) {
+      return null;
+    }
+    return new ParsedHash(getAlgorithm(), iterations, formattedHash.substring(saltStart, checksumStart - 1), checksum,
+        formattedHash);
+  }
+
+  /**
+   * estimates the blocks compressed by HMAC: the two pads, the first
+   * iteration digesting the salt and two blocks per further iteration
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param saltLength
+   *          the length of the encoded salt
+   * @param rounds
+   *          the number of iterations
+   * @return the estimated number of compressed blocks
+   */
+  @Override
+  public long estimateCost(int passwordLength, int saltLength, int rounds) {
+    int blockLength = getBlockLength();
+    long result = (passwordLength > blockLength) ? getBlockCount(passwordLength, blockLength) : 0;
+    result += 2;
+    result += getBlockCount(saltLength * 3L / 4 + FIRST_BLOCK_INDEX.length, blockLength);
+    result += getBlockCount(getDigestLength(), blockLength);
+    return result + 2L * (Math.max(rounds, 1) - 1);
+  }
+
+  /**
+   * derives the first block of PBKDF2, which is as long as the digest
+   * 
+   * @param plainText
+   *          the buffer holding the UTF-8 encoded plain text, the HMAC key
+   * @param length
+   *          the number of bytes of the plain text
+   * @param salt
+   *          the decoded salt
+   * @param iterations
+   *          the number of iterations
+   * @return the derived key or null if the computation has been aborted
+   */
+  private byte[] deriveKey(byte[] plainText, int length, byte[] salt, int iterations) {
+    HmacBuffers buffers = getHmacBuffers();
+    Sha2Digest inner = buffers.inner;
+    Sha2Digest outer = buffers.outer;
+    Sha2Digest work = buffers.work;
+    byte[] u = buffers.u;
+    int digestLength = u.length;
+    byte[] result = new byte[digestLength];
+    try {
+      buffers.initialize(plainText, length);
+      inner.copyStateTo(work);
+      work.update(salt, 0, salt.length);
+      work.update(FIRST_BLOCK_INDEX, 0, FIRST_BLOCK_INDEX.length);
+      work.finish(u, 0);
+      outer.copyStateTo(work);
+      work.update(u, 0, digestLength);
+      work.finish(u, 0);
+      System.arraycopy(u, 0, result, 0, digestLength);
+      for (int i = 1; i < iterations; i++) {
+        if ((i & INTERRUPT_CHECK_MASK) == 0 && isAborted()) {
+          return null;
+        }
+        inner.copyStateTo(work);
+        work.update(u, 0, digestLength);
+        work.finish(u, 0);
+        outer.copyStateTo(work);
+        work.update(u, 0, digestLength);
+        work.finish(u, 0);
+        for (int j = 0; j < digestLength; j++) {
+          result[j] ^= u[j];
+        }
+      }
+      return result;
+    } finally {
+      buffers.clear();
+    }
+  }
+
+  /**
+   * the digests holding the midstates of the inner and outer pad and the
+   * scratch buffers of a thread
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class HmacBuffers {
+
+    private final Sha2Digest inner;
+    private final Sha2Digest outer;
+    private final Sha2Digest work;
+    private final byte[] pad;
+    private final byte[] u;
+
+    HmacBuffers(Sha2Digest inner, Sha2Digest outer, Sha2Digest work) {
+      super();
+      this.inner = inner;
+      this.outer = outer;
+      this.work = work;
+      this.pad = new byte[work.getBlockLength()];
+      this.u = new byte[work.getDigestLength()];
+    }
+
+    /**
+     * compresses the inner and outer pad of the key, a key longer than a
+     * block being digested first
+     * 
+     * @param key
+     *          the buffer holding the key
+     * @param length
+     *          the number of bytes of the key
+     */
+    void initialize(byte[] key, int length) {
+      int keyLength = length;
+      if (length > pad.length) {
+        work.reset();
+        work.update(key, 0, length);
+        work.finish(pad, 0);
+        keyLength = u.length;
+      } else {
+        System.arraycopy(key, 0, pad, 0, length);
+      }
+      Arrays.fill(pad, keyLength, pad.length, (byte) 0);
+      for (int i = 0; i < pad.length; i++) {
+        pad[i] ^= INNER_PAD;
+      }
+      inner.reset();
+      inner.update(pad, 0, pad.length);
+      for (int i = 0; i < pad.length; i++) {
+        pad[i] ^= INNER_PAD ^ OUTER_PAD;
+      }
+      outer.reset();
+      outer.update(pad, 0, pad.length);
+      Arrays.fill(pad, (byte) 0);
+    }
+
+    /**
+     * wipes the key dependent state
+     */
+    void clear() {
+      inner.reset();
+      outer.reset();
+      work.reset();
+      Arrays.fill(pad, (byte) 0);
+      Arrays.fill(u, (byte) 0);
+    }
+
+  }
+
+}
@@ -0,0 +1,86 @@
+package me.sniggle.security.digest.impl;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.Algorithm;
+
+/**
+ * This class implements PBKDF2 with HMAC-SHA-256, the hashes being prefixed
+ * with $pbkdf2-sha256$. By default new hashes use 600000 to 700000
+ * iterations while hashes of 1000 to 2000000 iterations are verified. As the
+ * class is immutable a single instance, e.g. the one returned by
+ * {@link #getInstance()}, may be shared across threads
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class Pbkdf2Sha256 extends Pbkdf2HashGenerator {
+
+  /**
+   * the default minimum iterations of new hashes
+   */
+  public static final int DEFAULT_MINIMUM_ITERATIONS = 600000;
+
+  /**
+   * the default maximum iterations of new hashes
+   */
+  public static final int DEFAULT_MAXIMUM_ITERATIONS = 700000;
+
+  private static final Pbkdf2Sha256 INSTANCE = new Pbkdf2Sha256();
+
+  /**
+   * 
+   * @return the shared instance using the default round configuration
+   */
+  public static Pbkdf2Sha256 getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * creates hashes of the default iterations, verifying hashes of the default
+   * verification iterations
+   */
+  public Pbkdf2Sha256() {
+    super(Algorithm.PBKDF2_SHA256, new RoundConfiguration(DEFAULT_MINIMUM_VERIFICATION_ITERATIONS,
+        DEFAULT_MAXIMUM_VERIFICATION_ITERATIONS), new RoundConfiguration(DEFAULT_MINIMUM_ITERATIONS,
+        DEFAULT_MAXIMUM_ITERATIONS));
+  }
+
+  /**
+   * 
+   * @param roundConfiguration
+   *          the configuration of the iterations
+   */
+  public Pbkdf2Sha256(RoundConfiguration roundConfiguration) {
+    super(Algorithm.PBKDF2_SHA256, roundConfiguration);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.impl.Pbkdf2HashGenerator#createDigest()
+   */
+  @Override
+  protected Sha2Digest createDigest() {
+    return new Sha256Digest();
+  }
+
+  /**
+   * 
+   * @return 64
+   */
+  @Override
+  protected int getBlockLength() {
+    return 64;
+  }
+
+  /**
+   * 
+   * @return 32
+   */
+  @Override
+  protected int getDigestLength() {
+    return 32;
+  }
+
+}
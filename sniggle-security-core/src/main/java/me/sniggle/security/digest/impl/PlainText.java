@@ -0,0 +1,206 @@
+package me.sniggle.security.digest.impl;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import me.sniggle.security.digest.HashGenerator;
+import me.sniggle.security.digest.PasswordDigester;
+import me.sniggle.security.digest.config.ParsedHash;
+import me.sniggle.security.digest.config.PasswordMatchResult;
+
+/**
+ * Wraps a plain text given as {@link String}, <code>char[]</code>,
+ * {@link CharBuffer} or UTF-8 encoded <code>byte[]</code> without copying it,
+ * so that the hashing and verification logic exists once for all
+ * representations. Calls to a {@link HashGenerator} or
+ * {@link PasswordDigester} are passed on with the original representation
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class PlainText {
+
+  private final CharSequence characters;
+  private final byte[] bytes;
+
+  private PlainText(CharSequence characters, byte[] bytes) {
+    super();
+    this.characters = characters;
+    this.bytes = bytes;
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text
+   * @return the wrapped plain text or null if the plain text is null
+   */
+  static PlainText of(String plainText) {
+    return (plainText == null) ? null : new PlainText(plainText, null);
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text
+   * @return the wrapped plain text or null if the plain text is null
+   */
+  static PlainText of(char[] plainText) {
+    return (plainText == null) ? null : new PlainText(CharBuffer.wrap(plainText), null);
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text, its remaining characters are used without
+   *          changing its position
+   * @return the wrapped plain text or null if the plain text is null
+   */
+  static PlainText of(CharBuffer plainText) {
+    return (plainText == null) ? null : new PlainText(plainText.duplicate(), null);
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the UTF-8 encoded plain text
+   * @return the wrapped plain text or null if the plain text is null
+   */
+  static PlainText of(byte[] plainText) {
+    return (plainText == null) ? null : new PlainText(null, plainText);
+  }
+
+  /**
+   * 
+   * @return the characters or null if the plain text is given as bytes
+   */
+  CharSequence getCharacters() {
+    return characters;
+  }
+
+  /**
+   * 
+   * @return the UTF-8 encoded bytes or null if the plain text is given as
+   *         characters
+   */
+  byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * checks the length without encoding the characters
+   * 
+   * @param characters
+   *          the characters, normalized as they are hashed
+   * @param maximumLength
+   *          the maximum length in UTF-8 encoded bytes
+   * @return true if the characters do not exceed the maximum length
+   */
+  static boolean isLengthAllowed(CharSequence characters, int maximumLength) {
+    // every character takes at least one byte
+    return characters.length() <= maximumLength && BaseHashGenerator.getUtf8Length(characters) <= maximumLength;
+  }
+
+  /**
+   * 
+   * @return the length of the plain text in UTF-8 encoded bytes
+   */
+  int getUtf8Length() {
+    return (bytes != null) ? bytes.length : BaseHashGenerator.getUtf8Length(characters);
+  }
+
+  String hashPassword(HashGenerator hashGenerator) {
+    if (bytes != null) {
+      return hashGenerator.hashPassword(bytes);
+    }
+    if (characters instanceof String) {
+      return hashGenerator.hashPassword((String) characters);
+    }
+    return hashGenerator.hashPassword((CharBuffer) characters);
+  }
+
+  boolean isPasswordLengthAllowed(HashGenerator hashGenerator) {
+    if (bytes != null) {
+      return hashGenerator.isPasswordLengthAllowed(bytes);
+    }
+    if (characters instanceof String) {
+      return hashGenerator.isPasswordLengthAllowed((String) characters);
+    }
+    return hashGenerator.isPasswordLengthAllowed((CharBuffer) characters);
+  }
+
+  boolean verifyHash(HashGenerator hashGenerator, ParsedHash parsedHash) {
+    if (bytes != null) {
+      return hashGenerator.verifyHash(bytes, parsedHash);
+    }
+    if (characters instanceof String) {
+      return hashGenerator.verifyHash((String) characters, parsedHash);
+    }
+    return hashGenerator.verifyHash((CharBuffer) characters, parsedHash);
+  }
+
+  String hashPassword(PasswordDigester passwordDigester) {
+    if (bytes != null) {
+      return passwordDigester.hashPassword(bytes);
+    }
+    if (characters instanceof String) {
+      return passwordDigester.hashPassword((String) characters);
+    }
+    return passwordDigester.hashPassword((CharBuffer) characters);
+  }
+
+  PasswordMatchResult matchesPassword(PasswordDigester passwordDigester, String formattedHash) {
+    if (bytes != null) {
+      return passwordDigester.matchesPassword(bytes, formattedHash);
+    }
+    if (characters instanceof String) {
+      return passwordDigester.matchesPassword((String) characters, formattedHash);
+    }
+    return passwordDigester.matchesPassword((CharBuffer) characters, formattedHash);
+  }
+
+  PasswordMatchResult matchesPassword(PasswordDigester passwordDigester, ParsedHash parsedHash) {
+    if (bytes != null) {
+      return passwordDigester.matchesPassword(bytes, parsedHash);
+    }
+    if (characters instanceof String) {
+      return passwordDigester.matchesPassword((String) characters, parsedHash);
+    }
+    return passwordDigester.matchesPassword((CharBuffer) characters, parsedHash);
+  }
+
+  /**
+   * copies the plain text, e.g. for work deferred beyond the call, as the
+   * caller may wipe its array once the call returns
+   * 
+   * @return a copy to be wiped by {@link #wipe()} after use
+   */
+  PlainText copy() {
+    if (bytes != null) {
+      return new PlainText(null, bytes.clone());
+    }
+    if (characters instanceof String) {
+      return this;
+    }
+    char[] copy = new char[characters.length()];
+    ((CharBuffer) characters).duplicate().get(copy);
+    return new PlainText(CharBuffer.wrap(copy), null);
+  }
+
+  /**
+   * overwrites a copy created by {@link #copy()} with zeros, strings cannot
+   * be wiped
+   */
+  void wipe() {
+    if (bytes != null) {
+      Arrays.fill(bytes, (byte) 0);
+    } else if (characters instanceof CharBuffer) {
+      CharBuffer buffer = (CharBuffer) characters;
+      if (buffer.hasArray()) {
+        Arrays.fill(buffer.array(), '\0');
+      }
+    }
+  }
+
+}
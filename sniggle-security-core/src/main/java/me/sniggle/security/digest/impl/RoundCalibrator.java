@@ -0,0 +1,313 @@
+package me.sniggle.security.digest.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.DigestBackend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class benchmarks the SHA-CRYPT and PBKDF2 algorithms on the running
+ * machine and derives a {@link RoundConfiguration} whose hashes take a target
+ * latency within a tolerance, instead of relying on fixed round numbers that
+ * are only right for one hardware generation. <br>
+ * <br>
+ * as calibration takes a noticeable amount of time the result can be stored
+ * in and loaded from a properties file, so that a node calibrates once
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class RoundCalibrator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RoundCalibrator.class);
+
+  private static final int MINIMUM_ROUNDS = 1000;
+  private static final int MAXIMUM_ROUNDS = 999999999;
+  private static final long WARM_UP_NANOS = TimeUnit.SECONDS.toNanos(2);
+  private static final int SAMPLES = 5;
+  private static final int ATTEMPTS = 8;
+  private static final String PLAIN_TEXT = "calibration!";
+  private static final String SALT = "0123456789abcdef";
+  private static final String MINIMUM_ROUNDS_SUFFIX = ".minimumRounds";
+  private static final String MAXIMUM_ROUNDS_SUFFIX = ".maximumRounds";
+
+  private final Algorithm algorithm;
+  private final BaseHashGenerator hashGenerator;
+
+  /**
+   * calibrates the JCA message digests
+   * 
+   * @param algorithm
+   *          {@link Algorithm#SHA256_CRYPT}, {@link Algorithm#SHA512_CRYPT},
+   *          {@link Algorithm#PBKDF2_SHA256} or {@link Algorithm#PBKDF2_SHA512}
+   */
+  public RoundCalibrator(Algorithm algorithm) {
+    this(algorithm, DigestBackend.JCA);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          {@link Algorithm#SHA256_CRYPT}, {@link Algorithm#SHA512_CRYPT},
+   *          {@link Algorithm#PBKDF2_SHA256} or {@link Algorithm#PBKDF2_SHA512}
+   * @param digestBackend
+   *          the implementation of the message digests to be calibrated, PBKDF2
+   *          always uses the built-in message digests
+   */
+  public RoundCalibrator(Algorithm algorithm, DigestBackend digestBackend) {
+    super();
+    RoundConfiguration unrestricted = new RoundConfiguration(MINIMUM_ROUNDS, MAXIMUM_ROUNDS);
+    if (algorithm == Algorithm.SHA256_CRYPT) {
+      this.hashGenerator = new Sha256Crypt(unrestricted, digestBackend);
+    } else if (algorithm == Algorithm.SHA512_CRYPT) {
+      this.hashGenerator = new Sha512Crypt(unrestricted, digestBackend);
+    } else if (algorithm == Algorithm.PBKDF2_SHA256) {
+      this.hashGenerator = new Pbkdf2Sha256(unrestricted);
+    } else if (algorithm == Algorithm.PBKDF2_SHA512) {
+      this.hashGenerator = new Pbkdf2Sha512(unrestricted);
+    } else {
+      throw new IllegalArgumentException("Only SHA-CRYPT and PBKDF2 algorithms can be calibrated, not " + algorithm);
+    }
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * measures the hashing on the calling thread and adjusts the rounds until a
+   * hash takes the target latency. The resulting range spans the tolerance
+   * around the calibrated rounds. <br>
+   * <br>
+   * the cost of a round depends on the length of password and salt, the
+   * measurement uses a password of 12 characters and a salt of 16 characters
+   * 
+   * @param targetLatency
+   *          the time a single hash shall take
+   * @param unit
+   *          the unit of the target latency
+   * @param tolerancePercent
+   *          the allowed deviation from the target latency in percent, e.g. 10
+   * @return the calibrated configuration
+   */
+  public RoundConfiguration calibrate(long targetLatency, TimeUnit unit, int tolerancePercent) {
+    if (unit == null || targetLatency < 1) {
+      throw new IllegalArgumentException("The target latency must be positive");
+    }
+    if (tolerancePercent < 1 || tolerancePercent > 50) {
+      throw new IllegalArgumentException("The tolerance must be between 1 and 50 percent");
+    }
+    long target = unit.toNanos(targetLatency);
+    // measuring before the JIT has compiled the round loop underestimates the
+    // speed of the machine
+    long warmUpEnd = System.nanoTime() + WARM_UP_NANOS;
+    while (System.nanoTime() - warmUpEnd < 0) {
+      hashGenerator.hashPassword(PLAIN_TEXT, SALT, hashGenerator.getDefaultRoundCount());
+    }
+    int rounds = hashGenerator.getDefaultRoundCount();
+    long duration = measure(rounds);
+    // aim at the middle of the band, half the tolerance is good enough
+    long allowedDeviation = target * tolerancePercent / 200;
+    for (int attempt = 0; attempt < ATTEMPTS && Math.abs(duration - target) > allowedDeviation; attempt++) {
+      rounds = limit((long) ((double) rounds * target / Math.max(duration, 1)));
+      duration = measure(rounds);
+    }
+    int minimumRounds = limit((long) rounds * (100 - tolerancePercent) / 100);
+    int maximumRounds = limit((long) rounds * (100 + tolerancePercent) / 100);
+    if (maximumRounds <= minimumRounds) {
+      maximumRounds = minimumRounds + 1;
+    }
+    LOGGER.info("Calibrated {} to {} rounds taking {} us", new Object[] { algorithm, rounds, duration / 1000 });
+    return new RoundConfiguration(minimumRounds, maximumRounds);
+  }
+
+  /**
+   * 
+   * @param rounds
+   *          the number of rounds
+   * @return the median duration of a hash in nanoseconds
+   */
+  private long measure(int rounds) {
+    long[] durations = new long[SAMPLES];
+    for (int i = 0; i < SAMPLES; i++) {
+      long start = System.nanoTime();
+      hashGenerator.hashPassword(PLAIN_TEXT, SALT, rounds);
+      durations[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(durations);
+    return durations[SAMPLES / 2];
+  }
+
+  /**
+   * 
+   * @param rounds
+   *          the requested rounds
+   * @return the rounds limited to the range supported by SHA-CRYPT
+   */
+  private static int limit(long rounds) {
+    return (int) Math.max(MINIMUM_ROUNDS, Math.min(MAXIMUM_ROUNDS, rounds));
+  }
+
+  /**
+   * puts the configuration of the algorithm into the properties, keyed by the
+   * lower case algorithm name
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @param configuration
+   *          the configuration
+   * @param properties
+   *          the target properties
+   */
+  public static void toProperties(Algorithm algorithm, RoundConfiguration configuration, Properties properties) {
+    String prefix = algorithm.name().toLowerCase(Locale.ENGLISH);
+    properties.setProperty(prefix + MINIMUM_ROUNDS_SUFFIX, String.valueOf(configuration.getMinimumRounds()));
+    properties.setProperty(prefix + MAXIMUM_ROUNDS_SUFFIX, String.valueOf(configuration.getMaximumRounds()));
+  }
+
+  /**
+   * reads the configuration of the algorithm from the properties
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @param properties
+   *          the source properties
+   * @return the configuration or null if the properties hold no valid
+   *         configuration of the algorithm
+   */
+  public static RoundConfiguration fromProperties(Algorithm algorithm, Properties properties) {
+    String prefix = algorithm.name().toLowerCase(Locale.ENGLISH);
+    String minimumRounds = properties.getProperty(prefix + MINIMUM_ROUNDS_SUFFIX);
+    String maximumRounds = properties.getProperty(prefix + MAXIMUM_ROUNDS_SUFFIX);
+    if (minimumRounds != null && maximumRounds != null) {
+      try {
+        int minimum = Integer.parseInt(minimumRounds.trim());
+        int maximum = Integer.parseInt(maximumRounds.trim());
+        if (minimum > 0 && maximum > minimum) {
+          return new RoundConfiguration(minimum, maximum);
+        }
+      } catch (NumberFormatException e) {
+        LOGGER.warn("Invalid round configuration of {}: {}", algorithm, e.getMessage());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * stores the configuration of the algorithm in the properties file, keeping
+   * the configurations of other algorithms already stored in it
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @param configuration
+   *          the configuration
+   * @param file
+   *          the properties file
+   * @return true if the configuration has been stored
+   */
+  public static boolean store(Algorithm algorithm, RoundConfiguration configuration, File file) {
+    Properties properties = readProperties(file);
+    if (properties == null) {
+      properties = new Properties();
+    }
+    toProperties(algorithm, configuration, properties);
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(file);
+      properties.store(out, "calibrated round configurations");
+      return true;
+    } catch (IOException e) {
+      LOGGER.error("Could not store round configuration! {}", e.getMessage());
+    } finally {
+      close(out);
+    }
+    return false;
+  }
+
+  /**
+   * loads the configuration of the algorithm from the properties file
+   * 
+   * @param algorithm
+   *          the algorithm
+   * @param file
+   *          the properties file
+   * @return the configuration or null if the file does not exist or holds no
+   *         valid configuration of the algorithm
+   */
+  public static RoundConfiguration load(Algorithm algorithm, File file) {
+    Properties properties = readProperties(file);
+    return (properties == null) ? null : fromProperties(algorithm, properties);
+  }
+
+  /**
+   * loads the configuration of the algorithm from the properties file or, if
+   * there is none, calibrates and stores it
+   * 
+   * @param file
+   *          the properties file
+   * @param targetLatency
+   *          the time a single hash shall take
+   * @param unit
+   *          the unit of the target latency
+   * @param tolerancePercent
+   *          the allowed deviation from the target latency in percent
+   * @return the loaded or calibrated configuration
+   */
+  public RoundConfiguration loadOrCalibrate(File file, long targetLatency, TimeUnit unit, int tolerancePercent) {
+    RoundConfiguration result = load(algorithm, file);
+    if (result == null) {
+      result = calibrate(targetLatency, unit, tolerancePercent);
+      store(algorithm, result, file);
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param file
+   *          the properties file
+   * @return the properties or null if the file does not exist or cannot be
+   *         read
+   */
+  private static Properties readProperties(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      Properties result = new Properties();
+      result.load(in);
+      return result;
+    } catch (IOException e) {
+      LOGGER.error("Could not read round configuration! {}", e.getMessage());
+    } finally {
+      close(in);
+    }
+    return null;
+  }
+
+  private static void close(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        LOGGER.debug(e.getMessage());
+      }
+    }
+  }
+
+}
@@ -3,22 +3,45 @@
  */
 package me.sniggle.security.digest.impl;
 
-import java.lang.reflect.Constructor;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import me.sniggle.security.crypto.config.RoundConfiguration;
 import me.sniggle.security.digest.HashGenerator;
+import me.sniggle.security.digest.HashUpgradeSink;
 import me.sniggle.security.digest.PasswordDigester;
 import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.HashCostPolicy;
+import me.sniggle.security.digest.config.ParsedHash;
 import me.sniggle.security.digest.config.PasswordMatchResult;
-import me.sniggle.security.exception.ReflectiveOperationException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class handles the hashing of all algorithms specified in
- * {@link Algorithm}
+ * {@link Algorithm}. <br>
+ * <br>
+ * by default a successful verification against an outdated hash creates the
+ * upgraded hash before returning. If a {@link HashUpgradeSink} is registered
+ * the upgrade is deferred instead: the result is returned immediately and the
+ * upgraded hash is computed on a bounded, low priority executor and passed to
+ * the sink. Upgrades not fitting into the executor are dropped and counted,
+ * they are retried with the next login. <br>
+ * <br>
+ * with a {@link HashCostPolicy} new hashes are created with its target
+ * algorithm and rounds, hashes above its verification ceiling are rejected
+ * without computing them, and hashes outside of its target are upgraded
  * 
  * @author iulius
  * @since 0.0.1
@@ -28,42 +51,101 @@ public class SecurePasswordDigester implements PasswordDigester {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SecurePasswordDigester.class);
 
-  private static final Pattern FORMATTED_DIGEST_PATTERN = Pattern.compile("^(\\$[0-9]+\\$)(rounds=)?([0-9]+)\\$(.+)\\$(.+)");
+  private final HashUpgradeSink upgradeSink;
+  private final Executor upgradeExecutor;
+  private final boolean ownsUpgradeExecutor;
+  private final AtomicLong droppedUpgradeCount = new AtomicLong();
+  private volatile CostPolicyGenerators costPolicyGenerators;
   
   /**
-   * default constructor
+   * default constructor, upgrades hashes synchronously
    */
 	public SecurePasswordDigester() {
     super();
+    this.upgradeSink = null;
+    this.upgradeExecutor = null;
+    this.ownsUpgradeExecutor = false;
 	}
 
   /**
-   * creates the hash generator for the given algorithm using the applicable
-   * rules
+   * defers hash upgrades to a single low priority thread, allowing 1000
+   * pending upgrades
+   * 
+   * @param upgradeSink
+   *          the sink receiving the upgraded hashes
+   */
+  public SecurePasswordDigester(HashUpgradeSink upgradeSink) {
+    this(upgradeSink, 1, 1000);
+  }
+
+  /**
+   * defers hash upgrades to a dedicated pool of low priority threads
+   * 
+   * @param upgradeSink
+   *          the sink receiving the upgraded hashes
+   * @param threads
+   *          the number of upgrading threads
+   * @param queueLimit
+   *          the maximum number of pending upgrades
+   */
+  public SecurePasswordDigester(HashUpgradeSink upgradeSink, int threads, int queueLimit) {
+    super();
+    if (upgradeSink == null) {
+      throw new IllegalArgumentException("The upgrade sink may not be null!");
+    }
+    if (threads < 1 || queueLimit < 1) {
+      throw new IllegalArgumentException("The number of threads and the queue limit must be positive");
+    }
+    this.upgradeSink = upgradeSink;
+    this.upgradeExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueLimit), new HashingThreadFactory("sniggle-hash-upgrade",
+            Thread.MIN_PRIORITY), new ThreadPoolExecutor.AbortPolicy());
+    this.ownsUpgradeExecutor = true;
+  }
+
+  /**
+   * defers hash upgrades to the given executor, e.g. the
+   * {@link me.sniggle.security.digest.config.Priority#UPGRADE} lane of a
+   * {@link HashingScheduler}. A rejected upgrade is dropped
+   * 
+   * @param upgradeSink
+   *          the sink receiving the upgraded hashes
+   * @param upgradeExecutor
+   *          the executor computing the upgraded hashes
+   */
+  public SecurePasswordDigester(HashUpgradeSink upgradeSink, Executor upgradeExecutor) {
+    super();
+    if (upgradeSink == null || upgradeExecutor == null) {
+      throw new IllegalArgumentException("The upgrade sink and executor may not be null!");
+    }
+    this.upgradeSink = upgradeSink;
+    this.upgradeExecutor = upgradeExecutor;
+    this.ownsUpgradeExecutor = false;
+  }
+
+  /**
+   * creates the hash generator for the given algorithm using the given round
+   * configuration
    * 
    * @param algorithm
    *          the algorithm to be used
+   * @param roundConfiguration
+   *          the round configuration to be used
    * @return the hash generator
-   * @throws ReflectiveOperationException
-   *           thrown if now matching constructor is being found
    */
-  private static HashGenerator createHashGenerator(Algorithm algorithm) throws ReflectiveOperationException {
-    try {
-      LOGGER.debug("Trying to instantiate hash generator with default constructor");
-      Constructor<?> constructor = algorithm.hashGeneratorClass().getConstructor();
-      return (HashGenerator) constructor.newInstance();
-    } catch (NoSuchMethodException e) {
-      LOGGER.debug("No default constructor found, trying Algorithm-constructor");
-      Constructor<?> constructor;
-      try {
-        constructor = algorithm.hashGeneratorClass().getConstructor(Algorithm.class);
-        return (HashGenerator) constructor.newInstance(algorithm);
-      } catch (Exception e1) {
-        throw new ReflectiveOperationException(e1);
-      }
-    } catch (Exception e) {
-      throw new ReflectiveOperationException(e);
-    }
+  private static HashGenerator createHashGenerator(Algorithm algorithm, RoundConfiguration roundConfiguration) {
+    return HashGeneratorRegistry.getDefault().createHashGenerator(algorithm, roundConfiguration);
+  }
+
+  /**
+   * provides the shared hash generator for the given algorithm
+   * 
+   * @param algorithm
+   *          the algorithm to be used
+   * @return the hash generator
+   */
+  private static HashGenerator getHashGenerator(Algorithm algorithm) {
+    return HashGeneratorRegistry.getDefault().getHashGenerator(algorithm);
   }
 
   /**
@@ -77,12 +159,25 @@ public class SecurePasswordDigester implements PasswordDigester {
    * @return the hash value or null in case of an error
    */
   protected String hashPassword(String plainText, Algorithm algorithm) {
+    return hashPassword(PlainText.of(plainText), algorithm);
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text to be hashed
+   * @param algorithm
+   *          the algorithm to be used
+   * @return the hash value or null in case of an error
+   */
+  private String hashPassword(PlainText plainText, Algorithm algorithm) {
+    if (plainText == null) {
+      LOGGER.info("No text to hash provided!");
+      return null;
+    }
     try {
-      HashGenerator hashGenerator = createHashGenerator(algorithm);
-      return hashGenerator.hashPassword(plainText);
-    } catch (SecurityException e) {
-      LOGGER.error("Error during hashing! {}", e.getMessage());
-    } catch (ReflectiveOperationException e) {
+      return plainText.hashPassword(getHashGenerator(algorithm));
+    } catch (IllegalArgumentException e) {
       LOGGER.error("Error during hashing! {}", e.getMessage());
     }
     return null;
@@ -93,7 +188,83 @@ public class SecurePasswordDigester implements PasswordDigester {
    */
   @Override
   public String hashPassword(String plainText) {
-    return hashPassword(plainText, Algorithm.getBest());
+    return hashPassword(PlainText.of(plainText));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(char[])
+   */
+  @Override
+  public String hashPassword(char[] plainText) {
+    return hashPassword(PlainText.of(plainText));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#hashPassword(java.nio.CharBuffer)
+   */
+  @Override
+  public String hashPassword(CharBuffer plainText) {
+    return hashPassword(PlainText.of(plainText));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPassword(byte[])
+   */
+  @Override
+  public String hashPassword(byte[] plainText) {
+    return hashPassword(PlainText.of(plainText));
+  }
+
+  /**
+   * hashes the plain text with the target of the cost policy or, without a
+   * policy, with the best algorithm
+   * 
+   * @param plainText
+   *          the plain text to be hashed
+   * @return the hash value or null in case of an error
+   */
+  private String hashPassword(PlainText plainText) {
+    CostPolicyGenerators generators = costPolicyGenerators;
+    if (generators == null) {
+      return hashPassword(plainText, Algorithm.getBest());
+    }
+    if (plainText == null) {
+      LOGGER.info("No text to hash provided!");
+      return null;
+    }
+    try {
+      return plainText.hashPassword(generators.getTargetGenerator());
+    } catch (IllegalArgumentException e) {
+      LOGGER.error("Error during hashing! {}", e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * sets the policy for the cost of hashes, replacing the previous one
+   * 
+   * @param hashCostPolicy
+   *          the policy or null in order to create hashes with the best
+   *          algorithm and the default rounds
+   */
+  public void setHashCostPolicy(HashCostPolicy hashCostPolicy) {
+    this.costPolicyGenerators = (hashCostPolicy == null) ? null : new CostPolicyGenerators(hashCostPolicy);
+  }
+
+  /**
+   * 
+   * @return the policy for the cost of hashes or null if none is set
+   */
+  public HashCostPolicy getHashCostPolicy() {
+    CostPolicyGenerators generators = costPolicyGenerators;
+    return (generators == null) ? null : generators.getPolicy();
   }
 
   /* (non-Javadoc)
@@ -101,35 +272,540 @@ public class SecurePasswordDigester implements PasswordDigester {
    */
   @Override
   public PasswordMatchResult matchesPassword(String plainText, String formattedHash) {
-    Matcher matcher = FORMATTED_DIGEST_PATTERN.matcher(formattedHash);
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(char[],
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(char[] plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.nio.CharBuffer,
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(CharBuffer plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(byte[],
+   * java.lang.String)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(byte[] plainText, String formattedHash) {
+    return matchesPassword(PlainText.of(plainText), formattedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.lang.String,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(String plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(char[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(char[] plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(java.nio.CharBuffer,
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(CharBuffer plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPassword(byte[],
+   * me.sniggle.security.digest.config.ParsedHash)
+   */
+  @Override
+  public PasswordMatchResult matchesPassword(byte[] plainText, ParsedHash parsedHash) {
+    return matchesPassword(PlainText.of(plainText), parsedHash);
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash
+   * @return the result of the verification or null if the hash could not be
+   *         parsed
+   */
+  private PasswordMatchResult matchesPassword(PlainText plainText, String formattedHash) {
+    ParsedHash parsedHash = parseHash(formattedHash);
+    if (parsedHash == null) {
+      LOGGER.warn("The provided hash ({}) does not match the implemented pattern!", formattedHash);
+      return null;
+    }
+    return matchesPassword(plainText, parsedHash);
+  }
+
+  /**
+   * verifies the plain text and upgrades an outdated hash
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash
+   * @return the result of the verification or null if the hash could not be
+   *         processed
+   */
+  private PasswordMatchResult matchesPassword(PlainText plainText, ParsedHash parsedHash) {
     PasswordMatchResult result = null;
-    if (matcher.matches()) {
-      LOGGER.debug("Determine magic prefix");
-      String magicPrefix = matcher.group(1);
-      LOGGER.debug("Determine suitable algorithm");
-      Algorithm algorithm = Algorithm.getForMagicPrefix(magicPrefix);
-      try {
-        HashGenerator hashGenerator = createHashGenerator(algorithm);
-        result = new PasswordMatchResult(false, null);
-        LOGGER.debug("verifying plaintext value");
-        if (hashGenerator.verifyHash(plainText, formattedHash)) {
-          LOGGER.debug("plain text is verified");
-          result.setMatching(true);
-          Algorithm bestAlgorithm = Algorithm.getBest();
-          if (algorithm != bestAlgorithm) {
+    if (parsedHash != null) {
+      CostPolicyGenerators generators = costPolicyGenerators;
+      result = new PasswordMatchResult(false, null);
+      if (plainText != null && !isPasswordLengthAllowed(plainText, parsedHash, generators)) {
+        LOGGER.warn("The plain text exceeds the maximum password length, rejecting verification!");
+        result.setRejected(true);
+      } else if (plainText != null && verifyPassword(plainText, parsedHash, generators)) {
+        LOGGER.debug("plain text is verified");
+        result.setMatching(true);
+        if (isOutdated(generators, parsedHash)) {
+          if (upgradeSink != null) {
+            // the caller may wipe its array once the verification returns
+            scheduleUpgrade(plainText.copy(), parsedHash.getFormattedHash());
+          } else {
             LOGGER.info("The used hash value is outdated and a new hash is being created for the plain text!");
             result.setUpdatedHash(hashPassword(plainText));
           }
         }
-      } catch (SecurityException e) {
-        LOGGER.error("Error during verification of plain text! {}", e.getMessage());
-      } catch (ReflectiveOperationException e) {
-        LOGGER.error("Error during hashing! {}", e.getMessage());
       }
-    } else {
-      LOGGER.warn("The provided hash ({}) does not match the implemented pattern!", formattedHash);
     }
     return result;
   }
 
+  /**
+   * hands the creation of the upgraded hash to the upgrade executor
+   * 
+   * @param plainText
+   *          a copy of the verified plain text, wiped once the upgrade is
+   *          done or dropped
+   * @param outdatedHash
+   *          the formatted hash the plain text has been verified against
+   */
+  private void scheduleUpgrade(final PlainText plainText, final String outdatedHash) {
+    try {
+      upgradeExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          String upgradedHash;
+          try {
+            upgradedHash = hashPassword(plainText);
+          } finally {
+            plainText.wipe();
+          }
+          if (upgradedHash != null) {
+            try {
+              upgradeSink.onHashUpgraded(outdatedHash, upgradedHash);
+            } catch (RuntimeException e) {
+              LOGGER.error("Upgrade sink failed! {}", e.getMessage());
+            }
+          }
+        }
+      });
+      LOGGER.debug("The used hash value is outdated, an upgrade has been scheduled");
+    } catch (RejectedExecutionException e) {
+      plainText.wipe();
+      droppedUpgradeCount.incrementAndGet();
+      LOGGER.warn("Hash upgrade queue is full, dropping upgrade");
+    }
+  }
+
+  /**
+   * 
+   * @return the number of deferred upgrades dropped so far because the
+   *         upgrade executor was saturated
+   */
+  public long getDroppedUpgradeCount() {
+    return droppedUpgradeCount.get();
+  }
+
+  /**
+   * stops accepting deferred upgrades if the upgrade executor has been created
+   * by this instance, pending upgrades are completed
+   */
+  public void shutdown() {
+    if (ownsUpgradeExecutor) {
+      ((ThreadPoolExecutor) upgradeExecutor).shutdown();
+    }
+  }
+
+  /**
+   * estimates the cost of verifying the plain text against the parsed hash
+   * before any digest work starts, e.g. in order to refuse or deprioritize
+   * expensive input
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash
+   * @return the estimated number of work steps of the algorithm, see
+   *         {@link HashGenerator#estimateCost(int, int, int)}, or
+   *         -1 if the input is null or no hash generator is available for the
+   *         algorithm
+   */
+  public long estimateCost(String plainText, ParsedHash parsedHash) {
+    if (plainText == null) {
+      return -1;
+    }
+    return estimateCost(BaseHashGenerator.getUtf8Length(plainText), parsedHash);
+  }
+
+  /**
+   * estimates the cost of verifying a plain text of the given length against
+   * the parsed hash, e.g. in order to assess stored hashes without knowing the
+   * plain texts
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param parsedHash
+   *          the parsed hash
+   * @return the estimated number of work steps of the algorithm, see
+   *         {@link HashGenerator#estimateCost(int, int, int)}, or
+   *         -1 if the hash is null or no hash generator is available for the
+   *         algorithm
+   */
+  public long estimateCost(int passwordLength, ParsedHash parsedHash) {
+    if (parsedHash == null) {
+      return -1;
+    }
+    try {
+      return getHashGenerator(parsedHash.getAlgorithm()).estimateCost(passwordLength, parsedHash);
+    } catch (IllegalArgumentException e) {
+      LOGGER.error("Error during cost estimation! {}", e.getMessage());
+    }
+    return -1;
+  }
+
+  /**
+   * 
+   * @param parsedHash
+   *          the parsed hash
+   * @return false if the rounds of the hash exceed the verification ceiling of
+   *         the cost policy, so that verifications against it are refused
+   */
+  public boolean isVerificationAllowed(ParsedHash parsedHash) {
+    return isVerificationAllowed(costPolicyGenerators, parsedHash);
+  }
+
+  /**
+   * 
+   * @param parsedHash
+   *          the parsed hash
+   * @return true if a successful verification against the hash upgrades it,
+   *         i.e. it does not use the best algorithm or, given a cost policy,
+   *         the target algorithm and rounds
+   */
+  public boolean isOutdated(ParsedHash parsedHash) {
+    return isOutdated(costPolicyGenerators, parsedHash);
+  }
+
+  private static boolean isVerificationAllowed(CostPolicyGenerators generators, ParsedHash parsedHash) {
+    return generators == null || generators.getPolicy().isVerificationAllowed(parsedHash);
+  }
+
+  private static boolean isOutdated(CostPolicyGenerators generators, ParsedHash parsedHash) {
+    return (generators == null) ? parsedHash.getAlgorithm() != Algorithm.getBest() : generators.getPolicy()
+        .needsRehash(parsedHash);
+  }
+
+  /**
+   * determines the algorithm from the magic prefix and lets the matching hash
+   * generator parse the hash
+   * 
+   * @param formattedHash
+   *          the formatted hash
+   * @return the parsed hash or null if the formatted hash is malformed or of an
+   *         unsupported algorithm
+   */
+  @Override
+  public ParsedHash parseHash(String formattedHash) {
+    Algorithm algorithm = Algorithm.getForFormattedHash(formattedHash);
+    if (algorithm != null) {
+      try {
+        return getHashGenerator(algorithm).parseHash(formattedHash);
+      } catch (IllegalArgumentException e) {
+        LOGGER.error("Error during parsing of hash! {}", e.getMessage());
+      }
+    }
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPasswords(java.util.List)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts) {
+    return hashPasswords(plainTexts, BatchExecution.getDefaultExecutor());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.PasswordDigester#hashPasswords(java.util.List,
+   * java.util.concurrent.Executor)
+   */
+  @Override
+  public List<String> hashPasswords(List<String> plainTexts, Executor executor) {
+    BatchExecution.checkInput(plainTexts, "plain texts");
+    List<Callable<String>> tasks = new ArrayList<Callable<String>>(plainTexts.size());
+    for (final String plainText : plainTexts) {
+      tasks.add(new Callable<String>() {
+        @Override
+        public String call() {
+          return hashPassword(plainText);
+        }
+      });
+    }
+    return BatchExecution.execute(tasks, executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPasswords(java.util.List,
+   * java.util.List)
+   */
+  @Override
+  public List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes) {
+    return matchesPasswords(plainTexts, formattedHashes, BatchExecution.getDefaultExecutor());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#matchesPasswords(java.util.List,
+   * java.util.List, java.util.concurrent.Executor)
+   */
+  @Override
+  public List<PasswordMatchResult> matchesPasswords(List<String> plainTexts, List<String> formattedHashes, Executor executor) {
+    return BatchExecution.matchesPasswords(this, plainTexts, formattedHashes, executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#findMatchingHash(java.lang.String,
+   * java.util.List)
+   */
+  @Override
+  public Integer findMatchingHash(String plainText, List<String> formattedHashes) {
+    return findMatchingHash(plainText, formattedHashes, BatchExecution.getDefaultExecutor());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * me.sniggle.security.digest.PasswordDigester#findMatchingHash(java.lang.String,
+   * java.util.List, java.util.concurrent.Executor)
+   */
+  @Override
+  public Integer findMatchingHash(String plainText, List<String> formattedHashes, Executor executor) {
+    BatchExecution.checkInput(formattedHashes, "formatted hashes");
+    if (plainText == null) {
+      return Integer.valueOf(-1);
+    }
+    final PlainText text = PlainText.of(plainText);
+    List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(formattedHashes.size());
+    for (final String formattedHash : formattedHashes) {
+      tasks.add(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return Boolean.valueOf(verifyPassword(text, formattedHash));
+        }
+      });
+    }
+    return BatchExecution.findFirst(tasks, executor);
+  }
+
+  /**
+   * verifies the plain text without upgrading the hash
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param formattedHash
+   *          the formatted hash
+   * @return true if the plain text matches the hash, false if it does not, the
+   *         hash is malformed or exceeds the verification ceiling
+   */
+  private boolean verifyPassword(PlainText plainText, String formattedHash) {
+    ParsedHash parsedHash = parseHash(formattedHash);
+    if (parsedHash == null) {
+      LOGGER.warn("The provided hash ({}) does not match the implemented pattern!", formattedHash);
+      return false;
+    }
+    return verifyPassword(plainText, parsedHash, costPolicyGenerators);
+  }
+
+  /**
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash
+   * @param generators
+   *          the generators of the cost policy or null
+   * @return false if the plain text exceeds the maximum password length of
+   *         the generator verifying the hash
+   */
+  private static boolean isPasswordLengthAllowed(PlainText plainText, ParsedHash parsedHash,
+      CostPolicyGenerators generators) {
+    try {
+      return plainText.isPasswordLengthAllowed(getVerificationGenerator(parsedHash.getAlgorithm(), generators));
+    } catch (IllegalArgumentException e) {
+      // left to the verification, which reports the error
+      return true;
+    }
+  }
+
+  /**
+   * 
+   * @param algorithm
+   *          the algorithm of the hash
+   * @param generators
+   *          the generators of the cost policy or null
+   * @return the generator verifying hashes of the algorithm
+   */
+  private static HashGenerator getVerificationGenerator(Algorithm algorithm, CostPolicyGenerators generators) {
+    return (generators == null) ? getHashGenerator(algorithm) : generators.getVerificationGenerator(algorithm);
+  }
+
+  /**
+   * verifies the plain text with the generator the cost policy provides for
+   * the algorithm of the hash, rejecting hashes above the verification ceiling
+   * 
+   * @param plainText
+   *          the plain text to be verified
+   * @param parsedHash
+   *          the parsed hash
+   * @param generators
+   *          the generators of the cost policy or null
+   * @return true if the plain text matches the hash, false if it does not or
+   *         the hash exceeds the verification ceiling
+   */
+  private static boolean verifyPassword(PlainText plainText, ParsedHash parsedHash, CostPolicyGenerators generators) {
+    if (!isVerificationAllowed(generators, parsedHash)) {
+      LOGGER.warn("The rounds of the hash exceed the verification ceiling, rejecting verification!");
+      return false;
+    }
+    try {
+      HashGenerator hashGenerator = getVerificationGenerator(parsedHash.getAlgorithm(), generators);
+      LOGGER.debug("verifying plaintext value");
+      return plainText.verifyHash(hashGenerator, parsedHash);
+    } catch (IllegalArgumentException e) {
+      LOGGER.error("Error during verification of plain text! {}", e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * the hash generators of a {@link HashCostPolicy}: the generator creating
+   * hashes with the target rounds, and per algorithm a generator verifying
+   * hashes with any rounds up to the verification ceiling
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class CostPolicyGenerators {
+
+    private final HashCostPolicy policy;
+    private final ConcurrentMap<Algorithm, HashGenerator> verificationGenerators = new ConcurrentHashMap<Algorithm, HashGenerator>();
+    private volatile HashGenerator targetGenerator;
+
+    CostPolicyGenerators(HashCostPolicy policy) {
+      super();
+      this.policy = policy;
+    }
+
+    HashCostPolicy getPolicy() {
+      return policy;
+    }
+
+    HashGenerator getTargetGenerator() {
+      HashGenerator result = targetGenerator;
+      if (result == null) {
+        // creating it twice in a race is harmless, the generators are immutable
+        result = createTargetGenerator();
+        targetGenerator = result;
+      }
+      return result;
+    }
+
+    private HashGenerator createTargetGenerator() {
+      if (policy.getTargetAlgorithm() == Algorithm.ARGON2ID
+          && (policy.getTargetMemoryCost() != Argon2idHashGenerator.DEFAULT_MEMORY_COST
+          || policy.getTargetParallelism() != Argon2idHashGenerator.DEFAULT_PARALLELISM)) {
+        return new Argon2idHashGenerator(policy.getTargetRounds(), policy.getTargetMemoryCost(),
+            policy.getTargetParallelism());
+      }
+      return createHashGenerator(policy.getTargetAlgorithm(), policy.getTargetRounds());
+    }
+
+    HashGenerator getVerificationGenerator(Algorithm algorithm) {
+      HashGenerator result = verificationGenerators.get(algorithm);
+      if (result == null) {
+        RoundConfiguration rounds = new RoundConfiguration(1, policy.getMaximumVerificationRounds(algorithm));
+        if (algorithm == Algorithm.ARGON2ID
+            && policy.getTargetMemoryCost() > Argon2idHashGenerator.DEFAULT_MAXIMUM_MEMORY_COST) {
+          // hashes created with the target memory cost have to remain verifiable
+          result = new Argon2idHashGenerator(rounds, Argon2idHashGenerator.DEFAULT_MEMORY_COST,
+              Argon2idHashGenerator.DEFAULT_PARALLELISM, policy.getTargetMemoryCost(), null);
+        } else {
+          result = createHashGenerator(algorithm, rounds);
+        }
+        HashGenerator existing = verificationGenerators.putIfAbsent(algorithm, result);
+        if (existing != null) {
+          result = existing;
+        }
+      }
+      return result;
+    }
+
+  }
+
 }
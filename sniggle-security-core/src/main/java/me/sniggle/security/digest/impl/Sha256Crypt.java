@@ -1,11 +1,16 @@
 package me.sniggle.security.digest.impl;
 
+import java.security.MessageDigest;
+
 import me.sniggle.security.crypto.config.RoundConfiguration;
 import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.DigestBackend;
 
 /**
  * The class implementing SHA-256 CRYPT specific parts of the algorithm, meaning
- * the input buffer length and the algorithm to build the final hash string
+ * the input buffer length and the algorithm to build the final hash string.
+ * Instances hold no mutable state and can be used by any number of threads,
+ * {@link #getInstance()} provides a shared one with the default configuration
  * 
  * @author iulius
  * @since 0.0.1
@@ -13,6 +18,23 @@ import me.sniggle.security.digest.config.Algorithm;
  */
 public class Sha256Crypt extends ShaCrypt {
 
+  /**
+   * the order in which the bytes of the final hash are base 64 encoded
+   */
+  private static final int[] BASE_64_BYTE_ORDER = new int[] { 0, 10, 20, 21, 1, 11, 12, 22, 2, 3, 13, 23, 24, 4, 14, 15, 25,
+      5, 6, 16, 26, 27, 7, 17, 18, 28, 8, 9, 19, 29, 31, 30 };
+
+  private static final Sha256Crypt INSTANCE = new Sha256Crypt();
+
+  /**
+   * 
+   * @return the shared instance using the default round configuration and the
+   *         JCA message digests
+   */
+  public static Sha256Crypt getInstance() {
+    return INSTANCE;
+  }
+
   /**
    * the default constructor
    */
@@ -30,6 +52,38 @@ public class Sha256Crypt extends ShaCrypt {
     super(Algorithm.SHA256_CRYPT, config);
   }
 
+  /**
+   * constructor
+   * 
+   * @param digestBackend
+   *          the implementation of the message digests to be used
+   */
+  public Sha256Crypt(DigestBackend digestBackend) {
+    super(Algorithm.SHA256_CRYPT, digestBackend);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param config
+   *          the configuration of round/iteration ranges to be used
+   * @param digestBackend
+   *          the implementation of the message digests to be used
+   */
+  public Sha256Crypt(RoundConfiguration config, DigestBackend digestBackend) {
+    super(Algorithm.SHA256_CRYPT, config, digestBackend);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.impl.ShaCrypt#createNativeDigest()
+   */
+  @Override
+  protected MessageDigest createNativeDigest() {
+    return new Sha256Digest();
+  }
+
 
   /*
    * (non-Javadoc)
@@ -44,22 +98,21 @@ public class Sha256Crypt extends ShaCrypt {
   /*
    * (non-Javadoc)
    * 
-   * @see me.sniggle.security.digest.impl.ShaCrypt#appendBase64OfHash(java.lang.
-   * StringBuffer, byte[])
+   * @see me.sniggle.security.digest.impl.ShaCrypt#getBlockLength()
+   */
+  @Override
+  protected int getBlockLength() {
+    return 64;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.impl.ShaCrypt#getBase64ByteOrder()
    */
   @Override
-  protected void appendBase64OfHash(StringBuffer result, byte[] finalHash) {
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[0], finalHash[10], finalHash[20], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[21], finalHash[1], finalHash[11], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[12], finalHash[22], finalHash[2], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[3], finalHash[13], finalHash[23], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[24], finalHash[4], finalHash[14], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[15], finalHash[25], finalHash[5], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[6], finalHash[16], finalHash[26], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[27], finalHash[7], finalHash[17], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[18], finalHash[28], finalHash[8], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[9], finalHash[19], finalHash[29], 4));
-    result.append(createBase64EncodedStringFrom3bytes((byte) 0x00, finalHash[31], finalHash[30], 3));
+  protected int[] getBase64ByteOrder() {
+    return BASE_64_BYTE_ORDER;
   }
   
 }
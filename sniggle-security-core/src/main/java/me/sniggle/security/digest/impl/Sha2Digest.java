@@ -0,0 +1,239 @@
+package me.sniggle.security.digest.impl;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Base class of the in-house SHA-2 implementations. The state is kept in
+ * primitive arrays and full input blocks are compressed straight from the
+ * caller's array, so no provider dispatch or intermediate copies are involved.
+ * Additionally the complete state can be copied into another instance in order
+ * to resume from a precomputed midstate
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+abstract class Sha2Digest extends MessageDigest implements Cloneable {
+
+  private final int blockLength;
+  private final int digestLength;
+
+  protected byte[] buffer;
+  protected int bufferPosition;
+  protected long byteCount;
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          the standard name of the algorithm
+   * @param blockLength
+   *          the length of a compression block in bytes
+   * @param digestLength
+   *          the length of the digest in bytes
+   */
+  protected Sha2Digest(String algorithm, int blockLength, int digestLength) {
+    super(algorithm);
+    this.blockLength = blockLength;
+    this.digestLength = digestLength;
+    this.buffer = new byte[blockLength];
+  }
+
+  /**
+   * 
+   * @return the length of a compression block in bytes
+   */
+  int getBlockLength() {
+    return blockLength;
+  }
+
+  /**
+   * compresses one block into the state
+   * 
+   * @param input
+   *          the array holding the block
+   * @param offset
+   *          the position of the block within the array
+   */
+  protected abstract void compress(byte[] input, int offset);
+
+  /**
+   * appends the length trailer to the buffer, compresses the final block(s)
+   * and writes the state to the target
+   * 
+   * @param target
+   *          the target array
+   * @param offset
+   *          the position to write the digest to
+   */
+  protected abstract void finish(byte[] target, int offset);
+
+  /**
+   * resets the chaining values to the initial hash values
+   */
+  protected abstract void resetState();
+
+  /**
+   * copies the chaining values into the other instance, which is of the same
+   * type
+   * 
+   * @param target
+   *          the target instance
+   */
+  protected abstract void copyChainingValues(Sha2Digest target);
+
+  /**
+   * copies the complete state, i.e. the chaining values, the buffered input
+   * and the byte count, into the other instance. This allows a precomputed
+   * midstate to be restored without re-digesting the common prefix
+   * 
+   * @param target
+   *          an instance of the same algorithm
+   */
+  void copyStateTo(Sha2Digest target) {
+    copyChainingValues(target);
+    System.arraycopy(buffer, 0, target.buffer, 0, bufferPosition);
+    target.bufferPosition = bufferPosition;
+    target.byteCount = byteCount;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.security.MessageDigestSpi#engineGetDigestLength()
+   */
+  @Override
+  protected int engineGetDigestLength() {
+    return digestLength;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.security.MessageDigestSpi#engineUpdate(byte)
+   */
+  @Override
+  protected void engineUpdate(byte input) {
+    buffer[bufferPosition++] = input;
+    byteCount++;
+    if (bufferPosition == blockLength) {
+      compress(buffer, 0);
+      bufferPosition = 0;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.security.MessageDigestSpi#engineUpdate(byte[], int, int)
+   */
+  @Override
+  protected void engineUpdate(byte[] input, int offset, int length) {
+    byteCount += length;
+    if (bufferPosition > 0) {
+      int fill = Math.min(blockLength - bufferPosition, length);
+      System.arraycopy(input, offset, buffer, bufferPosition, fill);
+      bufferPosition += fill;
+      offset += fill;
+      length -= fill;
+      if (bufferPosition < blockLength) {
+        return;
+      }
+      compress(buffer, 0);
+      bufferPosition = 0;
+    }
+    while (length >= blockLength) {
+      compress(input, offset);
+      offset += blockLength;
+      length -= blockLength;
+    }
+    System.arraycopy(input, offset, buffer, 0, length);
+    bufferPosition = length;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.security.MessageDigestSpi#engineDigest()
+   */
+  @Override
+  protected byte[] engineDigest() {
+    byte[] result = new byte[digestLength];
+    finish(result, 0);
+    engineReset();
+    return result;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.security.MessageDigestSpi#engineDigest(byte[], int, int)
+   */
+  @Override
+  protected int engineDigest(byte[] target, int offset, int length) throws DigestException {
+    if (length < digestLength) {
+      throw new DigestException("The output buffer is too small for the digest");
+    }
+    finish(target, offset);
+    engineReset();
+    return digestLength;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.security.MessageDigestSpi#engineReset()
+   */
+  @Override
+  protected void engineReset() {
+    resetState();
+    bufferPosition = 0;
+    byteCount = 0;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.security.MessageDigest#clone()
+   */
+  @Override
+  public Object clone() throws CloneNotSupportedException {
+    Sha2Digest result = (Sha2Digest) super.clone();
+    result.buffer = buffer.clone();
+    return result;
+  }
+
+  /**
+   * writes the value big endian into the target
+   * 
+   * @param value
+   *          the value
+   * @param target
+   *          the target array
+   * @param offset
+   *          the position to write to
+   */
+  protected static void putInt(int value, byte[] target, int offset) {
+    target[offset] = (byte) (value >>> 24);
+    target[offset + 1] = (byte) (value >>> 16);
+    target[offset + 2] = (byte) (value >>> 8);
+    target[offset + 3] = (byte) value;
+  }
+
+  /**
+   * writes the value big endian into the target
+   * 
+   * @param value
+   *          the value
+   * @param target
+   *          the target array
+   * @param offset
+   *          the position to write to
+   */
+  protected static void putLong(long value, byte[] target, int offset) {
+    putInt((int) (value >>> 32), target, offset);
+    putInt((int) value, target, offset + 4);
+  }
+
+}
@@ -1,11 +1,16 @@
 package me.sniggle.security.digest.impl;
 
+import java.security.MessageDigest;
+
 import me.sniggle.security.crypto.config.RoundConfiguration;
 import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.DigestBackend;
 
 /**
  * This class implements the Sha512 CRYPT specific parts of the algrithm, namely
- * the input buffer length and the creation of the final hash
+ * the input buffer length and the creation of the final hash. As the class is
+ * immutable a single instance, e.g. the one returned by {@link #getInstance()},
+ * may be shared across threads
  * 
  * @author iulius
  * @since 0.0.1
@@ -13,6 +18,24 @@ import me.sniggle.security.digest.config.Algorithm;
  */
 public class Sha512Crypt extends ShaCrypt {
 
+  /**
+   * the order in which the bytes of the final hash are base 64 encoded
+   */
+  private static final int[] BASE_64_BYTE_ORDER = new int[] { 0, 21, 42, 22, 43, 1, 44, 2, 23, 3, 24, 45, 25, 46, 4, 47, 5,
+      26, 6, 27, 48, 28, 49, 7, 50, 8, 29, 9, 30, 51, 31, 52, 10, 53, 11, 32, 12, 33, 54, 34, 55, 13, 56, 14, 35, 15, 36, 57,
+      37, 58, 16, 59, 17, 38, 18, 39, 60, 40, 61, 19, 62, 20, 41, 63 };
+
+  private static final Sha512Crypt INSTANCE = new Sha512Crypt();
+
+  /**
+   * 
+   * @return the shared instance using the default round configuration and the
+   *         JCA message digests
+   */
+  public static Sha512Crypt getInstance() {
+    return INSTANCE;
+  }
+
   /**
    * the default constructor
    */
@@ -29,6 +52,38 @@ public class Sha512Crypt extends ShaCrypt {
     super(Algorithm.SHA512_CRYPT, roundConfiguration);
   }
 
+  /**
+   * constructor
+   * 
+   * @param digestBackend
+   *          the implementation of the message digests to be used
+   */
+  public Sha512Crypt(DigestBackend digestBackend) {
+    super(Algorithm.SHA512_CRYPT, digestBackend);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param roundConfiguration
+   *          the configuration of round/iteration ranges to be used
+   * @param digestBackend
+   *          the implementation of the message digests to be used
+   */
+  public Sha512Crypt(RoundConfiguration roundConfiguration, DigestBackend digestBackend) {
+    super(Algorithm.SHA512_CRYPT, roundConfiguration, digestBackend);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.impl.ShaCrypt#createNativeDigest()
+   */
+  @Override
+  protected MessageDigest createNativeDigest() {
+    return new Sha512Digest();
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -42,33 +97,21 @@ public class Sha512Crypt extends ShaCrypt {
   /*
    * (non-Javadoc)
    * 
-   * @see me.sniggle.security.digest.impl.ShaCrypt#appendBase64OfHash(java.lang.
-   * StringBuffer, byte[])
+   * @see me.sniggle.security.digest.impl.ShaCrypt#getBlockLength()
+   */
+  @Override
+  protected int getBlockLength() {
+    return 128;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see me.sniggle.security.digest.impl.ShaCrypt#getBase64ByteOrder()
    */
   @Override
-  protected void appendBase64OfHash(StringBuffer result, byte[] finalHash) {
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[0], finalHash[21], finalHash[42], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[22], finalHash[43], finalHash[1], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[44], finalHash[2], finalHash[23], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[3], finalHash[24], finalHash[45], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[25], finalHash[46], finalHash[4], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[47], finalHash[5], finalHash[26], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[6], finalHash[27], finalHash[48], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[28], finalHash[49], finalHash[7], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[50], finalHash[8], finalHash[29], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[9], finalHash[30], finalHash[51], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[31], finalHash[52], finalHash[10], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[53], finalHash[11], finalHash[32], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[12], finalHash[33], finalHash[54], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[34], finalHash[55], finalHash[13], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[56], finalHash[14], finalHash[35], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[15], finalHash[36], finalHash[57], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[37], finalHash[58], finalHash[16], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[59], finalHash[17], finalHash[38], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[18], finalHash[39], finalHash[60], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[40], finalHash[61], finalHash[19], 4));
-    result.append(createBase64EncodedStringFrom3bytes(finalHash[62], finalHash[20], finalHash[41], 4));
-    result.append(createBase64EncodedStringFrom3bytes((byte) 0x00, (byte) 0x00, finalHash[63], 2));
+  protected int[] getBase64ByteOrder() {
+    return BASE_64_BYTE_ORDER;
   }
 
 }
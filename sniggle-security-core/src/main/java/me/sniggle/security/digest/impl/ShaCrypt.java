@@ -1,12 +1,15 @@
 package me.sniggle.security.digest.impl;
 
-import java.io.UnsupportedEncodingException;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
 
 import me.sniggle.security.crypto.config.RoundConfiguration;
 import me.sniggle.security.digest.config.Algorithm;
+import me.sniggle.security.digest.config.DigestBackend;
+import me.sniggle.security.digest.config.ParsedHash;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,14 +24,26 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class ShaCrypt extends BaseHashGenerator {
 
-  private static final Pattern HASH_PATTERN = Pattern
-.compile("^\\$([0-9]+)\\$(rounds=([0-9]+)\\$)?(.+)\\$([a-zA-Z0-9\\./]+)$");
-
   private static final Logger LOGGER = LoggerFactory.getLogger(ShaCrypt.class);
 
-  private static final char[] BASE_64_ENCODING_ARRAY = new char[] { '.', '/', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A',
-      'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
-      'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z' };
+  /**
+   * the scratch buffers of the current thread, one set per backend and
+   * algorithm, so that hashing does not allocate per round or per call once a
+   * thread is warmed up
+   */
+  private static final ThreadLocal<Map<DigestBackend, Map<Algorithm, RoundBuffers>>> ROUND_BUFFERS = new ThreadLocal<Map<DigestBackend, Map<Algorithm, RoundBuffers>>>() {
+    @Override
+    protected Map<DigestBackend, Map<Algorithm, RoundBuffers>> initialValue() {
+      Map<DigestBackend, Map<Algorithm, RoundBuffers>> result = new EnumMap<DigestBackend, Map<Algorithm, RoundBuffers>>(
+          DigestBackend.class);
+      for (DigestBackend backend : DigestBackend.values()) {
+        result.put(backend, new EnumMap<Algorithm, RoundBuffers>(Algorithm.class));
+      }
+      return result;
+    }
+  };
+
+  private final DigestBackend digestBackend;
 
   /**
    * constructor
@@ -37,7 +52,20 @@ public abstract class ShaCrypt extends BaseHashGenerator {
    *          the algorithm to be used
    */
   protected ShaCrypt(Algorithm algorithm) {
+    this(algorithm, DigestBackend.JCA);
+  }
+
+  /**
+   * constructor
+   * 
+   * @param algorithm
+   *          the algorithm to be used
+   * @param digestBackend
+   *          the implementation of the message digests to be used
+   */
+  protected ShaCrypt(Algorithm algorithm, DigestBackend digestBackend) {
     super(algorithm);
+    this.digestBackend = digestBackend;
   }
 
   /**
@@ -49,7 +77,74 @@ public abstract class ShaCrypt extends BaseHashGenerator {
    *          maximum
    */
   protected ShaCrypt(Algorithm algorithm, RoundConfiguration config) {
+    this(algorithm, config, DigestBackend.JCA);
+  }
+
+  /**
+   * 
+   * @param algorithm
+   *          the algorithm to be used
+   * @param config
+   *          the configuration how many rounds shall be used as minimum or
+   *          maximum
+   * @param digestBackend
+   *          the implementation of the message digests to be used
+   */
+  protected ShaCrypt(Algorithm algorithm, RoundConfiguration config, DigestBackend digestBackend) {
     super(algorithm, config);
+    this.digestBackend = digestBackend;
+  }
+
+  /**
+   * 
+   * @return the implementation of the message digests being used
+   */
+  public DigestBackend getDigestBackend() {
+    return digestBackend;
+  }
+
+  /**
+   * provides either the JCA message digest or the built-in implementation,
+   * depending on the configured {@link DigestBackend}
+   * 
+   * @return the message digester instance
+   */
+  @Override
+  protected MessageDigest getMessageDigest() {
+    if (digestBackend == DigestBackend.NATIVE) {
+      return createNativeDigest();
+    }
+    return super.getMessageDigest();
+  }
+
+  /**
+   * 
+   * @return a new instance of the built-in message digest of the algorithm
+   */
+  protected abstract MessageDigest createNativeDigest();
+
+  /**
+   * provides the scratch buffers of the calling thread, creating them on first
+   * use
+   * 
+   * @return the buffers or null if no message digest is available for the
+   *         algorithm
+   */
+  private RoundBuffers getRoundBuffers() {
+    Map<Algorithm, RoundBuffers> buffersByAlgorithm = ROUND_BUFFERS.get().get(digestBackend);
+    RoundBuffers result = buffersByAlgorithm.get(getAlgorithm());
+    if (result == null) {
+      MessageDigest digester = getMessageDigest();
+      MessageDigest alternateDigester = getMessageDigest();
+      if (digester == null || alternateDigester == null) {
+        LOGGER.error("No message digest available for {}", getAlgorithm().alternateName());
+        return null;
+      }
+      MessageDigest midstate = (digester instanceof Sha2Digest) ? getMessageDigest() : null;
+      result = new RoundBuffers(digester, alternateDigester, (Sha2Digest) midstate, getInputBufferLength());
+      buffersByAlgorithm.put(getAlgorithm(), result);
+    }
+    return result;
   }
 
   /**
@@ -58,6 +153,19 @@ public abstract class ShaCrypt extends BaseHashGenerator {
    */
   protected abstract int getInputBufferLength();
 
+  /**
+   * 
+   * @return the block length of the message digest of the algorithm
+   */
+  protected abstract int getBlockLength();
+
+  /**
+   * 
+   * @return the indices of the final hash bytes in the order they are base 64
+   *         encoded, see {@link CryptBase64}
+   */
+  protected abstract int[] getBase64ByteOrder();
+
   /**
    * 
    * @return the prefix used to identify the rounds
@@ -81,25 +189,28 @@ public abstract class ShaCrypt extends BaseHashGenerator {
   /**
    * creates the digest named B in the specification text
    * 
+   * @param digester
+   *          the alternate digester
    * @param plainTextBytes
-   *          the plain text as UTF-8 encoded byte array
+   *          the buffer holding the plain text as UTF-8 encoded bytes
+   * @param plainTextLength
+   *          the number of bytes of the plain text
    * @param saltBytes
    *          the salt as UTF-8 encoded byte array
-   * @return the digest as specified in step 4 of the specification
+   * @param digestB
+   *          the buffer receiving the digest as specified in step 4 of the
+   *          specification
+   * @throws DigestException
+   *           if the buffer is too small to hold the digest
    */
-  private byte[] createDigestB(byte[] plainTextBytes, byte[] saltBytes) {
+  private void createDigestB(MessageDigest digester, byte[] plainTextBytes, int plainTextLength, byte[] saltBytes,
+      byte[] digestB) throws DigestException {
     // step 4
-    MessageDigest digester = getMessageDigest();
-    if (digester != null) {
-      digester.reset();
-      digester.update(plainTextBytes);
-      digester.update(saltBytes);
-      digester.update(plainTextBytes);
-      byte[] result = digester.digest();
-      digester.reset();
-      return result;
-    }
-    return null;
+    digester.reset();
+    digester.update(plainTextBytes, 0, plainTextLength);
+    digester.update(saltBytes);
+    digester.update(plainTextBytes, 0, plainTextLength);
+    digester.digest(digestB, 0, getInputBufferLength());
   }
 
   /**
@@ -108,58 +219,70 @@ public abstract class ShaCrypt extends BaseHashGenerator {
    * @param digester
    *          the main digester
    * @param plainTextBytes
-   *          the plain text as UTF-8 encoded byte array
+   *          the buffer holding the plain text as UTF-8 encoded bytes
+   * @param plainTextLength
+   *          the number of bytes of the plain text
    * @param saltBytes
    *          the salt as UTF-8 encoded byte array
    * @param digestB
    *          the digest B
-   * @return the digest A
+   * @param digestA
+   *          the buffer receiving the digest A
+   * @throws DigestException
+   *           if the buffer is too small to hold the digest
    */
-  private byte[] createDigestA(MessageDigest digester, byte[] plainTextBytes, byte[] saltBytes, byte[] digestB) {
+  private void createDigestA(MessageDigest digester, byte[] plainTextBytes, int plainTextLength, byte[] saltBytes,
+      byte[] digestB, byte[] digestA) throws DigestException {
     int inputBufferLength = getInputBufferLength();
+    digester.reset();
     // step 2
-    digester.update(plainTextBytes);
+    digester.update(plainTextBytes, 0, plainTextLength);
     // step 3
     digester.update(saltBytes);
     // step 9
-    for (int i = plainTextBytes.length / inputBufferLength; i > 0; i--) {
-      digester.update(digestB);
+    for (int i = plainTextLength / inputBufferLength; i > 0; i--) {
+      digester.update(digestB, 0, inputBufferLength);
     }
     // step 10
-    int rest = plainTextBytes.length % inputBufferLength;
+    int rest = plainTextLength % inputBufferLength;
     digester.update(digestB, 0, rest);
     // step 11
     // what happens here?
-    for (int counter = plainTextBytes.length; counter > 0; counter >>= 1) {
+    for (int counter = plainTextLength; counter > 0; counter >>= 1) {
       if ((counter & 1) != 0) {
-        digester.update(digestB);
+        digester.update(digestB, 0, inputBufferLength);
       } else {
-        digester.update(plainTextBytes);
+        digester.update(plainTextBytes, 0, plainTextLength);
       }
     }
     // step 12
-    return digester.digest();
+    digester.digest(digestA, 0, inputBufferLength);
   }
 
   /**
    * creates the digest named DP in the specification
    * 
    * @param digester
-   *          the main digester
+   *          the alternate digester
    * @param plainTextBytes
-   *          the plain text as UTF-8 encoded array
-   * @return the digest DP
+   *          the buffer holding the plain text as UTF-8 encoded bytes
+   * @param plainTextLength
+   *          the number of bytes of the plain text
+   * @param digestDP
+   *          the buffer receiving the digest DP
+   * @throws DigestException
+   *           if the buffer is too small to hold the digest
    */
-  private byte[] createDigestDP(MessageDigest digester, byte[] plainTextBytes) {
+  private void createDigestDP(MessageDigest digester, byte[] plainTextBytes, int plainTextLength, byte[] digestDP)
+      throws DigestException {
     // step 13
     digester.reset();
     // step 14
-    for (@SuppressWarnings("unused")
-    byte b : plainTextBytes) {
-      digester.update(plainTextBytes);
+    for (int i = 0; i < plainTextLength; i++) {
+      digester.update(plainTextBytes, 0, plainTextLength);
     }
     // step 15
-    return digester.digest();
+    digester.digest(digestDP, 0, getInputBufferLength());
   }
 
   /**
@@ -171,41 +294,45 @@ public abstract class ShaCrypt extends BaseHashGenerator {
    *          in bytes
    * @param digestDP
    *          the digest DP
-   * @return the digest P
+   * @param pBytes
+   *          the buffer receiving the digest P, at least plainTextBytesLength
+   *          bytes long
    */
-  private byte[] createPBytes(int plainTextBytesLength, byte[] digestDP) {
+  private void createPBytes(int plainTextBytesLength, byte[] digestDP, byte[] pBytes) {
     int inputBufferLength = getInputBufferLength();
     // Step 16 a)
-    byte[] pBytes = new byte[plainTextBytesLength];
     for (int i = 0; i < (plainTextBytesLength / inputBufferLength); i++) {
       System.arraycopy(digestDP, 0, pBytes, i * inputBufferLength, inputBufferLength);
     }
     // step 16 b)
     System.arraycopy(digestDP, 0, pBytes, inputBufferLength * (plainTextBytesLength / inputBufferLength),
         plainTextBytesLength % inputBufferLength);
-    return pBytes;
   }
 
   /**
    * creates the digest named DS in the specification
    * 
    * @param digester
-   *          the main digester
+   *          the alternate digester
    * @param saltBytes
    *          the salt as UTF-8 encoded byte array
-   * @param firstByteOfDigestB
-   *          the first byte of the digest B
-   * @return the digest DS
+   * @param firstByteOfDigestA
+   *          the first byte of the digest A
+   * @param digestDS
+   *          the buffer receiving the digest DS
+   * @throws DigestException
+   *           if the buffer is too small to hold the digest
    */
-  private byte[] createDigestDS(MessageDigest digester, byte[] saltBytes, byte firstByteOfDigestB) {
+  private void createDigestDS(MessageDigest digester, byte[] saltBytes, byte firstByteOfDigestA, byte[] digestDS)
+      throws DigestException {
     // step 17
     digester.reset();
     // step 18
-    for (int i = 0; i < 16 + (firstByteOfDigestB & 0xFF); ++i) {
+    for (int i = 0; i < 16 + (firstByteOfDigestA & 0xFF); ++i) {
       digester.update(saltBytes);
     }
     // step 19
-    return digester.digest();
+    digester.digest(digestDS, 0, getInputBufferLength());
   }
 
   /**
@@ -216,12 +343,12 @@ public abstract class ShaCrypt extends BaseHashGenerator {
    *          bytes
    * @param digestDS
    *          the digest DS
-   * @return the s byte array
+   * @param sBytes
+   *          the buffer receiving the s bytes, at least saltBytesLength bytes
+   *          long
    */
-  private byte[] createSBytes(int saltBytesLength, byte[] digestDS) {
+  private void createSBytes(int saltBytesLength, byte[] digestDS, byte[] sBytes) {
     int inputBufferLength = getInputBufferLength();
-    // step 20
-    byte[] sBytes = new byte[saltBytesLength];
     // step 20a)
     for (int i = 0; i < (saltBytesLength / inputBufferLength); i++) {
       System.arraycopy(digestDS, 0, sBytes, i * inputBufferLength, inputBufferLength);
@@ -229,38 +356,64 @@ public abstract class ShaCrypt extends BaseHashGenerator {
     // step 20b)
     System.arraycopy(digestDS, 0, sBytes, inputBufferLength * (saltBytesLength / inputBufferLength), saltBytesLength
         % inputBufferLength);
-    return sBytes;
   }
 
   /**
-   * create the final digest, intentionally slowing down the hashing process
+   * create the final digest, intentionally slowing down the hashing process.
+   * every round digests directly into the result buffer, the digester copies
+   * its input before the digest is written so no intermediate arrays are
+   * needed. <br>
+   * <br>
+   * every odd round starts with the p bytes, if these span at least one full
+   * block and a midstate digester is given, the state after compressing those
+   * blocks is computed once and restored instead of compressing them again
    * 
    * @param digester
    *          the main digester
+   * @param midstate
+   *          the digester holding the midstate or null if not supported by
+   *          the backend
    * @param actualRounds
    *          the number rounds used to hash the password
    * @param plainTextBytesLength
    *          the size of the plain text byte array
    * @param saltBytesLength
    *          the size of the salt byte array
-   * @param digesterResult
-   *          the digest to be hashed
+   * @param result
+   *          the digest A on input, the final hash on output
    * @param pBytes
    *          the digest variation based on the plain text
    * @param sBytes
    *          the digest based on the salt
-   * @return the final hash
+   * @return false if the computation has been aborted
+   * @throws DigestException
+   *           if the buffer is too small to hold the digest
    */
-  private byte[] performComputation(MessageDigest digester, int actualRounds, int plainTextBytesLength, int saltBytesLength,
-      byte[] digesterResult, byte[] pBytes, byte[] sBytes) {
+  private boolean performComputation(MessageDigest digester, Sha2Digest midstate, int actualRounds, int plainTextBytesLength,
+      int saltBytesLength, byte[] result, byte[] pBytes, byte[] sBytes) throws DigestException {
     int inputBufferLength = getInputBufferLength();
-    byte[] result = digesterResult;
+    int prefixLength = 0;
+    if (midstate != null) {
+      prefixLength = plainTextBytesLength - plainTextBytesLength % midstate.getBlockLength();
+      if (prefixLength > 0) {
+        midstate.reset();
+        midstate.update(pBytes, 0, prefixLength);
+      }
+    }
     // step 21 use digesterResult as base
     for (int i = 0; i < actualRounds; i++) {
-      digester.reset();
+      if ((i & INTERRUPT_CHECK_MASK) == 0 && isAborted()) {
+        return false;
+      }
       if ((i & 1) != 0) {
-        digester.update(pBytes, 0, plainTextBytesLength);
+        if (prefixLength > 0) {
+          midstate.copyStateTo((Sha2Digest) digester);
+        } else {
+          digester.reset();
+        }
+        digester.update(pBytes, prefixLength, plainTextBytesLength - prefixLength);
       } else {
+        digester.reset();
         digester.update(result, 0, inputBufferLength);
       }
       if (i % 3 != 0) {
@@ -274,14 +427,16 @@ public abstract class ShaCrypt extends BaseHashGenerator {
       } else {
         digester.update(pBytes, 0, plainTextBytesLength);
       }
-      result = digester.digest();
+      digester.digest(result, 0, inputBufferLength);
     }
-    return result;
+    return true;
   }
 
   /**
    * creates the formatted hash value
    * 
+   * @param buffers
+   *          the per-thread buffers of the calling thread
    * @param actualRounds
    *          the number of rounds used to create the hash
    * @param finalHash
@@ -290,43 +445,104 @@ public abstract class ShaCrypt extends BaseHashGenerator {
    *          the salt used to create the hash
    * @return the formatted hash value
    */
-  private String createResultString(int actualRounds, byte[] finalHash, String actualSalt) {
+  private String createResultString(RoundBuffers buffers, int actualRounds, byte[] finalHash, String actualSalt) {
     // step 22
-    StringBuffer result = new StringBuffer(getMagicPrefix());
+    String magicPrefix = getMagicPrefix();
+    String roundPrefix = getRoundPrefix();
+    char[] result = buffers.getResultChars(magicPrefix.length() + roundPrefix.length() + 11 + actualSalt.length() + 1
+        + CryptBase64.getEncodedLength(getInputBufferLength()));
+    int length = append(result, 0, magicPrefix);
     if (actualRounds != getDefaultRoundCount()) {
-      result.append(getRoundPrefix());
-      result.append(actualRounds);
-      result.append('$');
-    }
-    result.append(actualSalt);
-    result.append('$');
-    appendBase64OfHash(result, finalHash);
-    return result.toString();
+      length = append(result, length, roundPrefix);
+      length = appendDecimal(result, length, actualRounds);
+      result[length++] = '$';
+    }
+    length = append(result, length, actualSalt);
+    result[length++] = '$';
+    length = CryptBase64.encode(finalHash, getBase64ByteOrder(), result, length);
+    return new String(result, 0, length);
   }
 
-  protected abstract void appendBase64OfHash(StringBuffer result, byte[] finalHash);
+  /**
+   * copies the characters of the value into the target buffer
+   * 
+   * @param target
+   *          the target buffer
+   * @param offset
+   *          the position to start writing at
+   * @param value
+   *          the value to copy
+   * @return the position after the last written character
+   */
+  private static int append(char[] target, int offset, String value) {
+    value.getChars(0, value.length(), target, offset);
+    return offset + value.length();
+  }
 
   /**
-   * performs base 64 encoding on 3 bytes or 24bits
+   * writes the decimal representation of the non-negative value into the
+   * target buffer
    * 
-   * @param B2
-   *          the first byte
-   * @param B1
-   *          the second byte
-   * @param B0
-   *          the third byte
-   * @param length
-   *          the number of characters in the result string
-   * @return the result string with the length passed in
+   * @param target
+   *          the target buffer
+   * @param offset
+   *          the position to start writing at
+   * @param value
+   *          the non-negative value
+   * @return the position after the last written character
    */
-  protected static final String createBase64EncodedStringFrom3bytes(byte B2, byte B1, byte B0, int length) {
-    int v = (((B2) & 0xFF) << 16) | (((B1) & 0xFF) << 8) | (B0 & 0xff);
-    StringBuilder result = new StringBuilder();
-    while (--length >= 0) {
-      result.append(BASE_64_ENCODING_ARRAY[v & 0x3f]);
-      v >>>= 6;
-    }
-    return result.toString();
+  private static int appendDecimal(char[] target, int offset, int value) {
+    int digits = 1;
+    for (int remaining = value / 10; remaining > 0; remaining /= 10) {
+      digits++;
+    }
+    for (int i = offset + digits - 1; i >= offset; i--) {
+      target[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return offset + digits;
+  }
+
+  /**
+   * computes the final hash of the plain text into the result buffer of the
+   * per-thread buffers
+   * 
+   * @param buffers
+   *          the per-thread buffers of the calling thread
+   * @param plainTextBytes
+   *          the buffer holding the plain text as UTF-8 encoded bytes
+   * @param plainTextLength
+   *          the number of bytes of the plain text
+   * @param saltBytes
+   *          the salt as UTF-8 encoded byte array
+   * @param actualRounds
+   *          the number of rounds
+   * @return the result buffer holding the final hash or null if the
+   *         computation has been aborted
+   * @throws DigestException
+   *           if the buffer is too small to hold the digest
+   */
+  private byte[] computeHash(RoundBuffers buffers, byte[] plainTextBytes, int plainTextLength, byte[] saltBytes,
+      int actualRounds) throws DigestException {
+    MessageDigest digester = buffers.getDigester();
+    MessageDigest alternateDigester = buffers.getAlternateDigester();
+    byte[] digestA = buffers.getResult();
+    byte[] scratch = buffers.getScratch();
+    // steps 4-8
+    createDigestB(alternateDigester, plainTextBytes, plainTextLength, saltBytes, scratch);
+    createDigestA(digester, plainTextBytes, plainTextLength, saltBytes, scratch, digestA);
+    byte[] pBytes = buffers.getPBytes(plainTextLength);
+    createDigestDP(alternateDigester, plainTextBytes, plainTextLength, scratch);
+    createPBytes(plainTextLength, scratch, pBytes);
+    byte[] sBytes = buffers.getSBytes(saltBytes.length);
+    createDigestDS(alternateDigester, saltBytes, digestA[0], scratch);
+    createSBytes(saltBytes.length, scratch, sBytes);
+
+    if (!performComputation(digester, buffers.getMidstate(), actualRounds, plainTextLength, saltBytes.length, digestA,
+        pBytes, sBytes)) {
+      return null;
+    }
+    return digestA;
   }
 
   // END SHA-CRYPT algorithm methods
@@ -334,72 +550,246 @@ public abstract class ShaCrypt extends BaseHashGenerator {
   /*
    * (non-Javadoc)
    * 
-   * @see me.sniggle.security.crypto.CryptoHasher#hashPassword(java.lang.String)
+   * @see
+   * me.sniggle.security.digest.impl.BaseHashGenerator#hashPlainText(byte[],
+   * int, java.lang.String, int)
    */
   @Override
-  public String hashPassword(String plainText) {
-    return hashPassword(plainText, verifySalt(null), getRandomRounds());
+  protected String hashPlainText(byte[] plainText, int length, String salt, int rounds) {
+    try {
+      RoundBuffers buffers = getRoundBuffers();
+      if (buffers != null) {
+        String actualSalt = verifySalt(salt);
+        int actualRounds = verifyRounds(rounds);
+        byte[] finalHash = computeHash(buffers, plainText, length, actualSalt.getBytes(Utf8Buffer.UTF_8), actualRounds);
+        String result = (finalHash == null) ? null : createResultString(buffers, actualRounds, finalHash, actualSalt);
+        buffers.clear();
+        return result;
+      }
+    } catch (DigestException e) {
+      LOGGER.error(e.getMessage());
+    }
+    return null;
   }
 
-  /*
-   * (non-Javadoc)
+  /**
+   * parses $id$[rounds=N$]salt$digest, the salt extending up to the last
+   * dollar sign, and decodes the digest into its raw bytes
    * 
-   * @see me.sniggle.security.crypto.CryptoHasher#hashPassword(java.lang.String,
-   * java.lang.String, int)
+   * @param formattedHash
+   *          the formatted hash value
+   * @return the parsed hash or null if the formatted hash is malformed
    */
   @Override
-  public String hashPassword(String plainText, String salt, int rounds) {
-    if (plainText != null) {
-      try {
-        MessageDigest digester = getMessageDigest();
-        if (digester != null) {
-          digester.reset();
-          MessageDigest alternateDigester = getMessageDigest();
-          alternateDigester.reset();
-          String actualSalt = verifySalt(salt);
-          int actualRounds = verifyRounds(rounds);
-          byte[] plainTextBytes = plainText.getBytes("UTF-8");
-          byte[] saltBytes = actualSalt.getBytes("UTF-8");
-          // steps 4-8
-          byte[] digestB = createDigestB(plainTextBytes, saltBytes);
-          byte[] digestA = createDigestA(digester, plainTextBytes, saltBytes, digestB);
-          byte[] pBytes = createPBytes(plainTextBytes.length, createDigestDP(alternateDigester, plainTextBytes));
-          byte[] sBytes = createSBytes(saltBytes.length, createDigestDS(alternateDigester, saltBytes, digestA[0]));
-
-          //@formatter:off
-          String result = createResultString(actualRounds,
-              performComputation(digester, actualRounds, plainTextBytes.length, saltBytes.length, digestA, pBytes, sBytes),
-              actualSalt);
-          //@formatter:on
-          digester.reset();
-          return result;
-        }
-      } catch (UnsupportedEncodingException e) {
-        LOGGER.error(e.getMessage());
+  public ParsedHash parseHash(String formattedHash) {
+    String magicPrefix = getMagicPrefix();
+    if (formattedHash == null || !formattedHash.startsWith(magicPrefix)) {
+      return null;
+    }
+    int position = magicPrefix.length();
+    int rounds = getDefaultRoundCount();
+    String roundPrefix = getRoundPrefix();
+    if (formattedHash.startsWith(roundPrefix, position)) {
+      position += roundPrefix.length();
+      int end = formattedHash.indexOf('$', position);
+      rounds = parseDecimal(formattedHash, position, (end < 0) ? position : end);
+      if (rounds < 0) {
+        LOGGER.info("Invalid number of rounds in hash");
+        return null;
       }
-    } else {
-      LOGGER.info("No text to hash provided!");
+      position = end + 1;
     }
-    return null;
+    int digestStart = formattedHash.lastIndexOf('$') + 1;
+    if (digestStart - 1 <= position) {
+      return null;
+    }
+    byte[] digest = new byte[getInputBufferLength()];
+    if (!CryptBase64.decode(formattedHash, digestStart, formattedHash.length() - digestStart, getBase64ByteOrder(), digest)) {
+      return null;
+    }
+    return new ParsedHash(getAlgorithm(), rounds, formattedHash.substring(position, digestStart - 1), digest, formattedHash);
   }
 
-  /* (non-Javadoc)
-   * @see me.sniggle.security.crypto.CryptoHasher#verifyHash(java.lang.String, java.lang.String)
+  /**
+   * verifies the plain text against the parsed hash by recomputing the raw
+   * digest and comparing it in constant time, no formatted hash string is
+   * built
+   * 
+   * @param plainText
+   *          the buffer holding the UTF-8 encoded plain text
+   * @param length
+   *          the number of bytes of the plain text
+   * @param parsedHash
+   *          the parsed hash, verifiable by this instance
+   * @return true if the plain text matches the hash
    */
   @Override
-  public boolean verifyHash(String plainText, String hash) {
+  protected boolean verifyPlainText(byte[] plainText, int length, ParsedHash parsedHash) {
     boolean result = false;
-    if (plainText != null && hash != null) {
-      Matcher matcher = HASH_PATTERN.matcher(hash);
-      if (matcher.matches()) {
-        if (getHashTypeCode().equals(matcher.group(1))) {
-          int rounds = (matcher.group(2) == null) ? getDefaultRoundCount() : Integer.valueOf(matcher.group(3));
-          String salt = matcher.group(4);
-          return hash.equals(hashPassword(plainText, salt, rounds));
-        }
+    RoundBuffers buffers = getRoundBuffers();
+    if (buffers != null) {
+      try {
+        result = parsedHash.matchesDigest(computeHash(buffers, plainText, length,
+            parsedHash.getSalt().getBytes(Utf8Buffer.UTF_8), parsedHash.getRounds()));
+      } catch (DigestException e) {
+        LOGGER.error(e.getMessage());
       }
+      buffers.clear();
     }
     return result;
   }
 
+  /**
+   * estimates the blocks compressed by the steps of the specification. The
+   * digest DP processes the password once per byte of the password, hence its
+   * cost grows quadratically with the length of the password, and every round
+   * processes the password up to twice
+   * 
+   * @param passwordLength
+   *          the length of the plain text in UTF-8 encoded bytes
+   * @param saltLength
+   *          the length of the salt in UTF-8 encoded bytes
+   * @param rounds
+   *          the number of rounds
+   * @return the estimated number of compressed blocks
+   */
+  @Override
+  public long estimateCost(int passwordLength, int saltLength, int rounds) {
+    int blockLength = getBlockLength();
+    int digestLength = getInputBufferLength();
+    // digest B
+    long result = getBlockCount(2L * passwordLength + saltLength, blockLength);
+    // digest A
+    long lengthA = 2L * passwordLength + saltLength;
+    for (int counter = passwordLength; counter > 0; counter >>= 1) {
+      lengthA += ((counter & 1) != 0) ? digestLength : passwordLength;
+    }
+    result += getBlockCount(lengthA, blockLength);
+    // digest DP
+    result += getBlockCount((long) passwordLength * passwordLength, blockLength);
+    // digest DS, the salt is repeated 16 + A[0] times, 144 times on average
+    result += getBlockCount(144L * saltLength, blockLength);
+    // the input of the rounds repeats every 42 rounds
+    long cycleCost = 0;
+    long restCost = 0;
+    int rest = Math.max(rounds, 0) % 42;
+    for (int i = 0; i < 42; i++) {
+      long length = digestLength + passwordLength + ((i % 3 != 0) ? saltLength : 0) + ((i % 7 != 0) ? passwordLength : 0);
+      long blocks = getBlockCount(length, blockLength);
+      cycleCost += blocks;
+      if (i < rest) {
+        restCost += blocks;
+      }
+    }
+    return result + (Math.max(rounds, 0) / 42) * cycleCost + restCost;
+  }
+
+  /**
+   * holds the digesters and scratch buffers of a single thread for a single
+   * algorithm. the plain text and salt dependent buffers grow on demand and
+   * are kept for subsequent calls
+   * 
+   * @author iulius
+   * @since 0.0.1
+   * 
+   */
+  private static final class RoundBuffers {
+
+    private final MessageDigest digester;
+    private final MessageDigest alternateDigester;
+    private final Sha2Digest midstate;
+    private final byte[] result;
+    private final byte[] scratch;
+    private byte[] pBytes = new byte[0];
+    private byte[] sBytes = new byte[0];
+    private char[] resultChars = new char[0];
+
+    /**
+     * constructor
+     * 
+     * @param digester
+     *          the main digester
+     * @param alternateDigester
+     *          the digester used for the intermediate digests
+     * @param midstate
+     *          the digester holding the precomputed midstate of the p bytes
+     *          or null if the backend does not support midstates
+     * @param inputBufferLength
+     *          the digest length of the algorithm
+     */
+    RoundBuffers(MessageDigest digester, MessageDigest alternateDigester, Sha2Digest midstate, int inputBufferLength) {
+      super();
+      this.digester = digester;
+      this.alternateDigester = alternateDigester;
+      this.midstate = midstate;
+      this.result = new byte[inputBufferLength];
+      this.scratch = new byte[inputBufferLength];
+    }
+
+    MessageDigest getDigester() {
+      return digester;
+    }
+
+    MessageDigest getAlternateDigester() {
+      return alternateDigester;
+    }
+
+    Sha2Digest getMidstate() {
+      return midstate;
+    }
+
+    /**
+     * 
+     * @return the buffer holding the digest A and the final hash
+     */
+    byte[] getResult() {
+      return result;
+    }
+
+    /**
+     * 
+     * @return the buffer holding the intermediate digests B, DP and DS
+     */
+    byte[] getScratch() {
+      return scratch;
+    }
+
+    byte[] getPBytes(int length) {
+      if (pBytes.length < length) {
+        pBytes = new byte[length];
+      }
+      return pBytes;
+    }
+
+    byte[] getSBytes(int length) {
+      if (sBytes.length < length) {
+        sBytes = new byte[length];
+      }
+      return sBytes;
+    }
+
+    char[] getResultChars(int length) {
+      if (resultChars.length < length) {
+        resultChars = new char[length];
+      }
+      return resultChars;
+    }
+
+    /**
+     * wipes the password dependent buffers and resets the digesters
+     */
+    void clear() {
+      digester.reset();
+      alternateDigester.reset();
+      if (midstate != null) {
+        midstate.reset();
+      }
+      Arrays.fill(result, (byte) 0);
+      Arrays.fill(scratch, (byte) 0);
+      Arrays.fill(pBytes, (byte) 0);
+      Arrays.fill(sBytes, (byte) 0);
+    }
+
+  }
+
 }
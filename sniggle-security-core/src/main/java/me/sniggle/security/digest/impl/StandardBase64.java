@@ -0,0 +1,187 @@
+package me.sniggle.security.digest.impl;
+
+/**
+ * Encoder and decoder of the standard base 64 alphabet (RFC 4648) with
+ * padding, as used by the JASYPT digesters, or without padding, as used by the
+ * PHC string format. The adapted variant without padding replaces '+' by '.',
+ * as used by the PBKDF2 hashes of passlib
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class StandardBase64 {
+
+  private static final char[] ENCODING_TABLE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+      .toCharArray();
+
+  private static final byte[] DECODING_TABLE = new byte[128];
+
+  static {
+    for (int i = 0; i < DECODING_TABLE.length; i++) {
+      DECODING_TABLE[i] = -1;
+    }
+    for (int i = 0; i < ENCODING_TABLE.length; i++) {
+      DECODING_TABLE[ENCODING_TABLE[i]] = (byte) i;
+    }
+  }
+
+  private StandardBase64() {
+    super();
+  }
+
+  /**
+   * encodes the bytes including the padding, without line breaks
+   * 
+   * @param source
+   *          the bytes to encode
+   * @return the encoded characters
+   */
+  static String encode(byte[] source) {
+    char[] result = new char[(source.length + 2) / 3 * 4];
+    int position = 0;
+    for (int i = 0; i < source.length; i += 3) {
+      int remaining = source.length - i;
+      int v = (source[i] & 0xFF) << 16;
+      if (remaining > 1) {
+        v |= (source[i + 1] & 0xFF) << 8;
+      }
+      if (remaining > 2) {
+        v |= source[i + 2] & 0xFF;
+      }
+      result[position++] = ENCODING_TABLE[(v >>> 18) & 0x3F];
+      result[position++] = ENCODING_TABLE[(v >>> 12) & 0x3F];
+      result[position++] = (remaining > 1) ? ENCODING_TABLE[(v >>> 6) & 0x3F] : '=';
+      result[position++] = (remaining > 2) ? ENCODING_TABLE[v & 0x3F] : '=';
+    }
+    return new String(result);
+  }
+
+  /**
+   * encodes the bytes without padding and line breaks
+   * 
+   * @param source
+   *          the bytes to encode
+   * @return the encoded characters
+   */
+  static String encodeUnpadded(byte[] source) {
+    String result = encode(source);
+    int end = result.length();
+    while (end > 0 && result.charAt(end - 1) == '=') {
+      end--;
+    }
+    return result.substring(0, end);
+  }
+
+  /**
+   * encodes the bytes without padding using '.' instead of '+'
+   * 
+   * @param source
+   *          the bytes to encode
+   * @return the encoded characters
+   */
+  static String encodeAdapted(byte[] source) {
+    return encodeUnpadded(source).replace('+', '.');
+  }
+
+  /**
+   * decodes the base 64 characters given without padding and with '.' instead
+   * of '+'
+   * 
+   * @param source
+   *          the encoded characters
+   * @param offset
+   *          the position of the first encoded character
+   * @param length
+   *          the number of encoded characters
+   * @return the decoded bytes or null if the characters are no valid encoding
+   */
+  static byte[] decodeAdapted(CharSequence source, int offset, int length) {
+    StringBuilder standard = new StringBuilder(length);
+    for (int i = offset; i < offset + length; i++) {
+      char c = source.charAt(i);
+      if (c == '+') {
+        return null;
+      }
+      standard.append((c == '.') ? '+' : c);
+    }
+    return decodeUnpadded(standard, 0, length);
+  }
+
+  /**
+   * decodes the base 64 characters given without padding
+   * 
+   * @param source
+   *          the encoded characters
+   * @param offset
+   *          the position of the first encoded character
+   * @param length
+   *          the number of encoded characters
+   * @return the decoded bytes or null if the characters are no valid encoding
+   */
+  static byte[] decodeUnpadded(CharSequence source, int offset, int length) {
+    if (length % 4 == 1) {
+      return null;
+    }
+    StringBuilder padded = new StringBuilder(length + 2);
+    for (int i = offset; i < offset + length; i++) {
+      char c = source.charAt(i);
+      if (c == '=') {
+        return null;
+      }
+      padded.append(c);
+    }
+    while (padded.length() % 4 != 0) {
+      padded.append('=');
+    }
+    return decode(padded, 0, padded.length());
+  }
+
+  /**
+   * decodes the padded base 64 characters
+   * 
+   * @param source
+   *          the encoded characters
+   * @param offset
+   *          the position of the first encoded character
+   * @param length
+   *          the number of encoded characters, including the padding
+   * @return the decoded bytes or null if the characters are no valid encoding
+   */
+  static byte[] decode(CharSequence source, int offset, int length) {
+    if (length == 0 || length % 4 != 0) {
+      return null;
+    }
+    int padding = 0;
+    if (source.charAt(offset + length - 1) == '=') {
+      padding = (source.charAt(offset + length - 2) == '=') ? 2 : 1;
+    }
+    byte[] result = new byte[length / 4 * 3 - padding];
+    int position = 0;
+    for (int i = offset; i < offset + length; i += 4) {
+      int v = 0;
+      for (int j = 0; j < 4; j++) {
+        char c = source.charAt(i + j);
+        int value;
+        if (c == '=' && i + 4 == offset + length && j >= 4 - padding) {
+          value = 0;
+        } else {
+          value = (c < DECODING_TABLE.length) ? DECODING_TABLE[c] : -1;
+          if (value < 0) {
+            return null;
+          }
+        }
+        v = (v << 6) | value;
+      }
+      result[position++] = (byte) (v >>> 16);
+      if (position < result.length) {
+        result[position++] = (byte) (v >>> 8);
+      }
+      if (position < result.length) {
+        result[position++] = (byte) v;
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,109 @@
+package me.sniggle.security.digest.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * A per-thread buffer receiving the UTF-8 encoding of a plain text, so that
+ * hashing neither looks up the charset by name nor allocates a byte array per
+ * call. The encoder replaces malformed input like
+ * {@link String#getBytes(Charset)} does. <br>
+ * <br>
+ * the buffer has to be cleared once the encoded bytes have been consumed,
+ * this overwrites them with zeros
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+final class Utf8Buffer {
+
+  /**
+   * the charset looked up once
+   */
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final ThreadLocal<Utf8Buffer> BUFFERS = new ThreadLocal<Utf8Buffer>() {
+    @Override
+    protected Utf8Buffer initialValue() {
+      return new Utf8Buffer();
+    }
+  };
+
+  private final CharsetEncoder encoder = UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private byte[] bytes = new byte[0];
+  private ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+  private int length;
+
+  private Utf8Buffer() {
+    super();
+  }
+
+  /**
+   * encodes the characters into the buffer of the calling thread without
+   * changing the position of the characters if they are a {@link CharBuffer}
+   * 
+   * @param plainText
+   *          the characters to encode
+   * @return the buffer of the calling thread holding the encoded bytes
+   */
+  static Utf8Buffer encode(CharSequence plainText) {
+    Utf8Buffer result = BUFFERS.get();
+    result.encodeCharacters(plainText);
+    return result;
+  }
+
+  private void encodeCharacters(CharSequence plainText) {
+    CharBuffer in = (plainText instanceof CharBuffer) ? ((CharBuffer) plainText).duplicate() : CharBuffer
+        .wrap(plainText);
+    int capacity = (int) Math.ceil(in.remaining() * (double) encoder.maxBytesPerChar());
+    if (bytes.length < capacity) {
+      Arrays.fill(bytes, (byte) 0);
+      bytes = new byte[capacity];
+      byteBuffer = ByteBuffer.wrap(bytes);
+    }
+    byteBuffer.clear();
+    encoder.reset();
+    CoderResult coderResult = encoder.encode(in, byteBuffer, true);
+    if (coderResult.isUnderflow()) {
+      coderResult = encoder.flush(byteBuffer);
+    }
+    if (!coderResult.isUnderflow()) {
+      // cannot happen, the capacity covers the longest encoding
+      throw new IllegalStateException("The UTF-8 encoding exceeds the buffer: " + coderResult);
+    }
+    length = byteBuffer.position();
+  }
+
+  /**
+   * 
+   * @return the buffer holding the encoded bytes from index 0 to
+   *         {@link #getLength()}
+   */
+  byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * 
+   * @return the number of encoded bytes
+   */
+  int getLength() {
+    return length;
+  }
+
+  /**
+   * wipes the encoded bytes
+   */
+  void clear() {
+    Arrays.fill(bytes, 0, length, (byte) 0);
+    length = 0;
+  }
+
+}
@@ -3,16 +3,22 @@
  */
 package me.sniggle.security.salt;
 
-import org.jasypt.salt.SaltGenerator;
-
 /**
- * extends the {@link SaltGenerator} interface in order to allow the retrieval
- * of the used Salt string
+ * provides the salts of hashes and allows the retrieval of the used salt
+ * string
  * 
  * @author iulius
  * 
  */
-public interface SaltProvider extends SaltGenerator {
+public interface SaltProvider {
+
+  /**
+   * 
+   * @param lengthBytes
+   *          the requested length of the salt
+   * @return the encoded salt
+   */
+  public abstract byte[] generateSalt(int lengthBytes);
 
   /**
    * 
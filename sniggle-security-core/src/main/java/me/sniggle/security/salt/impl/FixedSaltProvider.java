@@ -28,21 +28,13 @@ public class FixedSaltProvider implements SaltProvider {
   }
 
   /* (non-Javadoc)
-   * @see org.jasypt.salt.SaltGenerator#generateSalt(int)
+   * @see me.sniggle.security.salt.SaltProvider#generateSalt(int)
    */
   @Override
   public byte[] generateSalt(int lengthBytes) {
     return salt.getBytes();
   }
 
-  /* (non-Javadoc)
-   * @see org.jasypt.salt.SaltGenerator#includePlainSaltInEncryptionResults()
-   */
-  @Override
-  public boolean includePlainSaltInEncryptionResults() {
-    return false;
-  }
-
   /* (non-Javadoc)
    * @see me.sniggle.security.salt.SaltProvider#getSaltString()
    */
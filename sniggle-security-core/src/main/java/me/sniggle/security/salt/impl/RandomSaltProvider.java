@@ -18,6 +18,7 @@ public class RandomSaltProvider implements SaltProvider {
   private static final char[] SALTCHARS = new char[] { 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p',
       'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O',
       'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z', '1', '2', '3', '4', '5', '6', '7', '8', '9', '0' };
+  private static final SecureRandom RANDOM = new SecureRandom();
   private final int minSaltLength;
   private final int maxSaltLength;
   private String lastGeneratedSalt;
@@ -48,7 +49,7 @@ public class RandomSaltProvider implements SaltProvider {
    */
   private String createSalt(int minLength, int maxLength) {
     StringBuffer salt = new StringBuffer();
-    SecureRandom random = new SecureRandom();
+    SecureRandom random = RANDOM;
     int length;
     if (maxLength > minLength) {
       length = random.nextInt(maxLength - minLength) + minLength;
@@ -63,7 +64,7 @@ public class RandomSaltProvider implements SaltProvider {
   }
 
   /* (non-Javadoc)
-   * @see org.jasypt.salt.SaltGenerator#generateSalt(int)
+   * @see me.sniggle.security.salt.SaltProvider#generateSalt(int)
    */
   @Override
   public byte[] generateSalt(int lengthBytes) {
@@ -75,14 +76,6 @@ public class RandomSaltProvider implements SaltProvider {
     }
   }
 
-  /* (non-Javadoc)
-   * @see org.jasypt.salt.SaltGenerator#includePlainSaltInEncryptionResults()
-   */
-  @Override
-  public boolean includePlainSaltInEncryptionResults() {
-    return false;
-  }
-
   /*
    * (non-Javadoc)
    * 
@@ -0,0 +1,98 @@
+package me.sniggle.security.digest.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.ParsedHash;
+
+import org.junit.Test;
+
+/**
+ * Known answer tests of {@link Argon2idHashGenerator} using the Argon2id test
+ * vector of RFC 9106 and the encoded hashes of the reference implementation
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class Argon2idHashGeneratorTest {
+
+  /**
+   * plain text, base 64 encoded salt, passes, memory cost, parallelism and
+   * expected hash
+   */
+  private static final Object[][] VECTORS = {
+      { "password", "c29tZXNhbHQ", 2, 65536, 1,
+          "$argon2id$v=19$m=65536,t=2,p=1$c29tZXNhbHQ$CTFhFdXPJO1aFaMaO6Mm5c8y7cJHAph8ArZWb2GRPPc" },
+      { "password", "c29tZXNhbHQ", 2, 256, 1,
+          "$argon2id$v=19$m=256,t=2,p=1$c29tZXNhbHQ$nf65EOgLrQMR/uIPnA4rEsF5h7TKyQwu9U1bMCHGi/4" },
+      { "password", "c29tZXNhbHQ", 2, 256, 2,
+          "$argon2id$v=19$m=256,t=2,p=2$c29tZXNhbHQ$bQk8UB/VmZZF4Oo79iDXuL5/0ttZwg2f/5U52iv1cDc" },
+      { "password", "c29tZXNhbHQ", 1, 65536, 1,
+          "$argon2id$v=19$m=65536,t=1,p=1$c29tZXNhbHQ$9qWtwbpyPd3vm1rB1GThgPzZ3/ydHL92zKL+15XZypg" },
+      { "password", "c29tZXNhbHQ", 4, 65536, 1,
+          "$argon2id$v=19$m=65536,t=4,p=1$c29tZXNhbHQ$kCXUjmjvc5XMqQedpMTsOv+zyJEf5PhtGiUghW9jFyw" },
+      { "differentpassword", "c29tZXNhbHQ", 2, 65536, 1,
+          "$argon2id$v=19$m=65536,t=2,p=1$c29tZXNhbHQ$C4TWUs9rDEvq7w3+J4umqA32aWKB1+DSiRuBfYxFj94" },
+      { "password", "ZGlmZnNhbHQ", 2, 65536, 1,
+          "$argon2id$v=19$m=65536,t=2,p=1$ZGlmZnNhbHQ$vfMrBczELrFdWP0ZsfhWsRPaHppYdP3MVEMIVlqoFBw" } };
+
+  @Test
+  public void testRfc9106() {
+    byte[] password = filled(32, 0x01);
+    int memoryCost = 32;
+    int passes = 3;
+    int lanes = 4;
+    Argon2 argon2 = new Argon2(new long[Argon2.getMemoryBlocks(memoryCost, lanes) * Argon2.BLOCK_WORDS], memoryCost,
+        passes, lanes);
+    argon2.initialize(password, password.length, filled(16, 0x02), filled(8, 0x03), filled(12, 0x04), 32);
+    for (int pass = 0; pass < passes; pass++) {
+      for (int slice = 0; slice < Argon2.SYNC_POINTS; slice++) {
+        for (int lane = 0; lane < lanes; lane++) {
+          argon2.fillSegment(pass, slice, lane);
+        }
+      }
+    }
+    byte[] tag = new byte[32];
+    argon2.finish(tag);
+    assertArrayEquals(new byte[] { (byte) 0x0d, (byte) 0x64, (byte) 0x0d, (byte) 0xf5, (byte) 0x8d, (byte) 0x78,
+        (byte) 0x76, (byte) 0x6c, (byte) 0x08, (byte) 0xc0, (byte) 0x37, (byte) 0xa3, (byte) 0x4a, (byte) 0x8b,
+        (byte) 0x53, (byte) 0xc9, (byte) 0xd0, (byte) 0x1e, (byte) 0xf0, (byte) 0x45, (byte) 0x2d, (byte) 0x75,
+        (byte) 0xb6, (byte) 0x5e, (byte) 0xb5, (byte) 0x25, (byte) 0x20, (byte) 0xe9, (byte) 0x6b, (byte) 0x01,
+        (byte) 0xe6, (byte) 0x59 }, tag);
+  }
+
+  @Test
+  public void testReferenceHashes() {
+    for (Object[] vector : VECTORS) {
+      String plainText = (String) vector[0];
+      String expected = (String) vector[5];
+      Argon2idHashGenerator hashGenerator = new Argon2idHashGenerator(new RoundConfiguration(1, 10),
+          ((Integer) vector[3]).intValue(), ((Integer) vector[4]).intValue());
+      assertEquals(expected,
+          hashGenerator.hashPassword(plainText, (String) vector[1], ((Integer) vector[2]).intValue()));
+      assertTrue(expected, Argon2idHashGenerator.getInstance().verifyHash(plainText, expected));
+      assertFalse(expected, Argon2idHashGenerator.getInstance().verifyHash(plainText + "!", expected));
+    }
+  }
+
+  @Test
+  public void testParsedParameters() {
+    ParsedHash parsedHash = Argon2idHashGenerator.getInstance().parseHash((String) VECTORS[2][5]);
+    assertEquals(2, parsedHash.getRounds());
+    assertEquals(256, parsedHash.getMemoryCost());
+    assertEquals(2, parsedHash.getParallelism());
+  }
+
+  private static byte[] filled(int length, int value) {
+    byte[] result = new byte[length];
+    Arrays.fill(result, (byte) value);
+    return result;
+  }
+
+}
@@ -0,0 +1,63 @@
+package me.sniggle.security.digest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.Algorithm;
+
+import org.junit.Test;
+
+/**
+ * Known answer tests of {@link BcryptHashGenerator} using the test vectors of
+ * jBCrypt, which libxcrypt reproduces, and a $2b$ hash of libxcrypt
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class BcryptHashGeneratorTest {
+
+  private static final RoundConfiguration COST = new RoundConfiguration(4, 31);
+
+  /**
+   * plain text and expected hash
+   */
+  private static final String[][] VECTORS = {
+      { "", "$2a$06$DCq7YPn5Rq63x1Lad4cll.TV4S6ytwfsfvkgY8jIucDrjc8deX1s." },
+      { "", "$2a$08$HqWuK6/Ng6sg9gQzbLrgb.Tl.ZHfXLhvt/SgVyWhQqgqcZ7ZuUtye" },
+      { "", "$2a$10$k1wbIrmNyFAPwPVPSVa/zecw2BCEnBwVS2GbrmgzxFUOqW9dk4TCW" },
+      { "a", "$2a$06$m0CrhHm10qJ3lXRY.5zDGO3rS2KdeeWLuGmsfGlMfOxih58VYVfxe" },
+      { "a", "$2a$08$cfcvVd2aQ8CMvoMpP2EBfeodLEkkFJ9umNEfPD18.hUF62qqlC/V." },
+      { "a", "$2a$10$k87L/MF28Q673VKh8/cPi.SUl7MU/rWuSiIDDFayrKk/1tBsSQu4u" },
+      { "abc", "$2a$06$If6bvum7DFjUnE9p2uDeDu0YHzrHM6tf.iqN8.yx.jNN1ILEf7h0i" },
+      { "abc", "$2a$08$Ro0CUfOqk6cXEKf3dyaM7OhSCvnwM9s4wIX9JeLapehKK5YdLxKcm" },
+      { "abcdefghijklmnopqrstuvwxyz", "$2a$06$.rCVZVOThsIa97pEDOxvGuRRgzG64bvtJ0938xuqzv18d3ZpQhstC" },
+      { "abcdefghijklmnopqrstuvwxyz", "$2a$08$aTsUwsyowQuzRrDqFflhgekJ8d9/7Z3GV3UcgvzQW3J5zMyrTvlz." },
+      { "~!@#$%^&*()      ~!@#$%^&*()PNBFRD", "$2a$06$fPIsBO8qRqkjj273rfaOI.HtSV9jLDpTbZn782DC6/t7qT67P6FfO" },
+      { "~!@#$%^&*()      ~!@#$%^&*()PNBFRD", "$2a$08$Eq2r4G/76Wv39MzSX262huzPz612MZiYHVUJe/OcOql2jo4.9UxTW" } };
+
+  @Test
+  public void testBcrypt2a() {
+    assertVectors(new BcryptHashGenerator(Algorithm.BCRYPT_2A, COST), VECTORS);
+  }
+
+  @Test
+  public void testBcrypt2b() {
+    assertVectors(new BcryptHashGenerator(Algorithm.BCRYPT_2B, COST), new String[][] { { "password",
+        "$2b$06$DCq7YPn5Rq63x1Lad4cll.kD3zZ845LsvMekyowTQk2VNmbDdQsWO" } });
+  }
+
+  private static void assertVectors(BcryptHashGenerator hashGenerator, String[][] vectors) {
+    for (String[] vector : vectors) {
+      String plainText = vector[0];
+      String expected = vector[1];
+      int cost = Integer.parseInt(expected.substring(4, 6));
+      assertEquals(expected, hashGenerator.hashPassword(plainText, expected.substring(7, 29), cost));
+      assertTrue(expected, hashGenerator.verifyHash(plainText, expected));
+      assertFalse(expected, hashGenerator.verifyHash(plainText + "!", expected));
+    }
+  }
+
+}
@@ -0,0 +1,89 @@
+package me.sniggle.security.digest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+
+import org.junit.Test;
+
+/**
+ * Known answer tests of {@link Pbkdf2Sha256} and {@link Pbkdf2Sha512}, the
+ * expected hashes being the derived keys of Python's hashlib.pbkdf2_hmac in
+ * the format of passlib, including the example of the passlib documentation
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class Pbkdf2HashGeneratorTest {
+
+  private static final RoundConfiguration ROUNDS = new RoundConfiguration(1, 1000000);
+
+  private static final String LONG_SALT = "c2FsdFNBTFRzYWx0U0FMVHNhbHRTQUxUc2FsdFNBTFRzYWx0";
+
+  /**
+   * plain text, adapted base 64 encoded salt, iterations and expected hash
+   */
+  private static final Object[][] SHA256_VECTORS = {
+      { "password", "c2FsdHNhbHQ", 1, "$pbkdf2-sha256$1$c2FsdHNhbHQ$O.xIxXdlOv3CQzuTp9jujq55iV7ZO/Yn6XZ0x/Rfikw" },
+      { "password", "c2FsdHNhbHQ", 2, "$pbkdf2-sha256$2$c2FsdHNhbHQ$j0Xr2TDUGb2ExAqHE9c43F1b6VtmN1HehzWI9wkQpsQ" },
+      { "passwordPASSWORDpassword", LONG_SALT, 4096,
+          "$pbkdf2-sha256$4096$" + LONG_SALT + "$NIyJ28vTKy8y2BS4EW6EzysXNH68GAAYHE4qH7jdU.E" },
+      { repeat('x', 65), "c29tZXNhbHRzb21lc2FsdA", 1000,
+          "$pbkdf2-sha256$1000$c29tZXNhbHRzb21lc2FsdA$Eb0p5XTYGzqxOjw4TbkxSa7Q40qn908MwModJQni7lU" },
+      { "pässwörd", "c29tZXNhbHRzb21lc2FsdA", 1000,
+          "$pbkdf2-sha256$1000$c29tZXNhbHRzb21lc2FsdA$jOlQU9.9bbyVpM8CLNv12wq580k2L30cdtb4bMHYV2k" },
+      { "password", "0ZrzXitFSGltTQnBWOsdAw", 6400,
+          "$pbkdf2-sha256$6400$0ZrzXitFSGltTQnBWOsdAw$Y11AchqV4b0sUisdZd0Xr97KWoymNE0LNNrnEgY4H9M" } };
+
+  /**
+   * plain text, adapted base 64 encoded salt, iterations and expected hash
+   */
+  private static final Object[][] SHA512_VECTORS = {
+      { "password", "c2FsdHNhbHQ", 1, "$pbkdf2-sha512$1$c2FsdHNhbHQ$y99Aqyh.xt2ovbJvGRltovGpWf8SfKJATk5ELfdRhS"
+          + "twvGAd6YSOUD0tNyMyqMpAiaYf7puolRhDkqtkfsdXOA" },
+      { "passwordPASSWORDpassword", LONG_SALT, 4096, "$pbkdf2-sha512$4096$" + LONG_SALT
+          + "$jAUR9Mbll8asYxXY8DYuIl88UBSVuiO4aMAFF03E7nERW1n55gzZUy.jPg91rv4wIlxYOhhs2CvU2uqXJKPTuA" },
+      { repeat('y', 129), "c29tZXNhbHRzb21lc2FsdA", 1000, "$pbkdf2-sha512$1000$c29tZXNhbHRzb21lc2FsdA$NLNI9H07F2nZF"
+          + "C7R2RpmDIuTtvNlkAdoiDV2I4LS8xXh9F750JI4xd0f54VIVsV7cKtzxPKc1a.ixlUe0udN.g" } };
+
+  @Test
+  public void testPbkdf2Sha256() {
+    assertVectors(new Pbkdf2Sha256(ROUNDS), SHA256_VECTORS);
+  }
+
+  @Test
+  public void testPbkdf2Sha512() {
+    assertVectors(new Pbkdf2Sha512(ROUNDS), SHA512_VECTORS);
+  }
+
+  @Test
+  public void testSingleIterationCount() {
+    Pbkdf2Sha256 hashGenerator = new Pbkdf2Sha256(new RoundConfiguration(5000, 5000));
+    String hash = hashGenerator.hashPassword("password");
+    assertTrue(hash, hash.startsWith("$pbkdf2-sha256$5000$"));
+    assertTrue(hash, hashGenerator.verifyHash("password", hash));
+  }
+
+  private static void assertVectors(Pbkdf2HashGenerator hashGenerator, Object[][] vectors) {
+    for (Object[] vector : vectors) {
+      String plainText = (String) vector[0];
+      String expected = (String) vector[3];
+      assertEquals(expected,
+          hashGenerator.hashPassword(plainText, (String) vector[1], ((Integer) vector[2]).intValue()));
+      assertTrue(expected, hashGenerator.verifyHash(plainText, expected));
+      assertFalse(expected, hashGenerator.verifyHash(plainText + "!", expected));
+    }
+  }
+
+  private static String repeat(char c, int count) {
+    char[] result = new char[count];
+    Arrays.fill(result, c);
+    return new String(result);
+  }
+
+}
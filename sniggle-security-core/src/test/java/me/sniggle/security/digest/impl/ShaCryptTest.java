@@ -0,0 +1,103 @@
+package me.sniggle.security.digest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import me.sniggle.security.crypto.config.RoundConfiguration;
+import me.sniggle.security.digest.config.DigestBackend;
+
+import org.junit.Test;
+
+/**
+ * Known answer tests of {@link Sha256Crypt} and {@link Sha512Crypt} using the
+ * test vectors of the SHA-crypt specification, as computed by glibc, with
+ * both digest backends
+ * 
+ * @author iulius
+ * @since 0.0.1
+ * 
+ */
+public class ShaCryptTest {
+
+  private static final RoundConfiguration ROUNDS = new RoundConfiguration(1000, 999999999);
+
+  /**
+   * plain text, salt, rounds and expected hash
+   */
+  private static final Object[][] SHA256_VECTORS = {
+      { "Hello world!", "saltstring", 5000, "$5$saltstring$5B8vYYiY.CVt1RlTTf8KbXBH3hsxY/GNooZaBBGWEc5" },
+      { "Hello world!", "saltstringsaltstring", 10000,
+          "$5$rounds=10000$saltstringsaltst$3xv.VbSHBb41AL9AvLeujZkZRBAwqFMz2.opqey6IcA" },
+      { "This is just a test", "toolongsaltstring", 5000,
+          "$5$rounds=5000$toolongsaltstrin$Un/5jzAHMgOGZ5.mWJpuVolil07guHPvOW8mGRcvxa5" },
+      { "a very much longer text to encrypt.  This one even stretches over morethan one line.",
+          "anotherlongsaltstring", 1400,
+          "$5$rounds=1400$anotherlongsalts$Rx.j8H.h8HjEDGomFU8bDkXm3XIUnzyxf12oP84Bnq1" },
+      { "we have a short salt string but not a short password", "short", 77777,
+          "$5$rounds=77777$short$JiO1O3ZpDAxGJeaDIuqCoEFysAe1mZNJRs3pw0KQRd/" },
+      { "a short string", "asaltof16chars..", 123456,
+          "$5$rounds=123456$asaltof16chars..$gP3VQ/6X7UUEW3HkBn2w1/Ptq2jxPyzV/cZKmF/wJvD" },
+      { "the minimum number is still observed", "roundstoolow", 10,
+          "$5$rounds=1000$roundstoolow$yfvwcWrQ8l/K0DAWyuPMDNHpIVlTQebY9l/gL972bIC" } };
+
+  /**
+   * plain text, salt, rounds and expected hash
+   */
+  private static final Object[][] SHA512_VECTORS = {
+      { "Hello world!", "saltstring", 5000,
+          "$6$saltstring$svn8UoSVapNtMuq1ukKS4tPQd8iKwSMHWjl/O817G3uBnIFNjnQJuesI68u4OTLiBFdcbYEdFCoEOfaS35inz1" },
+      { "Hello world!", "saltstringsaltstring", 10000,
+          "$6$rounds=10000$saltstringsaltst$OW1/O6BYHV6BcXZu8QVeXbDWra3Oeqh0sbHbbMCVNSnCM/UrjmM0Dp8vOuZeHBy/"
+              + "YTBmSK6H9qs/y3RnOaw5v." },
+      { "This is just a test", "toolongsaltstring", 5000,
+          "$6$rounds=5000$toolongsaltstrin$lQ8jolhgVRVhY4b5pZKaysCLi0QBxGoNeKQzQ3glMhwllF7oGDZxUhx1yxdYcz/"
+              + "e1JSbq3y6JMxxl8audkUEm0" },
+      { "a very much longer text to encrypt.  This one even stretches over morethan one line.",
+          "anotherlongsaltstring", 1400,
+          "$6$rounds=1400$anotherlongsalts$POfYwTEok97VWcjxIiSOjiykti.o/pQs.wPvMxQ6Fm7I6IoYN3CmLs66x9t0oSwbtEW7o7"
+              + "UmJEiDwGqd8p4ur1" },
+      { "we have a short salt string but not a short password", "short", 77777,
+          "$6$rounds=77777$short$WuQyW2YR.hBNpjjRhpYD/ifIw05xdfeEyQoMxIXbkvr0gge1a1x3yRULJ5CCaUeOxFmtlcGZelFl5Cxtgf"
+              + "iAc0" },
+      { "a short string", "asaltof16chars..", 123456,
+          "$6$rounds=123456$asaltof16chars..$BtCwjqMJGx5hrJhZywWvt0RLE8uZ4oPwcelCjmw2kSYu.Ec6ycULevoBK25fs2xXgMNrC"
+              + "zIMVcgEJAstJeonj1" },
+      { "the minimum number is still observed", "roundstoolow", 10,
+          "$6$rounds=1000$roundstoolow$kUMsbe306n21p9R.FRkW3IGn.S9NPN0x50YhH1xhLsPuWGsUSklZt58jaTfF4ZEQpyUNGc0dqb"
+              + "pBYYBaHHrsX." } };
+
+  @Test
+  public void testSha256CryptJca() {
+    assertVectors(new Sha256Crypt(ROUNDS, DigestBackend.JCA), SHA256_VECTORS);
+  }
+
+  @Test
+  public void testSha256CryptNative() {
+    assertVectors(new Sha256Crypt(ROUNDS, DigestBackend.NATIVE), SHA256_VECTORS);
+  }
+
+  @Test
+  public void testSha512CryptJca() {
+    assertVectors(new Sha512Crypt(ROUNDS, DigestBackend.JCA), SHA512_VECTORS);
+  }
+
+  @Test
+  public void testSha512CryptNative() {
+    assertVectors(new Sha512Crypt(ROUNDS, DigestBackend.NATIVE), SHA512_VECTORS);
+  }
+
+  private static void assertVectors(ShaCrypt shaCrypt, Object[][] vectors) {
+    for (Object[] vector : vectors) {
+      String plainText = (String) vector[0];
+      String expected = (String) vector[3];
+      // the default rounds are written implicitly, like glibc does if the salt does not specify them
+      assertEquals(expected.replace("rounds=5000$", ""),
+          shaCrypt.hashPassword(plainText, (String) vector[1], ((Integer) vector[2]).intValue()));
+      assertTrue(expected, shaCrypt.verifyHash(plainText, expected));
+      assertTrue(expected, shaCrypt.verifyHash(plainText.toCharArray(), expected));
+      assertFalse(expected, shaCrypt.verifyHash(plainText + "!", expected));
+    }
+  }
+
+}